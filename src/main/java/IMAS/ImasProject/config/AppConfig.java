@@ -1,10 +1,11 @@
 package IMAS.ImasProject.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.concurrent.ConcurrentTaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @Configuration
@@ -12,8 +13,21 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 @EnableScheduling
 public class AppConfig {
 
+    // Default scheduler of @Scheduled jobs; sized so one slow job does not stall the live ones
     @Bean
-    public TaskScheduler taskScheduler() {
-        return new ConcurrentTaskScheduler();
+    public TaskScheduler taskScheduler(@Value("${spring.task.scheduling.pool.size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduling-");
+        return scheduler;
     }
-}
\ No newline at end of file
+
+    // Long-running maintenance (partition DDL, location rollups), kept off the default scheduler
+    @Bean
+    public TaskScheduler maintenanceTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("maintenance-");
+        return scheduler;
+    }
+}
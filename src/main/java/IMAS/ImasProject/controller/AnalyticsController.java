@@ -3,6 +3,8 @@ package IMAS.ImasProject.controller;
 import IMAS.ImasProject.model.LoginAttempt;
 import IMAS.ImasProject.services.AnalyticService;
 import IMAS.ImasProject.services.LoginTrackingService;
+import IMAS.ImasProject.services.PassengerStatsService;
+import IMAS.ImasProject.services.RevenueCubeService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -22,6 +24,12 @@ public class AnalyticsController {
     @Autowired
     private LoginTrackingService loginTrackingService;
 
+    @Autowired
+    private RevenueCubeService revenueCubeService;
+
+    @Autowired
+    private PassengerStatsService passengerStatsService;
+
     @GetMapping("/system-overview")
     public ResponseEntity<Map<String, Object>> getSystemOverview() {
         return ResponseEntity.ok(analyticService.getSystemOverview());
@@ -80,4 +88,14 @@ public class AnalyticsController {
     public ResponseEntity<Map<?, Long>> getLoginStatsByRole(@PathVariable String period) {
         return ResponseEntity.ok(analyticService.getLoginStatsByRole(period));
     }
-}
\ No newline at end of file
+
+    @PostMapping("/revenue-cube/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildRevenueCube() {
+        return ResponseEntity.ok(Map.of("cells", revenueCubeService.rebuild()));
+    }
+
+    @PostMapping("/passenger-stats/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildPassengerStats() {
+        return ResponseEntity.ok(Map.of("passengers", passengerStatsService.rebuild()));
+    }
+}
@@ -2,6 +2,7 @@ package IMAS.ImasProject.controller;
 
 import IMAS.ImasProject.model.*;
 import IMAS.ImasProject.dto.*;
+import IMAS.ImasProject.exception.ResourceNotFoundException;
 import IMAS.ImasProject.repository.BusRepository;
 import IMAS.ImasProject.services.*;
 import org.hibernate.Hibernate;
@@ -405,12 +406,12 @@ public class BusController {
                         .body(createErrorResponse("Latitude and longitude are required"));
             }
 
-            Bus updatedBus = busService.updatePosition(id,
+            BusPositionDTO position = busService.updatePosition(id,
                     update.getCurrentLat(),
                     update.getCurrentLng(),
                     update.getProgress());
 
-            return ResponseEntity.ok(updatedBus);
+            return ResponseEntity.ok(position);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(createErrorResponse(e.getMessage()));
         } catch (Exception e) {
@@ -419,6 +420,33 @@ public class BusController {
         }
     }
 
+    /**
+     * Get live position and progress of a bus
+     */
+    @GetMapping("/{id}/position")
+    public ResponseEntity<?> getPosition(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(busService.getLivePosition(id));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(createErrorResponse("Error retrieving position: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get live positions of all tracked buses
+     */
+    @GetMapping("/positions")
+    public ResponseEntity<List<BusPositionDTO>> getPositions() {
+        try {
+            return ResponseEntity.ok(busService.getLivePositions());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
     /**
      * Update only progress
      */
@@ -431,28 +459,10 @@ public class BusController {
                         .body(createErrorResponse("Progress must be between 0 and 100"));
             }
 
-            Bus bus = busService.findById(id);
-            if (bus == null) {
-                return ResponseEntity.notFound().build();
-            }
-
-            bus.setProgress(progress);
-
-            // Update arrival time based on new progress
-            if (!bus.getStopped() && bus.getDepartureTime() != null) {
-                if (progress >= 100.0) {
-                    bus.setArrivalTime(LocalDateTime.now());
-                } else {
-                    Duration elapsed = Duration.between(bus.getDepartureTime(), LocalDateTime.now());
-                    double timePerProgress = elapsed.toMinutes() / progress;
-                    double remainingProgress = 100.0 - progress;
-                    long remainingMinutes = Math.round(remainingProgress * timePerProgress);
-                    bus.setArrivalTime(LocalDateTime.now().plusMinutes(remainingMinutes));
-                }
-            }
-
-            Bus updatedBus = busService.save(bus);
-            return ResponseEntity.ok(updatedBus);
+            BusPositionDTO position = busService.updateProgress(id, progress);
+            return ResponseEntity.ok(position);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(createErrorResponse("Error updating progress: " + e.getMessage()));
@@ -1,14 +1,17 @@
 package IMAS.ImasProject.controller;
 
+import IMAS.ImasProject.services.TripCountService;
 import IMAS.ImasProject.services.TripService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -54,6 +57,49 @@ public class DriverAnalyticsController {
         }
     }
 
+    /**
+     * Get a driver's trip counts over consecutive buckets of size days, weeks or months
+     */
+    @GetMapping("/{driverId}/trips")
+    public ResponseEntity<TripCountService.Series> getDriverTripSeries(
+            @PathVariable Long driverId,
+            @RequestParam(defaultValue = "MONTH") String unit,
+            @RequestParam(defaultValue = "1") int size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(defaultValue = "12") int buckets) {
+        try {
+            TripCountService.Series series = tripService.getDriverTripSeries(driverId, parseUnit(unit), size, from, buckets);
+            return ResponseEntity.ok(series);
+        } catch (IllegalArgumentException e) {
+            log.error("Error fetching trip series for driver ID {}: {}", driverId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        } catch (Exception e) {
+            log.error("Unexpected error fetching trip series for driver ID {}: {}", driverId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
+    /**
+     * Get the trip counts of every driver over the same buckets, for fleet-wide charts
+     */
+    @GetMapping("/trips")
+    public ResponseEntity<List<TripCountService.Series>> getFleetTripSeries(
+            @RequestParam(defaultValue = "MONTH") String unit,
+            @RequestParam(defaultValue = "1") int size,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(defaultValue = "12") int buckets) {
+        try {
+            List<TripCountService.Series> series = tripService.getFleetTripSeries(parseUnit(unit), size, from, buckets);
+            return ResponseEntity.ok(series);
+        } catch (IllegalArgumentException e) {
+            log.error("Error fetching fleet trip series: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        } catch (Exception e) {
+            log.error("Unexpected error fetching fleet trip series: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+        }
+    }
+
     /**
      * Get on-time performance statistics for a driver
      */
@@ -70,4 +116,12 @@ public class DriverAnalyticsController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
         }
     }
+
+    private TripCountService.Unit parseUnit(String unit) {
+        try {
+            return TripCountService.Unit.valueOf(unit.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unit must be DAY, WEEK or MONTH");
+        }
+    }
 }
\ No newline at end of file
@@ -1,11 +1,18 @@
 package IMAS.ImasProject.controller;
 
+import IMAS.ImasProject.dto.TripSeatMapDTO;
+import IMAS.ImasProject.exception.HoldLimitExceededException;
+import IMAS.ImasProject.exception.SeatHeldException;
+import IMAS.ImasProject.exception.SeatUnavailableException;
 import IMAS.ImasProject.model.*;
 import IMAS.ImasProject.services.*;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
 import com.google.zxing.client.j2se.MatrixToImageWriter;
@@ -16,6 +23,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -34,6 +42,15 @@ public class TicketController {
     @Autowired
     private TicketService ticketService;
 
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatHoldService seatHoldService;
+
+    @Autowired
+    private FareEngine fareEngine;
+
     @Autowired
     private BusService busService;
 
@@ -50,6 +67,9 @@ public class TicketController {
     @Autowired
     private TicketNotificationService ticketNotificationService;
 
+    @Value("${app.tickets.scan.max-batch-size:500}")
+    private int maxScanBatchSize;
+
     /**
      * Valider la disponibilité d'un siège pour un voyage spécifique
      */
@@ -100,38 +120,11 @@ public class TicketController {
                 ));
             }
 
-            // Chercher les tickets existants pour ce voyage spécifique
-            List<Ticket> existingTickets = ticketService.findByBusId(request.getBusId());
-
-            boolean seatTaken = existingTickets.stream().anyMatch(ticket -> {
-                // Vérifier si c'est le même voyage (même heure, origine et destination)
-                boolean sameTime = Math.abs(ChronoUnit.MINUTES.between(ticket.getDepartureTime(), departureTime)) < 1;
-                boolean sameRoute = (request.getOrigin() == null || request.getOrigin().equals(ticket.getOrigin())) &&
-                        (request.getDestination() == null || request.getDestination().equals(ticket.getDestination()));
-                boolean sameSeat = request.getSeatNumber().equals(ticket.getSeatNumber());
-                boolean validStatus = "PAID".equals(ticket.getStatus()) || "BOARDED".equals(ticket.getStatus());
-
-                boolean isConflict = sameTime && sameRoute && sameSeat && validStatus;
-
-                if (isConflict) {
-                    log.warn("Seat conflict found - Ticket ID: {}, Seat: {}, Status: {}, Time: {}",
-                            ticket.getId(), ticket.getSeatNumber(), ticket.getStatus(), ticket.getDepartureTime());
-                }
-
-                return isConflict;
-            });
-
-            if (seatTaken) {
-                return ResponseEntity.ok(Map.of(
-                        "available", false,
-                        "message", "Seat " + request.getSeatNumber() + " is already taken for this trip"
-                ));
-            }
-
             // Vérifier que le numéro de siège est valide pour ce bus
-            String seatNumber = request.getSeatNumber();
+            String seatNumber = request.getSeatNumber().trim();
+            int seatNum;
             try {
-                int seatNum = Integer.parseInt(seatNumber);
+                seatNum = Integer.parseInt(seatNumber);
                 if (seatNum < 1 || seatNum > bus.getCapacity()) {
                     return ResponseEntity.badRequest().body(Map.of(
                             "available", false,
@@ -145,6 +138,31 @@ public class TicketController {
                 ));
             }
 
+            // Inventaire des sièges du voyage ; sans origine ou destination, recherche ciblée dans les tickets
+            boolean seatTaken;
+            if (request.getOrigin() != null && request.getDestination() != null) {
+                SeatInventoryService.TripKey trip = SeatInventoryService.TripKey.of(
+                        request.getBusId(), departureTime, request.getOrigin(), request.getDestination());
+                seatTaken = seatInventoryService.isTaken(trip, seatNum);
+                if (!seatTaken && seatHoldService.isHeldByOther(trip, seatNum, request.getPassengerId())) {
+                    return ResponseEntity.ok(Map.of(
+                            "available", false,
+                            "held", true,
+                            "message", "Seat " + request.getSeatNumber() + " is currently held by another passenger"
+                    ));
+                }
+            } else {
+                seatTaken = ticketService.isSeatTaken(request.getBusId(), departureTime,
+                        request.getOrigin(), request.getDestination(), seatNumber);
+            }
+
+            if (seatTaken) {
+                return ResponseEntity.ok(Map.of(
+                        "available", false,
+                        "message", "Seat " + request.getSeatNumber() + " is already taken for this trip"
+                ));
+            }
+
             // Le siège est disponible
             return ResponseEntity.ok(Map.of(
                     "available", true,
@@ -190,30 +208,9 @@ public class TicketController {
                 ));
             }
 
-            // Récupérer tous les tickets du bus
-            List<Ticket> allBusTickets = ticketService.findByBusId(busId);
-
-            // Filtrer pour le voyage spécifique
-            List<Ticket> specificTripTickets = allBusTickets.stream()
-                    .filter(ticket -> {
-                        // Vérifier l'heure (tolérance de 1 minute)
-                        boolean sameTime = Math.abs(ChronoUnit.MINUTES.between(ticket.getDepartureTime(), departureTime)) < 1;
-
-                        // Vérifier le trajet si spécifié
-                        boolean sameRoute = true;
-                        if (request.getOrigin() != null && ticket.getOrigin() != null) {
-                            sameRoute = sameRoute && request.getOrigin().equals(ticket.getOrigin());
-                        }
-                        if (request.getDestination() != null && ticket.getDestination() != null) {
-                            sameRoute = sameRoute && request.getDestination().equals(ticket.getDestination());
-                        }
-
-                        // Vérifier le statut
-                        boolean validStatus = "PAID".equals(ticket.getStatus()) || "BOARDED".equals(ticket.getStatus());
-
-                        return sameTime && sameRoute && validStatus;
-                    })
-                    .toList();
+            // Tickets PAID ou BOARDED du voyage (tolérance de 1 minute), lus directement
+            List<Ticket> specificTripTickets = ticketService.findActiveForTrip(
+                    busId, departureTime, request.getOrigin(), request.getDestination());
 
             log.info("Found {} tickets for specific trip", specificTripTickets.size());
             return ResponseEntity.ok(specificTripTickets);
@@ -278,39 +275,27 @@ public class TicketController {
                 departureTime = bus.getDepartureTime() != null ? bus.getDepartureTime() : LocalDateTime.now().plusHours(1);
             }
 
-            // VALIDATION CRITIQUE : Vérifier que le siège n'est pas déjà pris pour ce voyage spécifique
-            List<Ticket> existingTickets = ticketService.findByBusId(request.getBusId());
-            boolean seatAlreadyTaken = existingTickets.stream().anyMatch(ticket -> {
-                boolean sameTime = Math.abs(ChronoUnit.MINUTES.between(ticket.getDepartureTime(), departureTime)) < 1;
-                boolean sameRoute = (request.getOrigin() == null || request.getOrigin().equals(ticket.getOrigin())) &&
-                        (request.getDestination() == null || request.getDestination().equals(ticket.getDestination()));
-                boolean sameSeat = request.getSeatNumber().equals(ticket.getSeatNumber());
-                boolean validStatus = "PAID".equals(ticket.getStatus()) || "BOARDED".equals(ticket.getStatus());
-
-                return sameTime && sameRoute && sameSeat && validStatus;
-            });
+            if (request.getOrigin() == null || request.getDestination() == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Origin and destination are required"));
+            }
 
-            if (seatAlreadyTaken) {
-                log.warn("Attempt to book already taken seat: {} for bus {} at {}",
-                        request.getSeatNumber(), request.getBusId(), departureTime);
+            int seatNum;
+            try {
+                seatNum = Integer.parseInt(request.getSeatNumber().trim());
+            } catch (NumberFormatException e) {
+                seatNum = 0;
+            }
+            if (seatNum < 1 || seatNum > bus.getCapacity()) {
                 return ResponseEntity.badRequest().body(Map.of(
-                        "message", "Seat " + request.getSeatNumber() + " is already taken for this trip. Please select another seat.",
-                        "errorCode", "SEAT_ALREADY_TAKEN",
-                        "seatNumber", request.getSeatNumber()
+                        "message", "Seat number " + request.getSeatNumber() + " is invalid for this bus (capacity: " + bus.getCapacity() + ")",
+                        "errorCode", "INVALID_SEAT"
                 ));
             }
 
             // Check bus capacity
-            long currentPassengersForTrip = existingTickets.stream()
-                    .filter(ticket -> {
-                        boolean sameTime = Math.abs(ChronoUnit.MINUTES.between(ticket.getDepartureTime(), departureTime)) < 1;
-                        boolean sameRoute = (request.getOrigin() == null || request.getOrigin().equals(ticket.getOrigin())) &&
-                                (request.getDestination() == null || request.getDestination().equals(ticket.getDestination()));
-                        boolean validStatus = "PAID".equals(ticket.getStatus()) || "BOARDED".equals(ticket.getStatus());
-                        return sameTime && sameRoute && validStatus;
-                    })
-                    .count();
-
+            SeatInventoryService.TripKey trip = SeatInventoryService.TripKey.of(
+                    request.getBusId(), departureTime, request.getOrigin(), request.getDestination());
+            int currentPassengersForTrip = seatInventoryService.countTaken(trip);
             if (currentPassengersForTrip >= bus.getCapacity()) {
                 return ResponseEntity.badRequest().body(Map.of(
                         "message", "Bus is full for this trip. Current passengers: " + currentPassengersForTrip + "/" + bus.getCapacity(),
@@ -337,8 +322,27 @@ public class TicketController {
             ticket.setStatus("PAID");
             ticket.setIssuedAt(LocalDateTime.now());
 
-            // Use the new service method that handles ID validation and QR code generation
-            Ticket savedTicket = ticketService.saveWithQrCode(ticket);
+            // VALIDATION CRITIQUE : le siège est réservé dans l'inventaire du voyage et le ticket enregistré atomiquement
+            Ticket savedTicket;
+            try {
+                savedTicket = ticketService.bookSeat(ticket, seatNum);
+            } catch (SeatHeldException e) {
+                log.warn("Attempt to book seat {} held by another passenger for bus {} at {}",
+                        request.getSeatNumber(), request.getBusId(), departureTime);
+                return ResponseEntity.badRequest().body(Map.of(
+                        "message", "Seat " + request.getSeatNumber() + " is currently held by another passenger. Please select another seat.",
+                        "errorCode", "SEAT_HELD",
+                        "seatNumber", request.getSeatNumber()
+                ));
+            } catch (SeatUnavailableException e) {
+                log.warn("Attempt to book already taken seat: {} for bus {} at {}",
+                        request.getSeatNumber(), request.getBusId(), departureTime);
+                return ResponseEntity.badRequest().body(Map.of(
+                        "message", "Seat " + request.getSeatNumber() + " is already taken for this trip. Please select another seat.",
+                        "errorCode", "SEAT_ALREADY_TAKEN",
+                        "seatNumber", request.getSeatNumber()
+                ));
+            }
             log.info("Ticket created successfully with ID: {} for seat {}", savedTicket.getId(), savedTicket.getSeatNumber());
 
             // Update bus passenger count (global count, not trip-specific)
@@ -461,24 +465,24 @@ public class TicketController {
         }
     }
 
+    /**
+     * Image du QR code, servie depuis le cache ; l'ETag dépend uniquement du contenu du QR code
+     */
     @GetMapping("/{id}/qr-code")
-    public ResponseEntity<byte[]> getTicketQrCode(@PathVariable Long id) {
+    public ResponseEntity<byte[]> getTicketQrCode(@PathVariable Long id, WebRequest webRequest) {
         try {
             Ticket ticket = ticketService.findById(id);
             if (ticket == null) {
                 return ResponseEntity.notFound().build();
             }
-
-            // Generate QR code if it doesn't exist
-            if (!ticket.hasQrCode()) {
-                log.info("QR code not found for ticket {}, generating new one", id);
-                ticket = ticketService.generateQrCodeForExistingTicket(id);
+            if (ticket.getTicketNumber() == null || ticket.getTicketNumber().trim().isEmpty()) {
+                log.error("Cannot render QR code for ticket {} without ticket number", id);
+                return ResponseEntity.internalServerError().build();
             }
 
-            // Validate QR code exists after generation
-            if (!ticket.hasQrCode()) {
-                log.error("Failed to generate QR code for ticket {}", id);
-                return ResponseEntity.internalServerError().build();
+            String eTag = ticketService.getQrCodeETag(ticket);
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
             }
 
             HttpHeaders headers = new HttpHeaders();
@@ -486,8 +490,10 @@ public class TicketController {
             headers.setContentDisposition(ContentDisposition.builder("attachment")
                     .filename("ticket-" + ticket.getTicketNumber() + ".png")
                     .build());
+            headers.setETag(eTag);
+            headers.setCacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate());
 
-            return new ResponseEntity<>(ticket.getQrCode(), headers, HttpStatus.OK);
+            return new ResponseEntity<>(ticketService.generateQrCodeImage(ticket), headers, HttpStatus.OK);
 
         } catch (Exception e) {
             log.error("Error retrieving QR code for ticket {}: {}", id, e.getMessage());
@@ -558,10 +564,8 @@ public class TicketController {
                 ));
             }
 
-            // Update ticket status
-            ticket.setStatus("BOARDED");
-            ticket.setBoardingTime(LocalDateTime.now());
-            ticketService.save(ticket);
+            // Update ticket status and the trip seat map
+            ticket = ticketService.board(ticket);
 
             // NOUVEAU: Créer une notification pour l'embarquement réussi
             try {
@@ -601,6 +605,41 @@ public class TicketController {
         }
     }
 
+    /**
+     * Rapprocher les scans collectés hors ligne : chaque ticket valide passe BOARDED, en une seule transaction
+     */
+    @PostMapping("/scan-qr/batch")
+    public ResponseEntity<?> reconcileOfflineScans(@RequestBody BatchScanRequest request) {
+        try {
+            if (request == null || request.getScans() == null || request.getScans().isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("message", "At least one scan is required"));
+            }
+            if (request.getScans().size() > maxScanBatchSize) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "message", "At most " + maxScanBatchSize + " scans can be reconciled at once"
+                ));
+            }
+
+            List<TicketService.ScanOutcome> outcomes = ticketService.reconcileScans(request.getScans());
+            Map<String, Long> counts = new HashMap<>();
+            for (TicketService.ScanOutcome outcome : outcomes) {
+                counts.merge(outcome.getStatus(), 1L, Long::sum);
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("total", outcomes.size());
+            response.put("counts", counts);
+            response.put("results", outcomes);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("Error reconciling offline scans: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "message", "Error reconciling scans: " + e.getMessage()
+            ));
+        }
+    }
+
     @GetMapping("/number/{ticketNumber}")
     public ResponseEntity<?> getTicketByNumber(@PathVariable String ticketNumber) {
         try {
@@ -638,11 +677,12 @@ public class TicketController {
 
     @PostMapping("/calculate-price")
     public ResponseEntity<Map<String, Object>> calculatePrice(@RequestBody PriceCalculationRequest request) {
-        double basePrice = 2000.0; // Base price in Congolese Francs
-        double distanceMultiplier = calculateDistanceMultiplier(request.getOrigin(), request.getDestination());
-        double luggagePrice = request.getHasLuggage() ? 500.0 : 0.0;
+        double basePrice = fareEngine.getBaseFare(); // Base price in Congolese Francs
+        double distanceMultiplier = fareEngine.multiplier(request.getOrigin(), request.getDestination());
+        boolean hasLuggage = Boolean.TRUE.equals(request.getHasLuggage());
+        double luggagePrice = hasLuggage ? fareEngine.getLuggageFee() : 0.0;
 
-        double totalPrice = (basePrice * distanceMultiplier) + luggagePrice;
+        double totalPrice = fareEngine.price(request.getOrigin(), request.getDestination(), hasLuggage);
 
         Map<String, Object> response = new HashMap<>();
         response.put("basePrice", basePrice);
@@ -664,24 +704,43 @@ public class TicketController {
     }
 
     private double calculatePaymentAmount(TicketCreateRequest request) {
-        double basePrice = 2000.0;
-        double distanceMultiplier = calculateDistanceMultiplier(request.getOrigin(), request.getDestination());
-        double luggagePrice = request.getHasLuggage() ? 500.0 : 0.0;
-        return (basePrice * distanceMultiplier) + luggagePrice;
+        return fareEngine.price(request.getOrigin(), request.getDestination(), Boolean.TRUE.equals(request.getHasLuggage()));
+    }
+
+    /**
+     * Grille tarifaire : multiplicateurs par origine et destination
+     */
+    @GetMapping("/fares")
+    public ResponseEntity<?> getFares() {
+        return ResponseEntity.ok(Map.of(
+                "baseFare", fareEngine.getBaseFare(),
+                "luggageFee", fareEngine.getLuggageFee(),
+                "currency", "FC",
+                "fares", fareEngine.getRules()
+        ));
     }
 
-    private double calculateDistanceMultiplier(String origin, String destination) {
-        // Simple distance calculation based on known Kinshasa locations
-        Map<String, Double> locationMultipliers = new HashMap<>();
-        locationMultipliers.put("GARE_CENTRALE-MATETE", 1.2);
-        locationMultipliers.put("GARE_CENTRALE-LIMETE", 1.0);
-        locationMultipliers.put("GARE_CENTRALE-BANDALUNGWA", 1.1);
-        locationMultipliers.put("GARE_CENTRALE-NDJILI", 1.5);
-        locationMultipliers.put("GARE_CENTRALE-MASINA", 1.6);
-        locationMultipliers.put("GARE_CENTRALE-KIMBANSEKE", 2.0);
-
-        String route = origin + "-" + destination;
-        return locationMultipliers.getOrDefault(route, 1.0);
+    /**
+     * Créer ou modifier le tarif d'un trajet ; la grille est rechargée après validation
+     */
+    @PutMapping("/fares")
+    public ResponseEntity<?> setFare(@RequestBody FareRuleRequest request) {
+        try {
+            if (request.getMultiplier() == null) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Fare multiplier is required"));
+            }
+            return ResponseEntity.ok(fareEngine.setRule(request.getOrigin(), request.getDestination(), request.getMultiplier()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/fares")
+    public ResponseEntity<?> deleteFare(@RequestParam String origin, @RequestParam String destination) {
+        if (!fareEngine.deleteRule(origin, destination)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(Map.of("message", "Fare deleted for " + origin + " -> " + destination));
     }
 
     /**
@@ -841,12 +900,28 @@ public class TicketController {
         public void setHasLuggage(Boolean hasLuggage) { this.hasLuggage = hasLuggage; }
     }
 
+    public static class FareRuleRequest {
+        private String origin;
+        private String destination;
+        private Double multiplier;
+
+        public String getOrigin() { return origin; }
+        public void setOrigin(String origin) { this.origin = origin; }
+
+        public String getDestination() { return destination; }
+        public void setDestination(String destination) { this.destination = destination; }
+
+        public Double getMultiplier() { return multiplier; }
+        public void setMultiplier(Double multiplier) { this.multiplier = multiplier; }
+    }
+
     public static class SeatValidationRequest {
         private Long busId;
         private String seatNumber;
         private String departureTime;
         private String origin;
         private String destination;
+        private Long passengerId; // optionnel : les sièges retenus par ce passager restent disponibles
 
         public Long getBusId() { return busId; }
         public void setBusId(Long busId) { this.busId = busId; }
@@ -863,6 +938,9 @@ public class TicketController {
         public String getDestination() { return destination; }
         public void setDestination(String destination) { this.destination = destination; }
 
+        public Long getPassengerId() { return passengerId; }
+        public void setPassengerId(Long passengerId) { this.passengerId = passengerId; }
+
         @Override
         public String toString() {
             return "SeatValidationRequest{" +
@@ -871,10 +949,45 @@ public class TicketController {
                     ", departureTime='" + departureTime + '\'' +
                     ", origin='" + origin + '\'' +
                     ", destination='" + destination + '\'' +
+                    ", passengerId=" + passengerId +
                     '}';
         }
     }
 
+    public static class BatchScanRequest {
+        private List<TicketService.BoardingScan> scans;
+
+        public List<TicketService.BoardingScan> getScans() { return scans; }
+        public void setScans(List<TicketService.BoardingScan> scans) { this.scans = scans; }
+    }
+
+    public static class SeatHoldRequest {
+        private Long busId;
+        private String seatNumber;
+        private String departureTime;
+        private String origin;
+        private String destination;
+        private Long passengerId;
+
+        public Long getBusId() { return busId; }
+        public void setBusId(Long busId) { this.busId = busId; }
+
+        public String getSeatNumber() { return seatNumber; }
+        public void setSeatNumber(String seatNumber) { this.seatNumber = seatNumber; }
+
+        public String getDepartureTime() { return departureTime; }
+        public void setDepartureTime(String departureTime) { this.departureTime = departureTime; }
+
+        public String getOrigin() { return origin; }
+        public void setOrigin(String origin) { this.origin = origin; }
+
+        public String getDestination() { return destination; }
+        public void setDestination(String destination) { this.destination = destination; }
+
+        public Long getPassengerId() { return passengerId; }
+        public void setPassengerId(Long passengerId) { this.passengerId = passengerId; }
+    }
+
     public static class TripFilterRequest {
         private String departureTime;
         private String origin;
@@ -926,6 +1039,175 @@ public class TicketController {
 
 
 
+    /**
+     * Carte des sièges d'un voyage, avec ETag : une carte inchangée depuis le dernier appel renvoie 304
+     */
+    @GetMapping("/bus/{busId}/seat-map")
+    public ResponseEntity<?> getSeatMap(
+            @PathVariable Long busId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime departureTime,
+            @RequestParam String origin,
+            @RequestParam String destination,
+            WebRequest webRequest) {
+        try {
+            // Le bus est vérifié avant toute lecture de l'inventaire
+            Bus bus = busService.findById(busId);
+            if (bus == null) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "message", "Bus not found with ID: " + busId
+                ));
+            }
+
+            SeatInventoryService.TripKey trip = SeatInventoryService.TripKey.of(busId, departureTime, origin, destination);
+            SeatInventoryService.SeatMap seatMap = seatInventoryService.getSeatMap(trip);
+            SeatHoldService.TripHoldsView holds = seatHoldService.getHolds(trip);
+            String eTag = seatMap.getETag(holds.getVersion());
+            if (webRequest.checkNotModified(eTag)) {
+                return null;
+            }
+
+            int takenCount = seatMap.getTakenSeats().size();
+            TripSeatMapDTO response = TripSeatMapDTO.builder()
+                    .busId(busId)
+                    .departureTime(departureTime)
+                    .origin(origin)
+                    .destination(destination)
+                    .capacity(bus.getCapacity())
+                    .version(seatMap.getVersion())
+                    .takenSeats(seatMap.getTakenSeats())
+                    .boardedSeats(seatMap.getBoardedSeats())
+                    .heldSeats(holds.getHeldSeats())
+                    .takenSeatsCount(takenCount)
+                    .availableSeatsCount(Math.max(0, bus.getCapacity() - takenCount))
+                    .build();
+            return ResponseEntity.ok()
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(response);
+
+        } catch (Exception e) {
+            log.error("Error getting seat map for bus {}: {}", busId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "message", "Error retrieving seat map: " + e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Retenir un siège pendant le paiement ; le siège est refusé aux autres passagers jusqu'à expiration
+     */
+    @PostMapping("/holds")
+    public ResponseEntity<?> holdSeat(@RequestBody SeatHoldRequest request) {
+        try {
+            ResponseEntity<?> invalid = validateHoldRequest(request);
+            if (invalid != null) {
+                return invalid;
+            }
+            Bus bus = busService.findById(request.getBusId());
+            if (bus == null) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "message", "Bus not found with ID: " + request.getBusId()
+                ));
+            }
+            int seatNum = parseSeatNumber(request.getSeatNumber());
+            if (seatNum < 1 || seatNum > bus.getCapacity()) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "message", "Seat number " + request.getSeatNumber() + " is invalid for this bus (capacity: " + bus.getCapacity() + ")",
+                        "errorCode", "INVALID_SEAT"
+                ));
+            }
+
+            SeatHoldService.Hold hold = seatHoldService.hold(holdTrip(request), seatNum, request.getPassengerId());
+            return ResponseEntity.ok(Map.of(
+                    "busId", request.getBusId(),
+                    "seatNumber", hold.getSeat(),
+                    "passengerId", hold.getPassengerId(),
+                    "expiresAt", hold.getExpiresAt(),
+                    "message", "Seat " + hold.getSeat() + " is held until " + hold.getExpiresAt()
+            ));
+
+        } catch (SeatHeldException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "message", e.getMessage(),
+                    "errorCode", "SEAT_HELD",
+                    "seatNumber", request.getSeatNumber()
+            ));
+        } catch (SeatUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "message", e.getMessage(),
+                    "errorCode", "SEAT_ALREADY_TAKEN",
+                    "seatNumber", request.getSeatNumber()
+            ));
+        } catch (HoldLimitExceededException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "message", e.getMessage(),
+                    "errorCode", "TOO_MANY_HOLDS"
+            ));
+        } catch (Exception e) {
+            log.error("Error holding seat: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "message", "Error holding seat: " + e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Libérer un siège retenu par le passager
+     */
+    @PostMapping("/holds/release")
+    public ResponseEntity<?> releaseSeatHold(@RequestBody SeatHoldRequest request) {
+        try {
+            ResponseEntity<?> invalid = validateHoldRequest(request);
+            if (invalid != null) {
+                return invalid;
+            }
+            int seatNum = parseSeatNumber(request.getSeatNumber());
+            boolean released = seatNum > 0 && seatHoldService.release(holdTrip(request), seatNum, request.getPassengerId());
+            return ResponseEntity.ok(Map.of(
+                    "released", released,
+                    "seatNumber", request.getSeatNumber()
+            ));
+
+        } catch (Exception e) {
+            log.error("Error releasing seat hold: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                    "message", "Error releasing seat hold: " + e.getMessage()
+            ));
+        }
+    }
+
+    private ResponseEntity<?> validateHoldRequest(SeatHoldRequest request) {
+        if (request.getBusId() == null || request.getPassengerId() == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Bus ID and passenger ID are required"));
+        }
+        if (request.getSeatNumber() == null || request.getSeatNumber().trim().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Seat number is required"));
+        }
+        if (request.getDepartureTime() == null || request.getOrigin() == null || request.getDestination() == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Departure time, origin and destination are required"));
+        }
+        try {
+            LocalDateTime.parse(request.getDepartureTime(), DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Invalid departure time format"));
+        }
+        return null;
+    }
+
+    private SeatInventoryService.TripKey holdTrip(SeatHoldRequest request) {
+        return SeatInventoryService.TripKey.of(request.getBusId(),
+                LocalDateTime.parse(request.getDepartureTime(), DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+                request.getOrigin(), request.getDestination());
+    }
+
+    private int parseSeatNumber(String seatNumber) {
+        try {
+            return Integer.parseInt(seatNumber.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     /**
      * Obtenir les sièges pris pour un bus et un voyage spécifique
      */
@@ -961,51 +1243,35 @@ public class TicketController {
                 ));
             }
 
-            // Récupérer tous les tickets du bus
-            List<Ticket> allBusTickets = ticketService.findByBusId(busId);
-            log.info("Found {} total tickets for bus {}", allBusTickets.size(), busId);
-
-            // Filtrer pour le voyage spécifique
-            List<String> takenSeats = allBusTickets.stream()
-                    .filter(ticket -> {
-                        // Vérifier l'heure (tolérance de 1 minute)
-                        boolean sameTime = Math.abs(ChronoUnit.MINUTES.between(ticket.getDepartureTime(), departureTime)) < 1;
-
-                        // Vérifier le trajet si spécifié
-                        boolean sameRoute = true;
-                        if (request.getOrigin() != null && ticket.getOrigin() != null) {
-                            sameRoute = sameRoute && request.getOrigin().equals(ticket.getOrigin());
-                        }
-                        if (request.getDestination() != null && ticket.getDestination() != null) {
-                            sameRoute = sameRoute && request.getDestination().equals(ticket.getDestination());
-                        }
-
-                        // Vérifier le statut (seulement les tickets payés ou embarqués)
-                        boolean validStatus = "PAID".equals(ticket.getStatus()) || "BOARDED".equals(ticket.getStatus());
-
-                        // Vérifier que le siège existe
-                        boolean hasSeat = ticket.getSeatNumber() != null && !ticket.getSeatNumber().trim().isEmpty();
-
-                        boolean matches = sameTime && sameRoute && validStatus && hasSeat;
-
-                        if (matches) {
-                            log.debug("Matching ticket found - ID: {}, Seat: {}, Status: {}, Time: {}",
-                                    ticket.getId(), ticket.getSeatNumber(), ticket.getStatus(), ticket.getDepartureTime());
-                        }
-
-                        return matches;
-                    })
-                    .map(ticket -> ticket.getSeatNumber().trim())
-                    .distinct() // Éviter les doublons
-                    .sorted((a, b) -> {
-                        // Tri numérique des sièges
-                        try {
-                            return Integer.compare(Integer.parseInt(a), Integer.parseInt(b));
-                        } catch (NumberFormatException e) {
-                            return a.compareTo(b); // Tri alphabétique en cas d'échec
-                        }
-                    })
-                    .toList();
+            // Carte des sièges du voyage ; sans origine ou destination, recherche ciblée dans les tickets
+            List<String> takenSeats;
+            List<Integer> heldSeats = List.of();
+            String eTag = null;
+            if (request.getOrigin() != null && request.getDestination() != null) {
+                SeatInventoryService.TripKey trip = SeatInventoryService.TripKey.of(
+                        busId, departureTime, request.getOrigin(), request.getDestination());
+                SeatInventoryService.SeatMap seatMap = seatInventoryService.getSeatMap(trip);
+                SeatHoldService.TripHoldsView holds = seatHoldService.getHolds(trip);
+                takenSeats = seatMap.getTakenSeats().stream().map(String::valueOf).toList();
+                heldSeats = holds.getHeldSeats();
+                eTag = seatMap.getETag(holds.getVersion());
+            } else {
+                takenSeats = ticketService.findActiveForTrip(busId, departureTime, request.getOrigin(), request.getDestination())
+                        .stream()
+                        .map(Ticket::getSeatNumber)
+                        .filter(seat -> seat != null && !seat.trim().isEmpty())
+                        .map(String::trim)
+                        .distinct() // Éviter les doublons
+                        .sorted((a, b) -> {
+                            // Tri numérique des sièges
+                            try {
+                                return Integer.compare(Integer.parseInt(a), Integer.parseInt(b));
+                            } catch (NumberFormatException e) {
+                                return a.compareTo(b); // Tri alphabétique en cas d'échec
+                            }
+                        })
+                        .toList();
+            }
 
             log.info("Found {} taken seats for specific trip: {}", takenSeats.size(), takenSeats);
 
@@ -1018,11 +1284,12 @@ public class TicketController {
             response.put("origin", request.getOrigin());
             response.put("destination", request.getDestination());
             response.put("takenSeats", takenSeats);
+            response.put("heldSeats", heldSeats);
             response.put("takenSeatsCount", takenSeats.size());
             response.put("availableSeatsCount", bus.getCapacity() - takenSeats.size());
             response.put("message", "Taken seats retrieved successfully");
 
-            return ResponseEntity.ok(response);
+            return eTag != null ? ResponseEntity.ok().eTag(eTag).body(response) : ResponseEntity.ok(response);
 
         } catch (Exception e) {
             log.error("Error getting taken seats for bus {}: {}", busId, e.getMessage(), e);
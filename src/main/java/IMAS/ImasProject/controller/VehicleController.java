@@ -1,20 +1,42 @@
 package IMAS.ImasProject.controller;
 
+import IMAS.ImasProject.dto.VehicleLocationCreateDTO;
+import IMAS.ImasProject.dto.VehicleLocationDTO;
+import IMAS.ImasProject.dto.VehicleMotionDTO;
+import IMAS.ImasProject.dto.VehicleSearchCriteria;
+import IMAS.ImasProject.dto.VehicleSuggestionDTO;
+import IMAS.ImasProject.exception.ResourceNotFoundException;
 import IMAS.ImasProject.model.Vehicle;
+import IMAS.ImasProject.model.VehicleMotionState;
 import IMAS.ImasProject.model.VehicleStatus;
-import IMAS.ImasProject.model.VehicleLocation;
 import IMAS.ImasProject.model.FuelType;
 import IMAS.ImasProject.repository.VehicleRepository;
 import IMAS.ImasProject.repository.RouteRepository;
+import IMAS.ImasProject.services.FleetStatisticsService;
+import IMAS.ImasProject.services.GPSIngestService;
+import IMAS.ImasProject.services.GPSTrackingService;
+import IMAS.ImasProject.services.VehicleAutocompleteIndex;
+import IMAS.ImasProject.services.VehicleBulkService;
+import IMAS.ImasProject.services.VehicleDistanceService;
+import IMAS.ImasProject.services.VehicleExportService;
+import IMAS.ImasProject.services.VehicleLocationFanout;
+import IMAS.ImasProject.services.VehicleLocationHistoryService;
+import IMAS.ImasProject.services.VehicleMotionTracker;
+import IMAS.ImasProject.services.VehicleSearchService;
+import IMAS.ImasProject.services.VehiclePositionStore;
+import IMAS.ImasProject.services.VehicleSpatialIndex;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -40,6 +62,45 @@ public class VehicleController {
     @Autowired
     private RouteRepository routeRepository;
 
+    @Autowired
+    private GPSTrackingService gpsTrackingService;
+
+    @Autowired
+    private GPSIngestService gpsIngestService;
+
+    @Autowired
+    private VehicleDistanceService vehicleDistanceService;
+
+    @Autowired
+    private VehicleLocationHistoryService vehicleLocationHistoryService;
+
+    @Autowired
+    private VehicleLocationFanout vehicleLocationFanout;
+
+    @Autowired
+    private VehicleMotionTracker vehicleMotionTracker;
+
+    @Autowired
+    private FleetStatisticsService fleetStatisticsService;
+
+    @Autowired
+    private VehicleExportService vehicleExportService;
+
+    @Autowired
+    private VehiclePositionStore vehiclePositionStore;
+
+    @Autowired
+    private VehicleSpatialIndex vehicleSpatialIndex;
+
+    @Autowired
+    private VehicleSearchService vehicleSearchService;
+
+    @Autowired
+    private VehicleAutocompleteIndex vehicleAutocompleteIndex;
+
+    @Autowired
+    private VehicleBulkService vehicleBulkService;
+
     // =================== CRUD Operations ===================
 
     /**
@@ -108,6 +169,7 @@ public class VehicleController {
             }
 
             Vehicle savedVehicle = vehicleRepository.save(vehicle);
+            gpsIngestService.registerVehicle(savedVehicle.getId());
             return ResponseEntity.status(HttpStatus.CREATED).body(savedVehicle);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -176,6 +238,8 @@ public class VehicleController {
                 return ResponseEntity.notFound().build();
             }
             vehicleRepository.deleteById(id);
+            gpsIngestService.forgetVehicle(id);
+            vehicleLocationFanout.remove(id);
             return ResponseEntity.ok(Map.of("message", "Vehicle deleted successfully"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -226,6 +290,69 @@ public class VehicleController {
         }
     }
 
+    /**
+     * Autocomplete suggestions over vehicle numbers, license plates, manufacturers and models
+     */
+    @GetMapping("/search/suggest")
+    public ResponseEntity<?> suggestVehicles(
+            @RequestParam String q,
+            @RequestParam(required = false) VehicleAutocompleteIndex.Field field,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            List<VehicleSuggestionDTO> suggestions = vehicleAutocompleteIndex.suggest(q, field, limit);
+            return ResponseEntity.ok(suggestions);
+        } catch (Exception e) {
+            logger.error("Error fetching vehicle suggestions", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to fetch vehicle suggestions: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Search vehicles page by page; pass the returned nextCursor to get the following page
+     */
+    @GetMapping("/search/keyset")
+    public ResponseEntity<?> searchVehiclesKeyset(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) VehicleStatus status,
+            @RequestParam(required = false) String vehicleType,
+            @RequestParam(required = false) FuelType fuelType,
+            @RequestParam(required = false) Boolean isActive,
+            @RequestParam(required = false) Long routeId,
+            @RequestParam(required = false) Integer minCapacity,
+            @RequestParam(required = false) Integer maxCapacity,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+        try {
+            VehicleSearchCriteria criteria = VehicleSearchCriteria.builder()
+                    .keyword(keyword)
+                    .status(status)
+                    .vehicleType(vehicleType)
+                    .fuelType(fuelType)
+                    .isActive(isActive)
+                    .routeId(routeId)
+                    .minCapacity(minCapacity)
+                    .maxCapacity(maxCapacity)
+                    .build();
+            VehicleSearchService.SearchPage result = vehicleSearchService.search(
+                    criteria, sortBy, sortDir.equalsIgnoreCase("desc"), cursor, size);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("vehicles", result.getVehicles());
+            response.put("nextCursor", result.getNextCursor());
+            response.put("hasNext", result.isHasNext());
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error performing keyset search", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to search vehicles: " + e.getMessage()));
+        }
+    }
+
     // =================== Status Operations ===================
 
     /**
@@ -783,14 +910,15 @@ public class VehicleController {
     }
 
     /**
-     * Get moving vehicles - CORRIGÉ
+     * Get moving vehicles, from the motion state kept at ingest
      */
     @GetMapping("/moving")
-    public ResponseEntity<List<Vehicle>> getMovingVehicles(
+    public ResponseEntity<List<VehicleMotionDTO>> getMovingVehicles(
             @RequestParam(defaultValue = "30") Integer minutesBack) {
         try {
             LocalDateTime recentTime = LocalDateTime.now().minusMinutes(minutesBack);
-            List<Vehicle> vehicles = vehicleRepository.findMovingVehicles(recentTime);
+            List<VehicleMotionDTO> vehicles = vehicleMotionTracker.findByStates(
+                    EnumSet.of(VehicleMotionState.MOVING), recentTime);
             return ResponseEntity.ok(vehicles);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -800,15 +928,15 @@ public class VehicleController {
 
 
     /**
-     * Get vehicles moving above speed - CORRIGÉ
+     * Get vehicles moving above speed, from the motion state kept at ingest
      */
     @GetMapping("/moving-above-speed")
-    public ResponseEntity<List<Vehicle>> getVehiclesMovingAboveSpeed(
+    public ResponseEntity<List<VehicleMotionDTO>> getVehiclesMovingAboveSpeed(
             @RequestParam(defaultValue = "50.0") Double minSpeed,
             @RequestParam(defaultValue = "30") Integer minutesBack) {
         try {
             LocalDateTime recentTime = LocalDateTime.now().minusMinutes(minutesBack);
-            List<Vehicle> vehicles = vehicleRepository.findVehiclesMovingAboveSpeed(minSpeed, recentTime);
+            List<VehicleMotionDTO> vehicles = vehicleMotionTracker.findMovingAboveSpeed(minSpeed, recentTime);
             return ResponseEntity.ok(vehicles);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -819,14 +947,15 @@ public class VehicleController {
 
 
     /**
-     * Get stationary vehicles
+     * Get stationary vehicles (idling or stopped at a stop), from the motion state kept at ingest
      */
     @GetMapping("/stationary")
-    public ResponseEntity<List<Vehicle>> getStationaryVehicles(
+    public ResponseEntity<List<VehicleMotionDTO>> getStationaryVehicles(
             @RequestParam(defaultValue = "30") Integer minutesBack) {
         try {
             LocalDateTime recentTime = LocalDateTime.now().minusMinutes(minutesBack);
-            List<Vehicle> vehicles = vehicleRepository.findStationaryVehicles(recentTime);
+            List<VehicleMotionDTO> vehicles = vehicleMotionTracker.findByStates(
+                    EnumSet.of(VehicleMotionState.IDLING, VehicleMotionState.STOPPED_AT_STOP), recentTime);
             return ResponseEntity.ok(vehicles);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -845,9 +974,9 @@ public class VehicleController {
             @RequestParam(defaultValue = "60") Integer minutesBack) {
         try {
             LocalDateTime recentTime = LocalDateTime.now().minusMinutes(minutesBack);
-            List<Vehicle> vehicles = vehicleRepository.findVehiclesInBounds(
+            List<VehicleSpatialIndex.Hit> hits = vehicleSpatialIndex.findInBounds(
                     minLatitude, maxLatitude, minLongitude, maxLongitude, recentTime);
-            return ResponseEntity.ok(vehicles);
+            return ResponseEntity.ok(loadVehicles(hits));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -864,27 +993,98 @@ public class VehicleController {
             @RequestParam(defaultValue = "60") Integer minutesBack) {
         try {
             LocalDateTime recentTime = LocalDateTime.now().minusMinutes(minutesBack);
-            List<Vehicle> vehicles = vehicleRepository.findVehiclesInRadius(
+            List<VehicleSpatialIndex.Hit> hits = vehicleSpatialIndex.findInRadius(
                     latitude, longitude, radiusKm, recentTime);
-            return ResponseEntity.ok(vehicles);
+            return ResponseEntity.ok(loadVehicles(hits));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
+    /**
+     * Get the k vehicles nearest to a point
+     */
+    @GetMapping("/nearest")
+    public ResponseEntity<?> getNearestVehicles(
+            @RequestParam Double latitude,
+            @RequestParam Double longitude,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(defaultValue = "60") Integer minutesBack) {
+        try {
+            LocalDateTime recentTime = LocalDateTime.now().minusMinutes(minutesBack);
+            List<VehicleSpatialIndex.Hit> hits = vehicleSpatialIndex.findNearest(latitude, longitude, k, recentTime);
+            return ResponseEntity.ok(hits);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to find nearest vehicles: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Ingest a batch of GPS pings from the fleet; pings are written asynchronously
+     */
+    @PostMapping("/locations/batch")
+    public ResponseEntity<?> ingestVehicleLocations(@RequestBody List<VehicleLocationCreateDTO> pings) {
+        try {
+            GPSIngestService.IngestResult result = gpsIngestService.submit(pings);
+            if (result.isQueueFull()) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(Map.of("error", "GPS ingest queue is full, retry later"));
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("accepted", result.getAccepted());
+            response.put("rejected", result.getRejected());
+            if (result.getRejected() > 0) {
+                response.put("rejectedIndexes", result.getRejectedIndexes());
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to ingest vehicle locations: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * GPS ingest queue statistics
+     */
+    @GetMapping("/locations/ingest/statistics")
+    public ResponseEntity<?> getIngestStatistics() {
+        return ResponseEntity.ok(gpsIngestService.getStatistics());
+    }
+
+    /**
+     * Record a GPS fix for a vehicle
+     */
+    @PostMapping("/{id}/location")
+    public ResponseEntity<?> updateVehicleLocation(@PathVariable Long id,
+                                                   @Valid @RequestBody VehicleLocationCreateDTO locationDTO) {
+        try {
+            locationDTO.setVehicleId(id);
+            VehicleLocationDTO savedLocation = gpsTrackingService.updateVehicleLocation(locationDTO);
+            return ResponseEntity.status(HttpStatus.CREATED).body(savedLocation);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to update vehicle location: " + e.getMessage()));
+        }
+    }
+
     /**
      * Get vehicle current location
      */
     @GetMapping("/{id}/location")
     public ResponseEntity<?> getVehicleCurrentLocation(@PathVariable Long id) {
         try {
-            Optional<Vehicle> optionalVehicle = vehicleRepository.findById(id);
-            if (!optionalVehicle.isPresent()) {
+            if (!vehicleRepository.existsById(id)) {
                 return ResponseEntity.notFound().build();
             }
 
-            Vehicle vehicle = optionalVehicle.get();
-            VehicleLocation currentLocation = vehicle.getCurrentLocation();
+            VehicleLocationDTO currentLocation = vehiclePositionStore.getLatest(id);
 
             if (currentLocation == null) {
                 return ResponseEntity.ok(Map.of("message", "No location data available"));
@@ -898,21 +1098,29 @@ public class VehicleController {
     }
 
     /**
-     * Get vehicle location history
+     * Get vehicle location history (latest fixes, or a simplified track for a time range)
      */
     @GetMapping("/{id}/location/history")
     public ResponseEntity<?> getVehicleLocationHistory(
             @PathVariable Long id,
-            @RequestParam(defaultValue = "50") int limit) {
-        try {
-            Optional<Vehicle> optionalVehicle = vehicleRepository.findById(id);
-            if (!optionalVehicle.isPresent()) {
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(defaultValue = "10.0") Double tolerance) {
+        try {
+            // A time range switches to the simplified, polyline-encoded track
+            if (startTime != null && endTime != null) {
+                return ResponseEntity.ok(gpsTrackingService.getSimplifiedLocationHistory(id, startTime, endTime, tolerance));
+            }
+
+            if (!vehicleRepository.existsById(id)) {
                 return ResponseEntity.notFound().build();
             }
 
-            Vehicle vehicle = optionalVehicle.get();
-            List<VehicleLocation> locations = vehicle.getRecentLocations(limit);
+            List<VehicleLocationDTO> locations = vehiclePositionStore.getRecent(id, limit);
             return ResponseEntity.ok(locations);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to get location history: " + e.getMessage()));
@@ -921,6 +1129,107 @@ public class VehicleController {
 
     // =================== Statistics and Analytics ===================
 
+    /**
+     * Get vehicle route in a time window, from raw fixes or rollups depending on the window
+     */
+    @GetMapping("/{id}/location/route")
+    public ResponseEntity<?> getVehicleRoute(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam(required = false) VehicleLocationHistoryService.Resolution resolution) {
+        try {
+            if (!vehicleRepository.existsById(id)) {
+                return ResponseEntity.notFound().build();
+            }
+
+            VehicleLocationHistoryService.Resolution used = resolution != null
+                    ? resolution : vehicleLocationHistoryService.chooseResolution(startTime, endTime);
+            List<VehicleLocationDTO> route = vehicleLocationHistoryService.getRoute(id, startTime, endTime, used);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("vehicleId", id);
+            response.put("resolution", used);
+            response.put("count", route.size());
+            response.put("points", route);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to fetch vehicle route: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get vehicle location statistics in a time window
+     */
+    @GetMapping("/{id}/location/statistics")
+    public ResponseEntity<?> getVehicleLocationStatistics(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        try {
+            if (!vehicleRepository.existsById(id)) {
+                return ResponseEntity.notFound().build();
+            }
+
+            VehicleLocationHistoryService.Resolution resolution =
+                    vehicleLocationHistoryService.chooseResolution(startTime, endTime);
+            Map<String, Object> statistics = vehicleLocationHistoryService.getStatistics(id, startTime, endTime, resolution);
+            statistics.put("vehicleId", id);
+            return ResponseEntity.ok(statistics);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to fetch location statistics: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get distance traveled by a vehicle in a time window
+     */
+    @GetMapping("/{id}/distance")
+    public ResponseEntity<?> getVehicleDistance(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        try {
+            if (!vehicleRepository.existsById(id)) {
+                return ResponseEntity.notFound().build();
+            }
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("vehicleId", id);
+            response.put("startTime", startTime);
+            response.put("endTime", endTime);
+            response.put("distanceKm", gpsTrackingService.calculateDistanceTraveled(id, startTime, endTime));
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to calculate vehicle distance: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get distance traveled by the fleet in a time window, with a per-vehicle breakdown
+     */
+    @GetMapping("/distance")
+    public ResponseEntity<?> getFleetDistance(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        try {
+            Map<Long, Double> byVehicle = vehicleDistanceService.getDistanceByVehicle(startTime, endTime);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("startTime", startTime);
+            response.put("endTime", endTime);
+            response.put("totalDistanceKm", byVehicle.values().stream().mapToDouble(Double::doubleValue).sum());
+            response.put("distanceByVehicle", byVehicle);
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to calculate fleet distance: " + e.getMessage()));
+        }
+    }
+
     /**
      * Get vehicle statistics
      */
@@ -935,13 +1244,19 @@ public class VehicleController {
             Vehicle vehicle = optionalVehicle.get();
             Map<String, Object> stats = new HashMap<>();
 
+            // Current figures come from the position store, not the locations collection
+            VehicleLocationDTO current = vehiclePositionStore.getLatest(id);
+            double currentSpeed = current != null && current.getSpeed() != null ? current.getSpeed() : 0.0;
+            int passengerCount = current != null && current.getPassengerCount() != null ? current.getPassengerCount() : 0;
+            int capacity = vehicle.getCapacity() != null ? vehicle.getCapacity() : 0;
+
             stats.put("vehicleId", vehicle.getId());
             stats.put("vehicleNumber", vehicle.getVehicleNumber());
-            stats.put("currentSpeed", vehicle.getCurrentSpeed());
-            stats.put("currentPassengerCount", vehicle.getCurrentPassengerCount());
-            stats.put("occupancyRate", vehicle.getOccupancyRate());
-            stats.put("isOverCapacity", vehicle.isOverCapacity());
-            stats.put("isMoving", vehicle.isMoving());
+            stats.put("currentSpeed", currentSpeed);
+            stats.put("currentPassengerCount", passengerCount);
+            stats.put("occupancyRate", capacity > 0 ? (double) passengerCount / capacity : 0.0);
+            stats.put("isOverCapacity", passengerCount > capacity);
+            stats.put("isMoving", currentSpeed > 0);
             stats.put("isOperational", vehicle.isOperational());
             stats.put("isMaintenanceRequired", vehicle.isMaintenanceRequired());
             stats.put("daysSinceLastMaintenance", vehicle.getDaysSinceLastMaintenance());
@@ -993,61 +1308,7 @@ public class VehicleController {
     @GetMapping("/statistics/fleet")
     public ResponseEntity<?> getFleetStatistics() {
         try {
-            Map<String, Object> stats = new HashMap<>();
-
-            // Total vehicles
-            long totalVehicles = vehicleRepository.count();
-            stats.put("totalVehicles", totalVehicles);
-
-            // Active vs Inactive
-            long activeVehicles = vehicleRepository.countByIsActiveTrue();
-            long inactiveVehicles = vehicleRepository.countByIsActiveFalse();
-            stats.put("activeVehicles", activeVehicles);
-            stats.put("inactiveVehicles", inactiveVehicles);
-
-            // Status breakdown
-            Map<String, Long> statusBreakdown = new HashMap<>();
-            for (VehicleStatus status : VehicleStatus.values()) {
-                long count = vehicleRepository.countByStatus(status);
-                statusBreakdown.put(status.name(), count);
-            }
-            stats.put("statusBreakdown", statusBreakdown);
-
-            // Operational vehicles
-            long operationalVehicles = vehicleRepository.countOperationalVehicles();
-            stats.put("operationalVehicles", operationalVehicles);
-
-            // Maintenance statistics
-            long vehiclesRequiringMaintenance = vehicleRepository.countVehiclesRequiringMaintenance(LocalDateTime.now());
-            long vehiclesOverdueForMaintenance = vehicleRepository.countVehiclesOverdueForMaintenance(LocalDateTime.now());
-            stats.put("vehiclesRequiringMaintenance", vehiclesRequiringMaintenance);
-            stats.put("vehiclesOverdueForMaintenance", vehiclesOverdueForMaintenance);
-
-            // Route assignment
-            long assignedVehicles = vehicleRepository.countByRouteIsNotNull();
-            long unassignedVehicles = vehicleRepository.countByRouteIsNull();
-            stats.put("assignedVehicles", assignedVehicles);
-            stats.put("unassignedVehicles", unassignedVehicles);
-
-            // Capacity statistics
-            Double averageCapacity = vehicleRepository.findAverageCapacity();
-            Integer maxCapacity = vehicleRepository.findMaxCapacityValue();
-            Integer minCapacity = vehicleRepository.findMinCapacityValue();
-            stats.put("averageCapacity", averageCapacity);
-            stats.put("maxCapacity", maxCapacity);
-            stats.put("minCapacity", minCapacity);
-
-            // Feature statistics
-            long accessibleVehicles = vehicleRepository.countByIsAccessibleTrue();
-            long vehiclesWithAC = vehicleRepository.countByHasAirConditioningTrue();
-            long vehiclesWithWifi = vehicleRepository.countByHasWifiTrue();
-            long vehiclesWithGps = vehicleRepository.countByHasGpsTrue();
-            stats.put("accessibleVehicles", accessibleVehicles);
-            stats.put("vehiclesWithAC", vehiclesWithAC);
-            stats.put("vehiclesWithWifi", vehiclesWithWifi);
-            stats.put("vehiclesWithGPS", vehiclesWithGps);
-
-            return ResponseEntity.ok(stats);
+            return ResponseEntity.ok(fleetStatisticsService.getSnapshot().getFleet());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to get fleet statistics: " + e.getMessage()));
@@ -1063,16 +1324,7 @@ public class VehicleController {
     @GetMapping("/statistics/by-type")
     public ResponseEntity<?> getVehicleTypeStatistics() {
         try {
-            List<Object[]> typeStats = vehicleRepository.countVehiclesByType();
-            Map<String, Long> stats = new HashMap<>();
-
-            for (Object[] row : typeStats) {
-                String type = (String) row[0];
-                Long count = (Long) row[1];
-                stats.put(type, count);
-            }
-
-            return ResponseEntity.ok(stats);
+            return ResponseEntity.ok(fleetStatisticsService.getSnapshot().getByType());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to get vehicle type statistics: " + e.getMessage()));
@@ -1084,14 +1336,7 @@ public class VehicleController {
     @GetMapping("/statistics/by-fuel-type")
     public ResponseEntity<?> getFuelTypeStatistics() {
         try {
-            Map<String, Long> stats = new HashMap<>();
-
-            for (FuelType fuelType : FuelType.values()) {
-                long count = vehicleRepository.countByFuelType(fuelType);
-                stats.put(fuelType.name(), count);
-            }
-
-            return ResponseEntity.ok(stats);
+            return ResponseEntity.ok(fleetStatisticsService.getSnapshot().getByFuelType());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to get fuel type statistics: " + e.getMessage()));
@@ -1166,21 +1411,9 @@ public class VehicleController {
             @RequestParam List<Long> vehicleIds,
             @RequestParam VehicleStatus status) {
         try {
-            List<Vehicle> updatedVehicles = new ArrayList<>();
-
-            for (Long vehicleId : vehicleIds) {
-                Optional<Vehicle> optionalVehicle = vehicleRepository.findById(vehicleId);
-                if (optionalVehicle.isPresent()) {
-                    Vehicle vehicle = optionalVehicle.get();
-                    vehicle.setStatus(status);
-                    updatedVehicles.add(vehicleRepository.save(vehicle));
-                }
-            }
-
-            return ResponseEntity.ok(Map.of(
-                    "message", "Updated " + updatedVehicles.size() + " vehicles",
-                    "updatedVehicles", updatedVehicles
-            ));
+            VehicleBulkService.BulkResult result = vehicleBulkService.updateStatus(vehicleIds, status);
+            return ResponseEntity.ok(bulkResponse(
+                    "Updated " + result.getAffectedIds().size() + " vehicles", "updated", result));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to bulk update status: " + e.getMessage()));
@@ -1200,21 +1433,9 @@ public class VehicleController {
                         .body(Map.of("error", "Route not found"));
             }
 
-            List<Vehicle> updatedVehicles = new ArrayList<>();
-
-            for (Long vehicleId : vehicleIds) {
-                Optional<Vehicle> optionalVehicle = vehicleRepository.findById(vehicleId);
-                if (optionalVehicle.isPresent()) {
-                    Vehicle vehicle = optionalVehicle.get();
-                    vehicle.assignToRoute(routeRepository.findById(routeId).get());
-                    updatedVehicles.add(vehicleRepository.save(vehicle));
-                }
-            }
-
-            return ResponseEntity.ok(Map.of(
-                    "message", "Assigned " + updatedVehicles.size() + " vehicles to route",
-                    "updatedVehicles", updatedVehicles
-            ));
+            VehicleBulkService.BulkResult result = vehicleBulkService.assignRoute(vehicleIds, routeId);
+            return ResponseEntity.ok(bulkResponse(
+                    "Assigned " + result.getAffectedIds().size() + " vehicles to route", "updated", result));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to bulk assign to route: " + e.getMessage()));
@@ -1227,21 +1448,9 @@ public class VehicleController {
     @PatchMapping("/bulk/activate")
     public ResponseEntity<?> bulkActivateVehicles(@RequestParam List<Long> vehicleIds) {
         try {
-            List<Vehicle> updatedVehicles = new ArrayList<>();
-
-            for (Long vehicleId : vehicleIds) {
-                Optional<Vehicle> optionalVehicle = vehicleRepository.findById(vehicleId);
-                if (optionalVehicle.isPresent()) {
-                    Vehicle vehicle = optionalVehicle.get();
-                    vehicle.activate();
-                    updatedVehicles.add(vehicleRepository.save(vehicle));
-                }
-            }
-
-            return ResponseEntity.ok(Map.of(
-                    "message", "Activated " + updatedVehicles.size() + " vehicles",
-                    "updatedVehicles", updatedVehicles
-            ));
+            VehicleBulkService.BulkResult result = vehicleBulkService.activate(vehicleIds);
+            return ResponseEntity.ok(bulkResponse(
+                    "Activated " + result.getAffectedIds().size() + " vehicles", "updated", result));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to bulk activate vehicles: " + e.getMessage()));
@@ -1254,21 +1463,9 @@ public class VehicleController {
     @PatchMapping("/bulk/deactivate")
     public ResponseEntity<?> bulkDeactivateVehicles(@RequestParam List<Long> vehicleIds) {
         try {
-            List<Vehicle> updatedVehicles = new ArrayList<>();
-
-            for (Long vehicleId : vehicleIds) {
-                Optional<Vehicle> optionalVehicle = vehicleRepository.findById(vehicleId);
-                if (optionalVehicle.isPresent()) {
-                    Vehicle vehicle = optionalVehicle.get();
-                    vehicle.deactivate();
-                    updatedVehicles.add(vehicleRepository.save(vehicle));
-                }
-            }
-
-            return ResponseEntity.ok(Map.of(
-                    "message", "Deactivated " + updatedVehicles.size() + " vehicles",
-                    "updatedVehicles", updatedVehicles
-            ));
+            VehicleBulkService.BulkResult result = vehicleBulkService.deactivate(vehicleIds);
+            return ResponseEntity.ok(bulkResponse(
+                    "Deactivated " + result.getAffectedIds().size() + " vehicles", "updated", result));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to bulk deactivate vehicles: " + e.getMessage()));
@@ -1281,33 +1478,33 @@ public class VehicleController {
     @DeleteMapping("/bulk")
     public ResponseEntity<?> bulkDeleteVehicles(@RequestParam List<Long> vehicleIds) {
         try {
-            List<Long> deletedIds = new ArrayList<>();
-            List<Long> notFoundIds = new ArrayList<>();
-
-            for (Long vehicleId : vehicleIds) {
-                if (vehicleRepository.existsById(vehicleId)) {
-                    vehicleRepository.deleteById(vehicleId);
-                    deletedIds.add(vehicleId);
-                } else {
-                    notFoundIds.add(vehicleId);
-                }
-            }
-
-            Map<String, Object> response = new HashMap<>();
-            response.put("message", "Bulk delete completed");
-            response.put("deletedCount", deletedIds.size());
-            response.put("deletedIds", deletedIds);
-            if (!notFoundIds.isEmpty()) {
-                response.put("notFoundIds", notFoundIds);
+            VehicleBulkService.BulkResult result = vehicleBulkService.delete(vehicleIds);
+            for (Long vehicleId : result.getAffectedIds()) {
+                gpsIngestService.forgetVehicle(vehicleId);
+                vehicleLocationFanout.remove(vehicleId);
             }
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(bulkResponse("Bulk delete completed", "deleted", result));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to bulk delete vehicles: " + e.getMessage()));
         }
     }
 
+    // <action>Count and <action>Ids, plus notFoundIds and conflictIds when not empty
+    private static Map<String, Object> bulkResponse(String message, String action, VehicleBulkService.BulkResult result) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", message);
+        response.put(action + "Count", result.getAffectedIds().size());
+        response.put(action + "Ids", result.getAffectedIds());
+        if (!result.getNotFoundIds().isEmpty()) {
+            response.put("notFoundIds", result.getNotFoundIds());
+        }
+        if (!result.getConflictIds().isEmpty()) {
+            response.put("conflictIds", result.getConflictIds());
+        }
+        return response;
+    }
+
 // =================== Advanced Search and Filtering ===================
     /**
      * Advanced vehicle search with multiple filters (version corrigée)
@@ -1397,8 +1594,13 @@ public class VehicleController {
             Map<String, Object> options = new HashMap<>();
 
             options.put("vehicleTypes", vehicleRepository.findDistinctVehicleTypes());
-            options.put("manufacturers", vehicleRepository.findDistinctManufacturers());
-            options.put("models", vehicleRepository.findDistinctModels());
+            if (vehicleAutocompleteIndex.isLoaded()) {
+                options.put("manufacturers", vehicleAutocompleteIndex.values(VehicleAutocompleteIndex.Field.MANUFACTURER));
+                options.put("models", vehicleAutocompleteIndex.values(VehicleAutocompleteIndex.Field.MODEL));
+            } else {
+                options.put("manufacturers", vehicleRepository.findDistinctManufacturers());
+                options.put("models", vehicleRepository.findDistinctModels());
+            }
             options.put("fuelTypes", vehicleRepository.findDistinctFuelTypes());
             options.put("years", vehicleRepository.findDistinctYears());
             options.put("statuses", Arrays.asList(VehicleStatus.values()));
@@ -1425,24 +1627,7 @@ public class VehicleController {
     @GetMapping("/statistics/comprehensive")
     public ResponseEntity<?> getComprehensiveStatistics() {
         try {
-            Object[] rawStats = vehicleRepository.getComprehensiveVehicleStatistics();
-
-            Map<String, Object> stats = new HashMap<>();
-            if (rawStats != null && rawStats.length > 0) {
-                stats.put("totalVehicles", rawStats[0]);
-                stats.put("activeVehicles", rawStats[1]);
-                stats.put("vehiclesInTransit", rawStats[2]);
-                stats.put("vehiclesInMaintenance", rawStats[3]);
-                stats.put("vehiclesInBreakdown", rawStats[4]);
-                stats.put("activeReadyVehicles", rawStats[5]);
-                stats.put("accessibleVehicles", rawStats[6]);
-                stats.put("wifiEnabledVehicles", rawStats[7]);
-                stats.put("gpsEnabledVehicles", rawStats[8]);
-                stats.put("totalCapacity", rawStats[9]);
-                stats.put("averageCapacity", rawStats[10]);
-            }
-
-            return ResponseEntity.ok(stats);
+            return ResponseEntity.ok(fleetStatisticsService.getSnapshot().getComprehensive());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to get comprehensive statistics: " + e.getMessage()));
@@ -1515,37 +1700,24 @@ public class VehicleController {
      * Export vehicles to CSV
      */
     @GetMapping("/export/csv")
-    public ResponseEntity<?> exportVehiclesToCsv() {
-        try {
-            List<Vehicle> vehicles = vehicleRepository.findAll();
-
-            StringBuilder csvContent = new StringBuilder();
-            csvContent.append("ID,Vehicle Number,License Plate,Capacity,Vehicle Type,Status,Manufacturer,Model,Year,Fuel Type,Is Active,Route ID\n");
-
-            for (Vehicle vehicle : vehicles) {
-                csvContent.append(vehicle.getId()).append(",")
-                        .append(vehicle.getVehicleNumber()).append(",")
-                        .append(vehicle.getLicensePlate()).append(",")
-                        .append(vehicle.getCapacity()).append(",")
-                        .append(vehicle.getVehicleType()).append(",")
-                        .append(vehicle.getStatus()).append(",")
-                        .append(vehicle.getManufacturer() != null ? vehicle.getManufacturer() : "").append(",")
-                        .append(vehicle.getModel() != null ? vehicle.getModel() : "").append(",")
-                        .append(vehicle.getYear() != null ? vehicle.getYear() : "").append(",")
-                        .append(vehicle.getFuelType() != null ? vehicle.getFuelType() : "").append(",")
-                        .append(vehicle.getActive()).append(",")
-                        .append(vehicle.getRoute() != null ? vehicle.getRoute().getId() : "")
-                        .append("\n");
-            }
+    public ResponseEntity<StreamingResponseBody> exportVehiclesToCsv() {
+        StreamingResponseBody body = vehicleExportService::writeCsv;
+        return ResponseEntity.ok()
+                .header("Content-Type", "text/csv; charset=UTF-8")
+                .header("Content-Disposition", "attachment; filename=vehicles.csv")
+                .body(body);
+    }
 
-            return ResponseEntity.ok()
-                    .header("Content-Type", "text/csv")
-                    .header("Content-Disposition", "attachment; filename=vehicles.csv")
-                    .body(csvContent.toString());
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Failed to export vehicles: " + e.getMessage()));
-        }
+    /**
+     * Export vehicles to Excel
+     */
+    @GetMapping("/export/xlsx")
+    public ResponseEntity<StreamingResponseBody> exportVehiclesToXlsx() {
+        StreamingResponseBody body = vehicleExportService::writeXlsx;
+        return ResponseEntity.ok()
+                .header("Content-Type", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                .header("Content-Disposition", "attachment; filename=vehicles.xlsx")
+                .body(body);
     }
 
     // =================== Health Check and System Operations ===================
@@ -1576,6 +1748,30 @@ public class VehicleController {
 
     // =================== Utility Methods ===================
 
+    /**
+     * Load the vehicles matched by a spatial query, keeping the index order
+     */
+    private List<Vehicle> loadVehicles(List<VehicleSpatialIndex.Hit> hits) {
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (VehicleSpatialIndex.Hit hit : hits) {
+            ids.add(hit.getVehicleId());
+        }
+
+        Map<Long, Vehicle> byId = new HashMap<>();
+        for (Vehicle vehicle : vehicleRepository.findAllById(ids)) {
+            byId.put(vehicle.getId(), vehicle);
+        }
+
+        List<Vehicle> vehicles = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Vehicle vehicle = byId.get(id);
+            if (vehicle != null) {
+                vehicles.add(vehicle);
+            }
+        }
+        return vehicles;
+    }
+
     /**
      * Validate vehicle data
      */
@@ -1605,7 +1801,9 @@ public class VehicleController {
     @GetMapping("/manufacturers")
     public ResponseEntity<List<String>> getAllManufacturers() {
         try {
-            List<String> manufacturers = vehicleRepository.findDistinctManufacturers();
+            List<String> manufacturers = vehicleAutocompleteIndex.isLoaded()
+                    ? vehicleAutocompleteIndex.values(VehicleAutocompleteIndex.Field.MANUFACTURER)
+                    : vehicleRepository.findDistinctManufacturers();
             return ResponseEntity.ok(manufacturers);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
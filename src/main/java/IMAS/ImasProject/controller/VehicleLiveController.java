@@ -0,0 +1,44 @@
+package IMAS.ImasProject.controller;
+
+import IMAS.ImasProject.dto.ViewportDTO;
+import IMAS.ImasProject.services.VehicleViewportBroadcaster;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+
+/**
+ * STOMP entry points of the live vehicle map; positions are pushed to {@code /user/queue/vehicles}
+ */
+@Controller
+public class VehicleLiveController {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleLiveController.class);
+
+    private final VehicleViewportBroadcaster vehicleViewportBroadcaster;
+
+    public VehicleLiveController(VehicleViewportBroadcaster vehicleViewportBroadcaster) {
+        this.vehicleViewportBroadcaster = vehicleViewportBroadcaster;
+    }
+
+    @MessageMapping("/vehicles.viewport")
+    public void setViewport(@Payload ViewportDTO viewport, SimpMessageHeaderAccessor headerAccessor) {
+        if (viewport.getMinLatitude() == null || viewport.getMaxLatitude() == null
+                || viewport.getMinLongitude() == null || viewport.getMaxLongitude() == null
+                || viewport.getMinLatitude() > viewport.getMaxLatitude()
+                || viewport.getMinLongitude() > viewport.getMaxLongitude()) {
+            logger.warn("Ignoring invalid viewport from session {}", headerAccessor.getSessionId());
+            return;
+        }
+        vehicleViewportBroadcaster.setViewport(headerAccessor.getSessionId(),
+                viewport.getMinLatitude(), viewport.getMaxLatitude(),
+                viewport.getMinLongitude(), viewport.getMaxLongitude());
+    }
+
+    @MessageMapping("/vehicles.viewport.clear")
+    public void clearViewport(SimpMessageHeaderAccessor headerAccessor) {
+        vehicleViewportBroadcaster.clearViewport(headerAccessor.getSessionId());
+    }
+}
@@ -0,0 +1,24 @@
+package IMAS.ImasProject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BusPositionDTO {
+
+    private Long busId;
+    private Double currentLat;
+    private Double currentLng;
+    private Double progress;
+    private LocalDateTime arrivalTime;
+    private Boolean stopped;
+    private Boolean hasAccident;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,24 @@
+package IMAS.ImasProject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SimplifiedTrackDTO {
+
+    private Long vehicleId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Double toleranceMeters;
+    private Integer originalPoints;
+    private Integer simplifiedPoints;
+    // Google encoded polyline, precision 1e-5
+    private String encodedPolyline;
+}
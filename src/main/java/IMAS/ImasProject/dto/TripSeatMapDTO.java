@@ -0,0 +1,28 @@
+package IMAS.ImasProject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TripSeatMapDTO {
+
+    private Long busId;
+    private LocalDateTime departureTime;
+    private String origin;
+    private String destination;
+    private Integer capacity;
+    private Long version;
+    private List<Integer> takenSeats;
+    private List<Integer> boardedSeats;
+    private List<Integer> heldSeats;
+    private Integer takenSeatsCount;
+    private Integer availableSeatsCount;
+}
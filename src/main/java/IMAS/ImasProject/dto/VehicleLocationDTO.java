@@ -13,10 +13,13 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class VehicleLocationDTO {
     private Long id;
+    private Long vehicleId;
     private Double latitude;
     private Double longitude;
     private Double speed;
     private Double heading;
     private Integer passengerCount;
     private LocalDateTime timestamp;
+    private Double accuracy;
+    private Double altitude;
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package IMAS.ImasProject.dto;
+
+import IMAS.ImasProject.model.VehicleMotionState;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VehicleMotionDTO {
+
+    private Long vehicleId;
+    private VehicleMotionState state;
+    private LocalDateTime stateSince;
+    private Double speed;
+    private Double latitude;
+    private Double longitude;
+    private LocalDateTime lastFixTime;
+    private Long stopId;
+}
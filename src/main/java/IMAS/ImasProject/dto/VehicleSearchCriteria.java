@@ -0,0 +1,23 @@
+package IMAS.ImasProject.dto;
+
+import IMAS.ImasProject.model.FuelType;
+import IMAS.ImasProject.model.VehicleStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class VehicleSearchCriteria {
+    private String keyword;
+    private VehicleStatus status;
+    private String vehicleType;
+    private FuelType fuelType;
+    private Boolean isActive;
+    private Long routeId;
+    private Integer minCapacity;
+    private Integer maxCapacity;
+}
@@ -0,0 +1,25 @@
+package IMAS.ImasProject.dto;
+
+import IMAS.ImasProject.model.VehicleStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VehicleSearchResultDTO {
+
+    private Long id;
+    private String vehicleNumber;
+    private String licensePlate;
+    private VehicleStatus status;
+    private String routeCode;
+    private Double lastLatitude;
+    private Double lastLongitude;
+    private LocalDateTime lastFixTime;
+}
@@ -0,0 +1,19 @@
+package IMAS.ImasProject.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VehicleSuggestionDTO {
+
+    private String field;
+    private String value;
+    private Integer vehicleCount;
+    // Set when the value belongs to a single vehicle
+    private Long vehicleId;
+}
@@ -0,0 +1,9 @@
+package IMAS.ImasProject.events;
+
+import org.springframework.context.ApplicationEvent;
+
+public class FareMatrixChangedEvent extends ApplicationEvent {
+    public FareMatrixChangedEvent(Object source) {
+        super(source);
+    }
+}
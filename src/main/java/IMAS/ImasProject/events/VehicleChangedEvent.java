@@ -0,0 +1,32 @@
+package IMAS.ImasProject.events;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class VehicleChangedEvent extends ApplicationEvent {
+    private final List<Long> vehicleIds;
+
+    public VehicleChangedEvent(Object source, Long vehicleId) {
+        super(source);
+        this.vehicleIds = vehicleId != null ? List.of(vehicleId) : Collections.emptyList();
+    }
+
+    public VehicleChangedEvent(Object source, Collection<Long> vehicleIds) {
+        super(source);
+        this.vehicleIds = List.copyOf(vehicleIds);
+    }
+
+    /**
+     * The changed vehicle, or null when the event covers several vehicles
+     */
+    public Long getVehicleId() {
+        return vehicleIds.size() == 1 ? vehicleIds.get(0) : null;
+    }
+
+    public List<Long> getVehicleIds() {
+        return vehicleIds;
+    }
+}
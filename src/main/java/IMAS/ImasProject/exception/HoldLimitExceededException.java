@@ -0,0 +1,7 @@
+package IMAS.ImasProject.exception;
+
+public class HoldLimitExceededException extends RuntimeException {
+    public HoldLimitExceededException(String message) {
+        super(message);
+    }
+}
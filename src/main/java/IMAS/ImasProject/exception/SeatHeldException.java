@@ -0,0 +1,7 @@
+package IMAS.ImasProject.exception;
+
+public class SeatHeldException extends SeatUnavailableException {
+    public SeatHeldException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package IMAS.ImasProject.exception;
+
+public class SeatUnavailableException extends RuntimeException {
+    public SeatUnavailableException(String message) {
+        super(message);
+    }
+}
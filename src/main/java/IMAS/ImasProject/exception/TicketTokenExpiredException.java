@@ -0,0 +1,7 @@
+package IMAS.ImasProject.exception;
+
+public class TicketTokenExpiredException extends IllegalArgumentException {
+    public TicketTokenExpiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,56 @@
+package IMAS.ImasProject.listeners;
+
+import IMAS.ImasProject.model.Ticket;
+import IMAS.ImasProject.services.PassengerStatsService;
+import IMAS.ImasProject.services.RevenueCubeService;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the revenue cube and the passenger counters in step with every ticket written through JPA,
+ * in the writing transaction. What a ticket was counted as is remembered on the ticket when it
+ * is loaded or written.
+ */
+@Component
+public class TicketRevenueListener {
+
+    // Lazy: both services need the transaction manager, which is built after the entity listeners
+    @Autowired
+    @Lazy
+    private RevenueCubeService revenueCubeService;
+
+    @Autowired
+    @Lazy
+    private PassengerStatsService passengerStatsService;
+
+    @PostLoad
+    public void onTicketLoaded(Ticket ticket) {
+        ticket.setRevenueCell(RevenueCubeService.cellOf(ticket));
+        ticket.setPassengerStatsEntry(PassengerStatsService.entryOf(ticket));
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onTicketSaved(Ticket ticket) {
+        RevenueCubeService.Cell cell = RevenueCubeService.cellOf(ticket);
+        revenueCubeService.move(ticket.getRevenueCell(), cell);
+        ticket.setRevenueCell(cell);
+
+        PassengerStatsService.Entry entry = PassengerStatsService.entryOf(ticket);
+        passengerStatsService.move(ticket.getPassengerStatsEntry(), entry);
+        ticket.setPassengerStatsEntry(entry);
+    }
+
+    @PostRemove
+    public void onTicketRemoved(Ticket ticket) {
+        revenueCubeService.move(ticket.getRevenueCell(), null);
+        ticket.setRevenueCell(null);
+        passengerStatsService.move(ticket.getPassengerStatsEntry(), null);
+        ticket.setPassengerStatsEntry(null);
+    }
+}
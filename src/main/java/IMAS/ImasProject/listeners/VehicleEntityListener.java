@@ -0,0 +1,27 @@
+package IMAS.ImasProject.listeners;
+
+import IMAS.ImasProject.events.VehicleChangedEvent;
+import IMAS.ImasProject.model.Vehicle;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes a {@link VehicleChangedEvent} whenever a vehicle is created, updated or deleted through JPA
+ */
+@Component
+public class VehicleEntityListener {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onVehicleChanged(Vehicle vehicle) {
+        eventPublisher.publishEvent(new VehicleChangedEvent(this, vehicle.getId()));
+    }
+}
@@ -0,0 +1,86 @@
+package IMAS.ImasProject.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Fare multiplier between two stations, applied to the base fare. A rule also prices the
+ * reverse direction unless that direction has its own rule.
+ */
+@Entity
+@Table(name = "fare_matrix",
+        uniqueConstraints = @UniqueConstraint(name = "uk_fare_matrix_route", columnNames = {"origin", "destination"}))
+public class FareRule {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "origin", nullable = false, length = 100)
+    private String origin;
+
+    @Column(name = "destination", nullable = false, length = 100)
+    private String destination;
+
+    @Column(name = "multiplier", nullable = false)
+    private Double multiplier;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public FareRule() {}
+
+    public FareRule(String origin, String destination, Double multiplier) {
+        this.origin = origin;
+        this.destination = destination;
+        this.multiplier = multiplier;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public Double getMultiplier() {
+        return multiplier;
+    }
+
+    public void setMultiplier(Double multiplier) {
+        this.multiplier = multiplier;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,75 @@
+package IMAS.ImasProject.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Login attempt counts by hour, role and outcome, written with the attempts themselves by
+ * {@code LoginTrackingService}. Attempts without a role are counted under an empty role.
+ */
+@Entity
+@Table(name = "login_attempt_counts",
+        uniqueConstraints = @UniqueConstraint(name = "uk_login_attempt_counts",
+                columnNames = {"hour_start", "user_role", "successful"}))
+public class LoginAttemptCount {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "hour_start", nullable = false)
+    private LocalDateTime hourStart;
+
+    @Column(name = "user_role", nullable = false, length = 20)
+    private String userRole;
+
+    @Column(name = "successful", nullable = false)
+    private Boolean successful;
+
+    @Column(name = "attempt_count", nullable = false)
+    private Long attemptCount = 0L;
+
+    // Constructors
+    public LoginAttemptCount() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getHourStart() {
+        return hourStart;
+    }
+
+    public void setHourStart(LocalDateTime hourStart) {
+        this.hourStart = hourStart;
+    }
+
+    public String getUserRole() {
+        return userRole;
+    }
+
+    public void setUserRole(String userRole) {
+        this.userRole = userRole;
+    }
+
+    public Boolean getSuccessful() {
+        return successful;
+    }
+
+    public void setSuccessful(Boolean successful) {
+        this.successful = successful;
+    }
+
+    public Long getAttemptCount() {
+        return attemptCount;
+    }
+
+    public void setAttemptCount(Long attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+}
@@ -0,0 +1,66 @@
+package IMAS.ImasProject.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Lifetime count and spend of a passenger's paid and boarded tickets, kept in step with the
+ * ticket table by {@code TicketRevenueListener}. Spend is priced by the fare engine and
+ * recomputed when the fare matrix changes, as re-priced tickets were.
+ */
+@Entity
+@Table(name = "passenger_ticket_stats",
+        indexes = {
+                @Index(name = "idx_passenger_ticket_stats_count", columnList = "ticket_count"),
+                @Index(name = "idx_passenger_ticket_stats_spent", columnList = "total_spent")
+        })
+public class PassengerTicketStats {
+
+    @Id
+    @Column(name = "passenger_id")
+    private Long passengerId;
+
+    @Column(name = "passenger_name", length = 201)
+    private String passengerName;
+
+    @Column(name = "ticket_count", nullable = false)
+    private Long ticketCount = 0L;
+
+    @Column(name = "total_spent", nullable = false)
+    private Double totalSpent = 0.0;
+
+    // Constructors
+    public PassengerTicketStats() {}
+
+    // Getters and Setters
+    public Long getPassengerId() {
+        return passengerId;
+    }
+
+    public void setPassengerId(Long passengerId) {
+        this.passengerId = passengerId;
+    }
+
+    public String getPassengerName() {
+        return passengerName;
+    }
+
+    public void setPassengerName(String passengerName) {
+        this.passengerName = passengerName;
+    }
+
+    public Long getTicketCount() {
+        return ticketCount;
+    }
+
+    public void setTicketCount(Long ticketCount) {
+        this.ticketCount = ticketCount;
+    }
+
+    public Double getTotalSpent() {
+        return totalSpent;
+    }
+
+    public void setTotalSpent(Double totalSpent) {
+        this.totalSpent = totalSpent;
+    }
+}
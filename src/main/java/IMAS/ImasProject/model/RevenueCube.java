@@ -0,0 +1,122 @@
+package IMAS.ImasProject.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Ticket counts by issue day, bus, driver, route, status and luggage, kept in step with the
+ * ticket table by {@code TicketRevenueListener}. Revenue is the count priced by the fare
+ * engine, so a fare change applies to past cells as it did to re-priced tickets. A ticket
+ * without driver is counted under driver 0.
+ */
+@Entity
+@Table(name = "revenue_cube",
+        uniqueConstraints = @UniqueConstraint(name = "uk_revenue_cube",
+                columnNames = {"day", "bus_id", "driver_id", "origin", "destination", "status", "has_luggage"}),
+        indexes = @Index(name = "idx_revenue_cube_status_day", columnList = "status, day"))
+public class RevenueCube {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "day", nullable = false)
+    private LocalDate day;
+
+    @Column(name = "bus_id", nullable = false)
+    private Long busId;
+
+    @Column(name = "driver_id", nullable = false)
+    private Long driverId;
+
+    @Column(name = "origin", nullable = false, length = 100)
+    private String origin;
+
+    @Column(name = "destination", nullable = false, length = 100)
+    private String destination;
+
+    @Column(name = "status", nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "has_luggage", nullable = false)
+    private Boolean hasLuggage;
+
+    @Column(name = "ticket_count", nullable = false)
+    private Long ticketCount = 0L;
+
+    // Constructors
+    public RevenueCube() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public Long getBusId() {
+        return busId;
+    }
+
+    public void setBusId(Long busId) {
+        this.busId = busId;
+    }
+
+    public Long getDriverId() {
+        return driverId;
+    }
+
+    public void setDriverId(Long driverId) {
+        this.driverId = driverId;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Boolean getHasLuggage() {
+        return hasLuggage;
+    }
+
+    public void setHasLuggage(Boolean hasLuggage) {
+        this.hasLuggage = hasLuggage;
+    }
+
+    public Long getTicketCount() {
+        return ticketCount;
+    }
+
+    public void setTicketCount(Long ticketCount) {
+        this.ticketCount = ticketCount;
+    }
+}
@@ -1,13 +1,11 @@
 package IMAS.ImasProject.model;
 
 import IMAS.ImasProject.controller.TicketController;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
+import IMAS.ImasProject.listeners.TicketRevenueListener;
+import IMAS.ImasProject.services.PassengerStatsService;
+import IMAS.ImasProject.services.RevenueCubeService;
 import jakarta.persistence.*;
 
-import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
@@ -17,6 +15,7 @@ import org.slf4j.LoggerFactory;
 
 @Entity
 @Table(name = "ticket")
+@EntityListeners(TicketRevenueListener.class)
 public class Ticket {
     private static final Logger log = LoggerFactory.getLogger(TicketController.class);
 
@@ -57,10 +56,9 @@ public class Ticket {
     @Column(nullable = false, length = 20)
     private String status;
 
-    // Optimized QR Code storage with proper size specification
-    @Column(name = "qr_code", columnDefinition = "MEDIUMBLOB")
-    @Lob
-    @JsonIgnore // Prevent JSON serialization issues with large binary data
+    // QR code image rendered from getQrData() by QrCodeService; never stored on the ticket row
+    @Transient
+    @JsonIgnore
     private byte[] qrCode;
 
     @Column(name = "luggage_weight")
@@ -94,6 +92,16 @@ public class Ticket {
     private Trip trip;
 
     // Add these fields for JSON serialization without circular references
+    // Revenue cube cell this ticket is counted in, as last loaded or written
+    @Transient
+    @JsonIgnore
+    private RevenueCubeService.Cell revenueCell;
+
+    // Passenger counter entry this ticket is counted in, as last loaded or written
+    @Transient
+    @JsonIgnore
+    private PassengerStatsService.Entry passengerStatsEntry;
+
     @Transient
     private Long busId;
 
@@ -196,39 +204,6 @@ public class Ticket {
         }
     }
 
-    // Public method to generate QR code AFTER persistence (when ID is available)
-    public void generateQrCode() {
-        if (this.id == null) {
-            throw new IllegalStateException("Cannot generate QR code: Ticket ID is null. Save the ticket first.");
-        }
-
-        if (this.ticketNumber == null) {
-            throw new IllegalStateException("Cannot generate QR code: Ticket number is null.");
-        }
-
-        try {
-            String qrData = this.id + "-" + this.ticketNumber;
-            log.debug("Generating QR code with data: {}", qrData);
-
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(qrData, BarcodeFormat.QR_CODE, 200, 200);
-
-            ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
-            MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream);
-            this.qrCode = pngOutputStream.toByteArray();
-
-            log.debug("QR code generated successfully, size: {} bytes", this.qrCode.length);
-        } catch (Exception e) {
-            log.error("Error generating QR code for ticket {}: {}", this.id, e.getMessage());
-            throw new RuntimeException("Failed to generate QR code", e);
-        }
-    }
-
-    // Public method to regenerate QR code (useful for updates)
-    public void regenerateQrCode() {
-        generateQrCode();
-    }
-
     // Utility methods
     public boolean hasQrCode() {
         return qrCode != null && qrCode.length > 0;
@@ -363,6 +338,14 @@ public class Ticket {
     }
 
     // Transient field getters
+    @JsonIgnore
+    public RevenueCubeService.Cell getRevenueCell() { return revenueCell; }
+    public void setRevenueCell(RevenueCubeService.Cell revenueCell) { this.revenueCell = revenueCell; }
+
+    @JsonIgnore
+    public PassengerStatsService.Entry getPassengerStatsEntry() { return passengerStatsEntry; }
+    public void setPassengerStatsEntry(PassengerStatsService.Entry passengerStatsEntry) { this.passengerStatsEntry = passengerStatsEntry; }
+
     public Long getBusId() { return busId; }
     public String getBusName() { return busName; }
     public Long getDriverId() { return driverId; }
@@ -0,0 +1,45 @@
+package IMAS.ImasProject.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Enumeration for time bucket granularities used by pre-aggregated counters
+ */
+public enum TimeBucket {
+    /**
+     * One bucket per clock minute
+     */
+    MINUTE(ChronoUnit.MINUTES),
+
+    /**
+     * One bucket per clock hour
+     */
+    HOUR(ChronoUnit.HOURS),
+
+    /**
+     * One bucket per calendar day
+     */
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    TimeBucket(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Start of the bucket containing the given time
+     */
+    public LocalDateTime truncate(LocalDateTime dateTime) {
+        return dateTime.truncatedTo(unit);
+    }
+
+    /**
+     * Start of the first bucket at or after the given time
+     */
+    public LocalDateTime ceil(LocalDateTime dateTime) {
+        LocalDateTime start = truncate(dateTime);
+        return start.equals(dateTime) ? start : start.plus(1, unit);
+    }
+}
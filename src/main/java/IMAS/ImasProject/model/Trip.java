@@ -8,7 +8,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "trips")
+@Table(name = "trips",
+        indexes = {
+                @Index(name = "idx_trips_created_at", columnList = "created_at"),
+                @Index(name = "idx_trips_driver_created_at", columnList = "driver_id, created_at")
+        })
 public class Trip {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,108 @@
+package IMAS.ImasProject.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Taken and boarded seats of one trip (bus, departure minute, origin, destination) as bitmaps, bit n-1
+ * being seat n. Changes are compare-and-set updates on the version column.
+ */
+@Entity
+@Table(name = "trip_seat_inventory",
+        uniqueConstraints = @UniqueConstraint(name = "uk_trip_seat_inventory",
+                columnNames = {"bus_id", "departure_time", "origin", "destination"}))
+public class TripSeatInventory {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bus_id", nullable = false)
+    private Long busId;
+
+    @Column(name = "departure_time", nullable = false)
+    private LocalDateTime departureTime;
+
+    @Column(name = "origin", nullable = false, length = 100)
+    private String origin;
+
+    @Column(name = "destination", nullable = false, length = 100)
+    private String destination;
+
+    @Column(name = "seats", nullable = false, columnDefinition = "VARBINARY(256)")
+    private byte[] seats;
+
+    @Column(name = "boarded", columnDefinition = "VARBINARY(256)")
+    private byte[] boarded;
+
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
+    // Constructors
+    public TripSeatInventory() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getBusId() {
+        return busId;
+    }
+
+    public void setBusId(Long busId) {
+        this.busId = busId;
+    }
+
+    public LocalDateTime getDepartureTime() {
+        return departureTime;
+    }
+
+    public void setDepartureTime(LocalDateTime departureTime) {
+        this.departureTime = departureTime;
+    }
+
+    public String getOrigin() {
+        return origin;
+    }
+
+    public void setOrigin(String origin) {
+        this.origin = origin;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public byte[] getSeats() {
+        return seats;
+    }
+
+    public void setSeats(byte[] seats) {
+        this.seats = seats;
+    }
+
+    public byte[] getBoarded() {
+        return boarded;
+    }
+
+    public void setBoarded(byte[] boarded) {
+        this.boarded = boarded;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+}
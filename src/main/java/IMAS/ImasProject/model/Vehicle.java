@@ -1,11 +1,13 @@
 package IMAS.ImasProject.model;
 
 import jakarta.persistence.*;
+import IMAS.ImasProject.listeners.VehicleEntityListener;
 import jakarta.validation.constraints.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import org.hibernate.annotations.DynamicUpdate;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import java.time.LocalDateTime;
@@ -17,8 +19,14 @@ import java.util.ArrayList;
         @Index(name = "idx_vehicle_number", columnList = "vehicleNumber"),
         @Index(name = "idx_license_plate", columnList = "licensePlate"),
         @Index(name = "idx_vehicle_route", columnList = "route_id"),
-        @Index(name = "idx_vehicle_status", columnList = "status")
+        @Index(name = "idx_vehicle_status", columnList = "status"),
+        @Index(name = "idx_vehicle_type", columnList = "vehicle_type"),
+        @Index(name = "idx_vehicle_capacity", columnList = "capacity")
 })
+@EntityListeners(VehicleEntityListener.class)
+// Only changed columns are written, so saving a vehicle keeps the odometer increments
+// VehicleDistanceService adds with SQL
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,87 @@
+package IMAS.ImasProject.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Distance driven by a vehicle during one hour or one day, accumulated from consecutive GPS fixes
+ */
+@Entity
+@Table(name = "vehicle_distance_buckets",
+        uniqueConstraints = @UniqueConstraint(name = "uk_distance_bucket",
+                columnNames = {"vehicle_id", "granularity", "bucket_start"}),
+        indexes = @Index(name = "idx_distance_bucket_window", columnList = "granularity, bucket_start"))
+public class VehicleDistanceBucket {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "vehicle_id", nullable = false)
+    private Long vehicleId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 10)
+    private TimeBucket granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "distance_km", nullable = false)
+    private Double distanceKm = 0.0;
+
+    @Column(name = "fix_count", nullable = false)
+    private Long fixCount = 0L;
+
+    // Constructors
+    public VehicleDistanceBucket() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getVehicleId() {
+        return vehicleId;
+    }
+
+    public void setVehicleId(Long vehicleId) {
+        this.vehicleId = vehicleId;
+    }
+
+    public TimeBucket getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(TimeBucket granularity) {
+        this.granularity = granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Double getDistanceKm() {
+        return distanceKm;
+    }
+
+    public void setDistanceKm(Double distanceKm) {
+        this.distanceKm = distanceKm;
+    }
+
+    public Long getFixCount() {
+        return fixCount;
+    }
+
+    public void setFixCount(Long fixCount) {
+        this.fixCount = fixCount;
+    }
+}
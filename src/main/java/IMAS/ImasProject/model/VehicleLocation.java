@@ -63,7 +63,8 @@ public class VehicleLocation {
     private LocalDateTime createdAt;
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "vehicle_id", nullable = false)
+    // No FK: partitioned tables cannot carry foreign keys in MySQL
+    @JoinColumn(name = "vehicle_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     @JsonBackReference
     private Vehicle vehicle;
 
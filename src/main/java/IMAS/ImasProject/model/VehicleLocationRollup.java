@@ -0,0 +1,226 @@
+package IMAS.ImasProject.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Downsampled GPS fixes of a vehicle over one minute or one hour.
+ * Sums and sample counts are stored instead of averages so buckets can be merged.
+ */
+@Entity
+@Table(name = "vehicle_location_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_location_rollup",
+                columnNames = {"vehicle_id", "granularity", "bucket_start"}),
+        indexes = @Index(name = "idx_location_rollup_window", columnList = "granularity, bucket_start"))
+public class VehicleLocationRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "vehicle_id", nullable = false)
+    private Long vehicleId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "granularity", nullable = false, length = 10)
+    private TimeBucket granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "fix_count", nullable = false)
+    private Long fixCount;
+
+    @Column(name = "speed_sum")
+    private Double speedSum;
+
+    @Column(name = "speed_samples")
+    private Long speedSamples;
+
+    @Column(name = "max_speed")
+    private Double maxSpeed;
+
+    @Column(name = "passenger_sum")
+    private Long passengerSum;
+
+    @Column(name = "passenger_samples")
+    private Long passengerSamples;
+
+    @Column(name = "max_passenger_count")
+    private Integer maxPassengerCount;
+
+    @Column(name = "latitude_sum", nullable = false)
+    private Double latitudeSum;
+
+    @Column(name = "longitude_sum", nullable = false)
+    private Double longitudeSum;
+
+    @Column(name = "min_latitude", nullable = false)
+    private Double minLatitude;
+
+    @Column(name = "max_latitude", nullable = false)
+    private Double maxLatitude;
+
+    @Column(name = "min_longitude", nullable = false)
+    private Double minLongitude;
+
+    @Column(name = "max_longitude", nullable = false)
+    private Double maxLongitude;
+
+    // Constructors
+    public VehicleLocationRollup() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getVehicleId() {
+        return vehicleId;
+    }
+
+    public void setVehicleId(Long vehicleId) {
+        this.vehicleId = vehicleId;
+    }
+
+    public TimeBucket getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(TimeBucket granularity) {
+        this.granularity = granularity;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public Long getFixCount() {
+        return fixCount;
+    }
+
+    public void setFixCount(Long fixCount) {
+        this.fixCount = fixCount;
+    }
+
+    public Double getSpeedSum() {
+        return speedSum;
+    }
+
+    public void setSpeedSum(Double speedSum) {
+        this.speedSum = speedSum;
+    }
+
+    public Long getSpeedSamples() {
+        return speedSamples;
+    }
+
+    public void setSpeedSamples(Long speedSamples) {
+        this.speedSamples = speedSamples;
+    }
+
+    public Double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public void setMaxSpeed(Double maxSpeed) {
+        this.maxSpeed = maxSpeed;
+    }
+
+    public Long getPassengerSum() {
+        return passengerSum;
+    }
+
+    public void setPassengerSum(Long passengerSum) {
+        this.passengerSum = passengerSum;
+    }
+
+    public Long getPassengerSamples() {
+        return passengerSamples;
+    }
+
+    public void setPassengerSamples(Long passengerSamples) {
+        this.passengerSamples = passengerSamples;
+    }
+
+    public Integer getMaxPassengerCount() {
+        return maxPassengerCount;
+    }
+
+    public void setMaxPassengerCount(Integer maxPassengerCount) {
+        this.maxPassengerCount = maxPassengerCount;
+    }
+
+    public Double getLatitudeSum() {
+        return latitudeSum;
+    }
+
+    public void setLatitudeSum(Double latitudeSum) {
+        this.latitudeSum = latitudeSum;
+    }
+
+    public Double getLongitudeSum() {
+        return longitudeSum;
+    }
+
+    public void setLongitudeSum(Double longitudeSum) {
+        this.longitudeSum = longitudeSum;
+    }
+
+    public Double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public void setMinLatitude(Double minLatitude) {
+        this.minLatitude = minLatitude;
+    }
+
+    public Double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public void setMaxLatitude(Double maxLatitude) {
+        this.maxLatitude = maxLatitude;
+    }
+
+    public Double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public void setMinLongitude(Double minLongitude) {
+        this.minLongitude = minLongitude;
+    }
+
+    public Double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    public void setMaxLongitude(Double maxLongitude) {
+        this.maxLongitude = maxLongitude;
+    }
+
+    // Business methods
+    public Double getAverageSpeed() {
+        return speedSamples != null && speedSamples > 0 ? speedSum / speedSamples : null;
+    }
+
+    public Double getAveragePassengerCount() {
+        return passengerSamples != null && passengerSamples > 0 ? (double) passengerSum / passengerSamples : null;
+    }
+
+    public Double getCentroidLatitude() {
+        return latitudeSum / fixCount;
+    }
+
+    public Double getCentroidLongitude() {
+        return longitudeSum / fixCount;
+    }
+}
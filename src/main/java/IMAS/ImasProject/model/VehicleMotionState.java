@@ -0,0 +1,26 @@
+package IMAS.ImasProject.model;
+
+/**
+ * Enumeration for the motion state of a vehicle, derived from its GPS fixes
+ */
+public enum VehicleMotionState {
+    /**
+     * Vehicle is driving
+     */
+    MOVING,
+
+    /**
+     * Vehicle is stationary away from any stop
+     */
+    IDLING,
+
+    /**
+     * Vehicle is stationary at a stop
+     */
+    STOPPED_AT_STOP,
+
+    /**
+     * Vehicle has not reported recently
+     */
+    OFFLINE
+}
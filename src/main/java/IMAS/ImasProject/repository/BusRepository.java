@@ -26,6 +26,13 @@ public interface BusRepository extends JpaRepository<Bus, Long> {
             "LEFT JOIN FETCH b.route")
     List<Bus> findAllWithDriverAndRoute();
 
+    /**
+     * Position, progress and status columns of a bus, for the live state
+     */
+    @Query("SELECT b.currentLat, b.currentLng, b.progress, b.arrivalTime, b.departureTime, b.isStopped, b.hasAccident " +
+            "FROM Bus b WHERE b.id = :id")
+    List<Object[]> findLiveState(@Param("id") Long id);
+
     /**
      * Find bus by ID with driver and route information loaded
      */
@@ -0,0 +1,12 @@
+package IMAS.ImasProject.repository;
+
+import IMAS.ImasProject.model.FareRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface FareRuleRepository extends JpaRepository<FareRule, Long> {
+    Optional<FareRule> findByOriginAndDestination(String origin, String destination);
+}
@@ -0,0 +1,19 @@
+package IMAS.ImasProject.repository;
+
+import IMAS.ImasProject.model.Stop;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StopRepository extends JpaRepository<Stop, Long> {
+
+    /**
+     * Id, latitude and longitude of every active stop with coordinates
+     */
+    @Query("SELECT s.id, s.latitude, s.longitude FROM Stop s " +
+            "WHERE s.isActive = true AND s.latitude IS NOT NULL AND s.longitude IS NOT NULL")
+    List<Object[]> findActiveStopCoordinates();
+}
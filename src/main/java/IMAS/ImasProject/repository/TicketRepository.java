@@ -32,6 +32,22 @@ public interface TicketRepository extends JpaRepository<Ticket, Long> {
     @Query("SELECT t FROM Ticket t WHERE t.driver.id = :driverId")
     List<Ticket> findByDriverId(@Param("driverId") Long driverId);
 
+    @Query("SELECT t FROM Ticket t WHERE t.bus.id = :busId " +
+            "AND t.departureTime > :from AND t.departureTime < :to " +
+            "AND (:origin IS NULL OR t.origin = :origin) AND (:destination IS NULL OR t.destination = :destination) " +
+            "AND t.status IN ('PAID', 'BOARDED')")
+    List<Ticket> findActiveForTrip(@Param("busId") Long busId,
+                                   @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                   @Param("origin") String origin, @Param("destination") String destination);
+
+    @Query("SELECT COUNT(t) > 0 FROM Ticket t WHERE t.bus.id = :busId AND t.seatNumber = :seatNumber " +
+            "AND t.departureTime > :from AND t.departureTime < :to " +
+            "AND (:origin IS NULL OR t.origin = :origin) AND (:destination IS NULL OR t.destination = :destination) " +
+            "AND t.status IN ('PAID', 'BOARDED')")
+    boolean existsActiveSeat(@Param("busId") Long busId, @Param("seatNumber") String seatNumber,
+                             @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                             @Param("origin") String origin, @Param("destination") String destination);
+
 
 
 
@@ -0,0 +1,36 @@
+package IMAS.ImasProject.repository;
+
+import IMAS.ImasProject.model.TimeBucket;
+import IMAS.ImasProject.model.VehicleDistanceBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface VehicleDistanceBucketRepository extends JpaRepository<VehicleDistanceBucket, Long> {
+
+    /**
+     * Distance driven by one vehicle in buckets starting within [start, end)
+     */
+    @Query("SELECT COALESCE(SUM(b.distanceKm), 0) FROM VehicleDistanceBucket b " +
+            "WHERE b.vehicleId = :vehicleId AND b.granularity = :granularity " +
+            "AND b.bucketStart >= :start AND b.bucketStart < :end")
+    Double sumDistance(@Param("vehicleId") Long vehicleId,
+                       @Param("granularity") TimeBucket granularity,
+                       @Param("start") LocalDateTime start,
+                       @Param("end") LocalDateTime end);
+
+    /**
+     * Distance per vehicle in buckets starting within [start, end)
+     */
+    @Query("SELECT b.vehicleId, SUM(b.distanceKm) FROM VehicleDistanceBucket b " +
+            "WHERE b.granularity = :granularity AND b.bucketStart >= :start AND b.bucketStart < :end " +
+            "GROUP BY b.vehicleId")
+    List<Object[]> sumDistanceByVehicle(@Param("granularity") TimeBucket granularity,
+                                        @Param("start") LocalDateTime start,
+                                        @Param("end") LocalDateTime end);
+}
@@ -2,9 +2,13 @@ package IMAS.ImasProject.repository;
 
 import IMAS.ImasProject.model.VehicleLocation;
 import IMAS.ImasProject.model.Vehicle;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -12,6 +16,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface VehicleLocationRepository extends JpaRepository<VehicleLocation, Long> {
@@ -37,11 +42,30 @@ public interface VehicleLocationRepository extends JpaRepository<VehicleLocation
      */
     Optional<VehicleLocation> findFirstByVehicleIdOrderByTimestampDesc(Long vehicleId);
 
+    /**
+     * Find the most recent location of a vehicle strictly before a time
+     */
+    Optional<VehicleLocation> findFirstByVehicleIdAndTimestampBeforeOrderByTimestampDesc(Long vehicleId, LocalDateTime before);
+
+    /**
+     * Find the N most recent locations for a vehicle
+     */
+    List<VehicleLocation> findByVehicleIdOrderByTimestampDesc(Long vehicleId, Pageable pageable);
+
     /**
      * Find locations within a time range for a vehicle
      */
     List<VehicleLocation> findByVehicleAndTimestampBetween(Vehicle vehicle, LocalDateTime startTime, LocalDateTime endTime);
 
+    /**
+     * Stream the coordinates of a vehicle track in time order without loading entities
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT vl.latitude, vl.longitude FROM VehicleLocation vl WHERE vl.vehicle.id = :vehicleId AND vl.timestamp BETWEEN :startTime AND :endTime ORDER BY vl.timestamp ASC")
+    Stream<Object[]> streamTrack(@Param("vehicleId") Long vehicleId,
+                                 @Param("startTime") LocalDateTime startTime,
+                                 @Param("endTime") LocalDateTime endTime);
+
     /**
      * Find locations within a time range for a vehicle by ID
      */
@@ -95,14 +119,6 @@ public interface VehicleLocationRepository extends JpaRepository<VehicleLocation
     @Query("SELECT vl FROM VehicleLocation vl WHERE vl.speed > :minSpeed AND vl.timestamp >= :sinceTime ORDER BY vl.timestamp DESC")
     List<VehicleLocation> findMovingVehicles(@Param("minSpeed") Double minSpeed, @Param("sinceTime") LocalDateTime sinceTime);
 
-    /**
-     * Delete old location data
-     */
-    @Modifying
-    @Transactional
-    @Query("DELETE FROM VehicleLocation vl WHERE vl.timestamp < :cutoffTime")
-    void deleteByTimestampBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
-
     /**
      * Count locations for a vehicle
      */
@@ -153,6 +169,14 @@ public interface VehicleLocationRepository extends JpaRepository<VehicleLocation
             "(SELECT MAX(vl2.timestamp) FROM VehicleLocation vl2 WHERE vl2.vehicle.id = vl1.vehicle.id)")
     List<VehicleLocation> findLatestLocationForAllVehicles();
 
+    /**
+     * Get vehicle id, latitude, longitude and timestamp of the latest fix of each vehicle seen since a given time
+     */
+    @Query("SELECT vl1.vehicle.id, vl1.latitude, vl1.longitude, vl1.timestamp FROM VehicleLocation vl1 WHERE " +
+            "vl1.timestamp >= :sinceTime AND vl1.timestamp = " +
+            "(SELECT MAX(vl2.timestamp) FROM VehicleLocation vl2 WHERE vl2.vehicle.id = vl1.vehicle.id)")
+    List<Object[]> findLatestPositionsSince(@Param("sinceTime") LocalDateTime sinceTime);
+
     /**
      * Find locations with high passenger count
      */
@@ -160,21 +184,6 @@ public interface VehicleLocationRepository extends JpaRepository<VehicleLocation
     List<VehicleLocation> findLocationsWithHighPassengerCount(@Param("minPassengers") Integer minPassengers,
                                                               @Param("sinceTime") LocalDateTime sinceTime);
 
-    /**
-     * Get total distance traveled by all vehicles in time range
-     */
-    @Query("SELECT SUM(" +
-            "  6371 * acos(cos(radians(vl1.latitude)) * cos(radians(vl2.latitude)) * " +
-            "  cos(radians(vl2.longitude) - radians(vl1.longitude)) + sin(radians(vl1.latitude)) * " +
-            "  sin(radians(vl2.latitude)))" +
-            ") FROM VehicleLocation vl1, VehicleLocation vl2 " +
-            "WHERE vl1.vehicle.id = vl2.vehicle.id " +
-            "AND vl1.timestamp BETWEEN :startTime AND :endTime " +
-            "AND vl2.timestamp BETWEEN :startTime AND :endTime " +
-            "AND vl2.timestamp > vl1.timestamp")
-    Double getTotalDistanceTraveledInTimeRange(@Param("startTime") LocalDateTime startTime,
-                                               @Param("endTime") LocalDateTime endTime);
-
     /**
      * Find locations with accuracy better than threshold
      */
@@ -215,9 +224,11 @@ public interface VehicleLocationRepository extends JpaRepository<VehicleLocation
             "AVG(vl.speed) as avgSpeed, " +
             "MAX(vl.speed) as maxSpeed, " +
             "AVG(vl.passengerCount) as avgPassengers, " +
-            "MAX(vl.passengerCount) as maxPassengers " +
+            "MAX(vl.passengerCount) as maxPassengers, " +
+            "MIN(vl.latitude) as minLatitude, MAX(vl.latitude) as maxLatitude, " +
+            "MIN(vl.longitude) as minLongitude, MAX(vl.longitude) as maxLongitude " +
             "FROM VehicleLocation vl WHERE vl.vehicle.id = :vehicleId AND vl.timestamp BETWEEN :startTime AND :endTime")
-    Object[] getLocationStatistics(@Param("vehicleId") Long vehicleId,
-                                   @Param("startTime") LocalDateTime startTime,
-                                   @Param("endTime") LocalDateTime endTime);
+    List<Object[]> getLocationStatistics(@Param("vehicleId") Long vehicleId,
+                                         @Param("startTime") LocalDateTime startTime,
+                                         @Param("endTime") LocalDateTime endTime);
 }
\ No newline at end of file
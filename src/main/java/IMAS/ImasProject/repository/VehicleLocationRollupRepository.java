@@ -0,0 +1,56 @@
+package IMAS.ImasProject.repository;
+
+import IMAS.ImasProject.model.TimeBucket;
+import IMAS.ImasProject.model.VehicleLocationRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface VehicleLocationRollupRepository extends JpaRepository<VehicleLocationRollup, Long> {
+
+    /**
+     * Rollups of a vehicle in buckets starting within [start, end), oldest first
+     */
+    @Query("SELECT r FROM VehicleLocationRollup r WHERE r.vehicleId = :vehicleId AND r.granularity = :granularity " +
+            "AND r.bucketStart >= :start AND r.bucketStart < :end ORDER BY r.bucketStart ASC")
+    List<VehicleLocationRollup> findSeries(@Param("vehicleId") Long vehicleId,
+                                           @Param("granularity") TimeBucket granularity,
+                                           @Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end);
+
+    /**
+     * Merged statistics of a vehicle over buckets starting within [start, end)
+     */
+    @Query("SELECT SUM(r.fixCount), SUM(r.speedSum) / NULLIF(SUM(r.speedSamples), 0), MAX(r.maxSpeed), " +
+            "SUM(r.passengerSum) * 1.0 / NULLIF(SUM(r.passengerSamples), 0), MAX(r.maxPassengerCount), " +
+            "MIN(r.minLatitude), MAX(r.maxLatitude), MIN(r.minLongitude), MAX(r.maxLongitude) " +
+            "FROM VehicleLocationRollup r WHERE r.vehicleId = :vehicleId AND r.granularity = :granularity " +
+            "AND r.bucketStart >= :start AND r.bucketStart < :end")
+    List<Object[]> getStatistics(@Param("vehicleId") Long vehicleId,
+                                 @Param("granularity") TimeBucket granularity,
+                                 @Param("start") LocalDateTime start,
+                                 @Param("end") LocalDateTime end);
+
+    /**
+     * Start of the most recent bucket of a granularity
+     */
+    @Query("SELECT MAX(r.bucketStart) FROM VehicleLocationRollup r WHERE r.granularity = :granularity")
+    LocalDateTime findLatestBucketStart(@Param("granularity") TimeBucket granularity);
+
+    /**
+     * Delete old rollups of a granularity in batches
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM vehicle_location_rollups WHERE granularity = :granularity AND bucket_start < :cutoffTime LIMIT :batchSize", nativeQuery = true)
+    int deleteOldRollupsBatch(@Param("granularity") String granularity,
+                              @Param("cutoffTime") LocalDateTime cutoffTime,
+                              @Param("batchSize") int batchSize);
+}
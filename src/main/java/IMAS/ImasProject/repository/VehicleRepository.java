@@ -12,6 +12,7 @@
     import org.springframework.stereotype.Repository;
 
     import java.time.LocalDateTime;
+    import java.util.Collection;
     import java.util.List;
     import java.util.Optional;
 
@@ -93,6 +94,12 @@
          */
         List<Vehicle> findByStatusAndIsActiveTrue(VehicleStatus status);
 
+        /**
+         * Ids of all vehicles
+         */
+        @Query("SELECT v.id FROM Vehicle v")
+        List<Long> findAllIds();
+
         /**
          * Find vehicles requiring maintenance
          */
@@ -316,6 +323,18 @@
                 "LOWER(v.model) LIKE LOWER(CONCAT('%', :keyword, '%'))")
         List<Vehicle> searchVehicles(@Param("keyword") String keyword);
 
+        /**
+         * Searchable text fields of every vehicle (id, vehicle number, license plate, manufacturer, model)
+         */
+        @Query("SELECT v.id, v.vehicleNumber, v.licensePlate, v.manufacturer, v.model FROM Vehicle v")
+        List<Object[]> findSearchableFields();
+
+        /**
+         * Searchable text fields of the given vehicles
+         */
+        @Query("SELECT v.id, v.vehicleNumber, v.licensePlate, v.manufacturer, v.model FROM Vehicle v WHERE v.id IN :ids")
+        List<Object[]> findSearchableFieldsByIds(@Param("ids") Collection<Long> ids);
+
         /**
          * Find vehicles with expired or missing maintenance dates
          */
@@ -824,22 +843,21 @@
 
 
         /**
-         * Get comprehensive vehicle statistics
+         * Fleet counts grouped by status, fuel type, vehicle type and activity, with feature,
+         * route, maintenance and capacity aggregates per group
          */
-        @Query("SELECT " +
-                "COUNT(v) as totalVehicles, " +
-                "SUM(CASE WHEN v.isActive = true THEN 1 ELSE 0 END) as activeVehicles, " +
-                "SUM(CASE WHEN v.status = 'IN_TRANSIT' THEN 1 ELSE 0 END) as vehiclesInTransit, " +
-                "SUM(CASE WHEN v.status = 'MAINTENANCE' THEN 1 ELSE 0 END) as vehiclesInMaintenance, " +
-                "SUM(CASE WHEN v.status = 'BREAKDOWN' THEN 1 ELSE 0 END) as vehiclesInBreakdown, " +
-                "SUM(CASE WHEN v.status = 'ACTIVE' THEN 1 ELSE 0 END) as activeReadyVehicles, " +
-                "SUM(CASE WHEN v.isAccessible = true THEN 1 ELSE 0 END) as accessibleVehicles, " +
-                "SUM(CASE WHEN v.hasWifi = true THEN 1 ELSE 0 END) as wifiEnabledVehicles, " +
-                "SUM(CASE WHEN v.hasGps = true THEN 1 ELSE 0 END) as gpsEnabledVehicles, " +
-                "SUM(v.capacity) as totalCapacity, " +
-                "AVG(v.capacity) as averageCapacity " +
-                "FROM Vehicle v")
-        Object[] getComprehensiveVehicleStatistics();
+        @Query("SELECT v.status, v.fuelType, v.vehicleType, v.isActive, COUNT(v), " +
+                "SUM(CASE WHEN v.route IS NOT NULL THEN 1 ELSE 0 END), " +
+                "SUM(CASE WHEN v.isAccessible = true THEN 1 ELSE 0 END), " +
+                "SUM(CASE WHEN v.hasAirConditioning = true THEN 1 ELSE 0 END), " +
+                "SUM(CASE WHEN v.hasWifi = true THEN 1 ELSE 0 END), " +
+                "SUM(CASE WHEN v.hasGps = true THEN 1 ELSE 0 END), " +
+                "SUM(CASE WHEN v.nextMaintenance <= :currentTime THEN 1 ELSE 0 END), " +
+                "SUM(CASE WHEN v.nextMaintenance < :currentTime THEN 1 ELSE 0 END), " +
+                "SUM(v.capacity), MIN(v.capacity), MAX(v.capacity) " +
+                "FROM Vehicle v GROUP BY v.status, v.fuelType, v.vehicleType, v.isActive")
+        List<Object[]> getFleetStatisticsGroups(@Param("currentTime") LocalDateTime currentTime);
+
 
         /**
          * Get vehicle utilization statistics
@@ -890,11 +908,6 @@
 
         // Ajoutez ces méthodes corrigées à votre VehicleRepository
 
-        /**
-         * Count vehicles by type - CORRIGÉ
-         */
-        @Query("SELECT v.vehicleType, COUNT(v) FROM Vehicle v WHERE v.vehicleType IS NOT NULL GROUP BY v.vehicleType ORDER BY COUNT(v) DESC")
-        List<Object[]> countVehiclesByType();
 
         /**
          * Find vehicles over capacity (based on current passenger count) - CORRIGÉ
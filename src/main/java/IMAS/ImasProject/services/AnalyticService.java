@@ -9,6 +9,7 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -28,16 +29,49 @@ public class AnalyticService {
     @Autowired
     private BusRepository busRepository;
 
-    // Login Analytics
+    @Autowired
+    private FareEngine fareEngine;
+
+    @Autowired
+    private RevenueCubeService revenueCubeService;
+
+    @Autowired
+    private PassengerStatsService passengerStatsService;
+
+    @Autowired
+    private LoginStatsService loginStatsService;
+
+    // Ticket statuses that generate revenue
+    private static final List<String> REVENUE_STATUSES = List.of("PAID", "BOARDED");
+
+    // Length of the passenger leaderboards
+    private static final int TOP_PASSENGERS = 10;
+
+    // Login Analytics, answered from the hourly login counts
     public Map<String, Object> getLoginStatistics(String period) {
         Map<String, Object> stats = new HashMap<>();
         LocalDateTime startDate = getStartDateForPeriod(period);
         LocalDateTime endDate = LocalDateTime.now();
 
-        List<LoginAttempt> attempts = loginAttemptRepository.findByAttemptTimeBetween(startDate, endDate);
-
-        long totalAttempts = attempts.size();
-        long successfulLogins = attempts.stream().mapToLong(a -> a.isSuccessful() ? 1 : 0).sum();
+        long totalAttempts = 0;
+        long successfulLogins = 0;
+        Map<StaffRole, Long> loginsByRole = new HashMap<>();
+        Map<String, Long> loginTimeline = new HashMap<>();
+        DateTimeFormatter dayFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+        for (LoginStatsService.Row row : loginStatsService.getRows(startDate.truncatedTo(ChronoUnit.HOURS), endDate)) {
+            totalAttempts += row.getAttemptCount();
+            if (!row.isSuccessful()) {
+                continue;
+            }
+            successfulLogins += row.getAttemptCount();
+            // Group by role
+            if (row.getRole() != null) {
+                loginsByRole.merge(row.getRole(), row.getAttemptCount(), Long::sum);
+            }
+            // Group by date for timeline
+            loginTimeline.merge(row.getHour().format(dayFormat), row.getAttemptCount(), Long::sum);
+        }
         long failedLogins = totalAttempts - successfulLogins;
 
         stats.put("totalAttempts", totalAttempts);
@@ -47,76 +81,42 @@ public class AnalyticService {
         stats.put("period", period);
         stats.put("startDate", startDate);
         stats.put("endDate", endDate);
-
-        // Group by role
-        Map<StaffRole, Long> loginsByRole = attempts.stream()
-                .filter(LoginAttempt::isSuccessful)
-                .filter(attempt -> attempt.getUserRole() != null)
-                .collect(Collectors.groupingBy(
-                        LoginAttempt::getUserRole,
-                        Collectors.counting()
-                ));
         stats.put("loginsByRole", loginsByRole);
-
-        // Group by date for timeline
-        Map<String, Long> loginTimeline = attempts.stream()
-                .filter(LoginAttempt::isSuccessful)
-                .collect(Collectors.groupingBy(
-                        attempt -> attempt.getAttemptTime().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                        Collectors.counting()
-                ));
         stats.put("loginTimeline", loginTimeline);
 
         return stats;
     }
 
-    // Financial Analytics
+    // Financial Analytics, answered from the revenue cube
     public Map<String, Object> getFinancialStatistics(String period) {
         Map<String, Object> stats = new HashMap<>();
         LocalDateTime startDate = getStartDateForPeriod(period);
         LocalDateTime endDate = LocalDateTime.now();
 
-        List<Ticket> paidTickets = ticketRepository.findByStatusAndIssuedAtBetween("PAID", startDate, endDate);
-
-        // Add BOARDED tickets as they are also revenue-generating
-        List<Ticket> boardedTickets = ticketRepository.findByStatusAndIssuedAtBetween("BOARDED", startDate, endDate);
-        List<Ticket> allRevenueTickets = new ArrayList<>(paidTickets);
-        allRevenueTickets.addAll(boardedTickets);
-
-        // Total revenue
-        double totalRevenue = allRevenueTickets.stream()
-                .mapToDouble(this::calculateTicketPrice)
-                .sum();
+        double totalRevenue = 0;
+        long totalTickets = 0;
+        Map<String, Double> revenueByBus = new HashMap<>();
+        Map<String, Double> revenueByDriver = new HashMap<>();
+        Map<String, Double> dailyRevenue = new HashMap<>();
+        for (RevenueCubeService.Row row : revenueCubeService.getRows(REVENUE_STATUSES, startDate.toLocalDate(), endDate.toLocalDate())) {
+            double revenue = calculateRevenue(row);
+            totalRevenue += revenue;
+            totalTickets += row.getTicketCount();
+            if (row.getBusName() != null) {
+                revenueByBus.merge(row.getBusName(), revenue, Double::sum);
+            }
+            if (row.getDriverName() != null) {
+                revenueByDriver.merge(row.getDriverName(), revenue, Double::sum);
+            }
+            dailyRevenue.merge(row.getDay().toString(), revenue, Double::sum);
+        }
 
         stats.put("totalRevenue", totalRevenue);
-        stats.put("totalTickets", allRevenueTickets.size());
-        stats.put("averageTicketPrice", allRevenueTickets.size() > 0 ? totalRevenue / allRevenueTickets.size() : 0);
+        stats.put("totalTickets", totalTickets);
+        stats.put("averageTicketPrice", totalTickets > 0 ? totalRevenue / totalTickets : 0);
         stats.put("period", period);
-
-        // Revenue by bus
-        Map<String, Double> revenueByBus = allRevenueTickets.stream()
-                .filter(t -> t.getBus() != null)
-                .collect(Collectors.groupingBy(
-                        ticket -> ticket.getBus().getName(),
-                        Collectors.summingDouble(this::calculateTicketPrice)
-                ));
         stats.put("revenueByBus", revenueByBus);
-
-        // Revenue by driver
-        Map<String, Double> revenueByDriver = allRevenueTickets.stream()
-                .filter(t -> t.getDriver() != null)
-                .collect(Collectors.groupingBy(
-                        ticket -> ticket.getDriver().getFirstName() + " " + ticket.getDriver().getLastName(),
-                        Collectors.summingDouble(this::calculateTicketPrice)
-                ));
         stats.put("revenueByDriver", revenueByDriver);
-
-        // Daily revenue timeline
-        Map<String, Double> dailyRevenue = allRevenueTickets.stream()
-                .collect(Collectors.groupingBy(
-                        ticket -> ticket.getIssuedAt().format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                        Collectors.summingDouble(this::calculateTicketPrice)
-                ));
         stats.put("dailyRevenue", dailyRevenue);
 
         return stats;
@@ -126,85 +126,51 @@ public class AnalyticService {
     public Map<String, Object> getPassengerStatistics() {
         Map<String, Object> stats = new HashMap<>();
 
-        // Get all paid and boarded tickets
-        List<Ticket> allTickets = ticketRepository.findByStatus("PAID");
-        List<Ticket> boardedTickets = ticketRepository.findByStatus("BOARDED");
-        allTickets.addAll(boardedTickets);
-
-        // Group tickets by passenger
-        Map<Long, List<Ticket>> ticketsByPassenger = allTickets.stream()
-                .collect(Collectors.groupingBy(Ticket::getPassengerId));
-
-        // Top customers by ticket count
-        List<Map<String, Object>> topCustomersByTickets = ticketsByPassenger.entrySet().stream()
-                .map(entry -> {
-                    Long passengerId = entry.getKey();
-                    List<Ticket> tickets = entry.getValue();
-                    double totalSpent = tickets.stream()
-                            .mapToDouble(this::calculateTicketPrice)
-                            .sum();
-
-                    Map<String, Object> customer = new HashMap<>();
-                    customer.put("passengerId", passengerId);
-                    customer.put("passengerName", tickets.get(0).getFullName());
-                    customer.put("ticketCount", tickets.size());
-                    customer.put("totalSpent", totalSpent);
-                    return customer;
-                })
-                .sorted((a, b) -> Integer.compare((Integer) b.get("ticketCount"), (Integer) a.get("ticketCount")))
-                .limit(10)
+        // Top customers from the lifetime counters, so only the leaders are read
+        List<Map<String, Object>> topCustomersByTickets = passengerStatsService.getTopByTickets(TOP_PASSENGERS).stream()
+                .map(this::toCustomer)
                 .collect(Collectors.toList());
 
-        // Top customers by spending
-        List<Map<String, Object>> topCustomersBySpending = ticketsByPassenger.entrySet().stream()
-                .map(entry -> {
-                    Long passengerId = entry.getKey();
-                    List<Ticket> tickets = entry.getValue();
-                    double totalSpent = tickets.stream()
-                            .mapToDouble(this::calculateTicketPrice)
-                            .sum();
-
-                    Map<String, Object> customer = new HashMap<>();
-                    customer.put("passengerId", passengerId);
-                    customer.put("passengerName", tickets.get(0).getFullName());
-                    customer.put("ticketCount", tickets.size());
-                    customer.put("totalSpent", totalSpent);
-                    return customer;
-                })
-                .sorted((a, b) -> Double.compare((Double) b.get("totalSpent"), (Double) a.get("totalSpent")))
-                .limit(10)
+        List<Map<String, Object>> topCustomersBySpending = passengerStatsService.getTopBySpending(TOP_PASSENGERS).stream()
+                .map(this::toCustomer)
                 .collect(Collectors.toList());
 
-        stats.put("totalUniquePassengers", ticketsByPassenger.size());
+        stats.put("totalUniquePassengers", passengerStatsService.countPassengers());
         stats.put("topCustomersByTickets", topCustomersByTickets);
         stats.put("topCustomersBySpending", topCustomersBySpending);
 
         return stats;
     }
 
-    // Bus Performance Analytics
+    private Map<String, Object> toCustomer(PassengerStatsService.Row row) {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("passengerId", row.getPassengerId());
+        customer.put("passengerName", row.getPassengerName());
+        customer.put("ticketCount", row.getTicketCount());
+        customer.put("totalSpent", row.getTotalSpent());
+        return customer;
+    }
+
+    // Bus Performance Analytics: one pass over the period's revenue cube cells, then one lookup per bus
     public Map<String, Object> getBusPerformanceStatistics(String period) {
         Map<String, Object> stats = new HashMap<>();
         LocalDateTime startDate = getStartDateForPeriod(period);
         LocalDateTime endDate = LocalDateTime.now();
 
-        // Get all revenue-generating tickets in period
-        List<Ticket> paidTickets = ticketRepository.findByStatusAndIssuedAtBetween("PAID", startDate, endDate);
-        List<Ticket> boardedTickets = ticketRepository.findByStatusAndIssuedAtBetween("BOARDED", startDate, endDate);
-        List<Ticket> allTickets = new ArrayList<>(paidTickets);
-        allTickets.addAll(boardedTickets);
+        // Tickets and revenue per bus id
+        Map<Long, double[]> totalsByBus = new HashMap<>();
+        for (RevenueCubeService.BusRouteRow row : revenueCubeService.getBusRouteRows(REVENUE_STATUSES, startDate.toLocalDate(), endDate.toLocalDate())) {
+            double[] totals = totalsByBus.computeIfAbsent(row.getBusId(), id -> new double[2]);
+            totals[0] += row.getTicketCount();
+            totals[1] += fareEngine.price(row.getOrigin(), row.getDestination(), row.isHasLuggage()) * row.getTicketCount();
+        }
 
-        List<Bus> allBuses = busRepository.findAll();
+        List<Bus> allBuses = busRepository.findAllWithDriverAndRoute();
 
         List<Map<String, Object>> busPerformance = allBuses.stream()
                 .map(bus -> {
-                    List<Ticket> busTickets = allTickets.stream()
-                            .filter(t -> t.getBus() != null && t.getBus().getId().equals(bus.getId()))
-                            .collect(Collectors.toList());
-
-                    double revenue = busTickets.stream()
-                            .mapToDouble(this::calculateTicketPrice)
-                            .sum();
+                    double[] totals = totalsByBus.getOrDefault(bus.getId(), new double[2]);
+                    int ticketsCount = (int) totals[0];
 
                     Map<String, Object> performance = new HashMap<>();
                     performance.put("busId", bus.getId());
@@ -212,10 +178,10 @@ public class AnalyticService {
                     // Fixed: Use busLine instead of plateNumber since plateNumber doesn't exist
                     performance.put("busLine", bus.getBusLine());
                     performance.put("capacity", bus.getCapacity());
-                    performance.put("ticketsCount", busTickets.size());
-                    performance.put("revenue", revenue);
+                    performance.put("ticketsCount", ticketsCount);
+                    performance.put("revenue", totals[1]);
                     performance.put("occupancyRate", bus.getCapacity() > 0 ?
-                            (double) busTickets.size() / bus.getCapacity() * 100 : 0);
+                            (double) ticketsCount / bus.getCapacity() * 100 : 0);
                     performance.put("driverName", bus.getDriver() != null ?
                             bus.getDriver().getFirstName() + " " + bus.getDriver().getLastName() : "No Driver");
 
@@ -253,60 +219,60 @@ public class AnalyticService {
         LocalDateTime startOfDay = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0);
         LocalDateTime endOfDay = LocalDateTime.now().withHour(23).withMinute(59).withSecond(59);
 
-        long todayLogins = loginAttemptRepository.countBySuccessfulTrueAndAttemptTimeBetween(startOfDay, endOfDay);
-
-        // Get today's tickets (PAID and BOARDED)
-        List<Ticket> todayPaidTickets = ticketRepository.findByStatusAndIssuedAtBetween("PAID", startOfDay, endOfDay);
-        List<Ticket> todayBoardedTickets = ticketRepository.findByStatusAndIssuedAtBetween("BOARDED", startOfDay, endOfDay);
-
-        List<Ticket> allTodayTickets = new ArrayList<>(todayPaidTickets);
-        allTodayTickets.addAll(todayBoardedTickets);
+        long todayLogins = 0;
+        for (LoginStatsService.Row row : loginStatsService.getRows(startOfDay.truncatedTo(ChronoUnit.HOURS), endOfDay)) {
+            if (row.isSuccessful()) {
+                todayLogins += row.getAttemptCount();
+            }
+        }
 
-        double todayRevenue = allTodayTickets.stream().mapToDouble(this::calculateTicketPrice).sum();
+        // Today's tickets (PAID and BOARDED) from the revenue cube
+        long todayTickets = 0;
+        double todayRevenue = 0;
+        for (RevenueCubeService.Row row : revenueCubeService.getRows(REVENUE_STATUSES, startOfDay.toLocalDate(), endOfDay.toLocalDate())) {
+            todayTickets += row.getTicketCount();
+            todayRevenue += calculateRevenue(row);
+        }
 
         overview.put("todayLogins", todayLogins);
-        overview.put("todayTickets", allTodayTickets.size());
+        overview.put("todayTickets", todayTickets);
         overview.put("todayRevenue", todayRevenue);
 
         return overview;
     }
 
-    // Revenue by driver detailed
+    // Revenue by driver detailed, answered from the revenue cube
     public Map<String, Object> getDriverRevenueStatistics(String period) {
         Map<String, Object> stats = new HashMap<>();
         LocalDateTime startDate = getStartDateForPeriod(period);
         LocalDateTime endDate = LocalDateTime.now();
 
-        List<Ticket> paidTickets = ticketRepository.findByStatusAndIssuedAtBetween("PAID", startDate, endDate);
-        List<Ticket> boardedTickets = ticketRepository.findByStatusAndIssuedAtBetween("BOARDED", startDate, endDate);
-        List<Ticket> allTickets = new ArrayList<>(paidTickets);
-        allTickets.addAll(boardedTickets);
+        Map<String, Double> revenueByDriver = new HashMap<>();
+        Map<String, Long> ticketsByDriver = new HashMap<>();
+        Map<String, Set<String>> busesByDriver = new HashMap<>();
+        for (RevenueCubeService.Row row : revenueCubeService.getRows(REVENUE_STATUSES, startDate.toLocalDate(), endDate.toLocalDate())) {
+            if (row.getDriverName() == null) {
+                continue;
+            }
+            revenueByDriver.merge(row.getDriverName(), calculateRevenue(row), Double::sum);
+            ticketsByDriver.merge(row.getDriverName(), row.getTicketCount(), Long::sum);
+            Set<String> busNames = busesByDriver.computeIfAbsent(row.getDriverName(), name -> new HashSet<>());
+            if (row.getBusName() != null) {
+                busNames.add(row.getBusName());
+            }
+        }
 
         // Group by driver with detailed stats
-        Map<String, Map<String, Object>> driverStats = allTickets.stream()
-                .filter(t -> t.getDriver() != null)
-                .collect(Collectors.groupingBy(
-                        ticket -> ticket.getDriver().getFirstName() + " " + ticket.getDriver().getLastName(),
-                        Collectors.collectingAndThen(
-                                Collectors.toList(),
-                                tickets -> {
-                                    Map<String, Object> driverStat = new HashMap<>();
-                                    double revenue = tickets.stream().mapToDouble(this::calculateTicketPrice).sum();
-                                    driverStat.put("revenue", revenue);
-                                    driverStat.put("ticketCount", tickets.size());
-                                    driverStat.put("averageTicketPrice", tickets.size() > 0 ? revenue / tickets.size() : 0);
-
-                                    // Get unique buses this driver used
-                                    Set<String> busNames = tickets.stream()
-                                            .filter(t -> t.getBus() != null)
-                                            .map(t -> t.getBus().getName())
-                                            .collect(Collectors.toSet());
-                                    driverStat.put("busesUsed", new ArrayList<>(busNames));
-
-                                    return driverStat;
-                                }
-                        )
-                ));
+        Map<String, Map<String, Object>> driverStats = new HashMap<>();
+        revenueByDriver.forEach((driverName, revenue) -> {
+            long ticketCount = ticketsByDriver.get(driverName);
+            Map<String, Object> driverStat = new HashMap<>();
+            driverStat.put("revenue", revenue);
+            driverStat.put("ticketCount", ticketCount);
+            driverStat.put("averageTicketPrice", ticketCount > 0 ? revenue / ticketCount : 0);
+            driverStat.put("busesUsed", new ArrayList<>(busesByDriver.get(driverName)));
+            driverStats.put(driverName, driverStat);
+        });
 
         stats.put("driverStats", driverStats);
         stats.put("period", period);
@@ -334,27 +300,8 @@ public class AnalyticService {
         }
     }
 
-    private double calculateTicketPrice(Ticket ticket) {
-        double basePrice = 2000.0; // Base price in FC
-        double distanceMultiplier = calculateDistanceMultiplier(ticket.getOrigin(), ticket.getDestination());
-        double luggagePrice = (ticket.getHasLuggage() != null && ticket.getHasLuggage()) ? 500.0 : 0.0;
-        return (basePrice * distanceMultiplier) + luggagePrice;
-    }
-
-    private double calculateDistanceMultiplier(String origin, String destination) {
-        if (origin == null || destination == null) return 1.0;
-
-        Map<String, Double> routes = new HashMap<>();
-        routes.put("GARE_CENTRALE-MATETE", 1.2);
-        routes.put("GARE_CENTRALE-LIMETE", 1.0);
-        routes.put("GARE_CENTRALE-BANDALUNGWA", 1.1);
-        routes.put("GARE_CENTRALE-NDJILI", 1.5);
-        routes.put("GARE_CENTRALE-MASINA", 1.6);
-        routes.put("GARE_CENTRALE-KIMBANSEKE", 2.0);
-
-        String route = origin + "-" + destination;
-        String reverseRoute = destination + "-" + origin;
-        return routes.getOrDefault(route, routes.getOrDefault(reverseRoute, 1.0));
+    private double calculateRevenue(RevenueCubeService.Row row) {
+        return fareEngine.price(row.getOrigin(), row.getDestination(), row.isHasLuggage()) * row.getTicketCount();
     }
 
     // Method to get login attempts with pagination
@@ -369,14 +316,12 @@ public class AnalyticService {
         LocalDateTime startDate = getStartDateForPeriod(period);
         LocalDateTime endDate = LocalDateTime.now();
 
-        List<LoginAttempt> attempts = loginAttemptRepository.findByAttemptTimeBetween(startDate, endDate);
-
-        return attempts.stream()
-                .filter(LoginAttempt::isSuccessful)
-                .filter(attempt -> attempt.getUserRole() != null)
-                .collect(Collectors.groupingBy(
-                        LoginAttempt::getUserRole,
-                        Collectors.counting()
-                ));
+        Map<StaffRole, Long> loginsByRole = new HashMap<>();
+        for (LoginStatsService.Row row : loginStatsService.getRows(startDate.truncatedTo(ChronoUnit.HOURS), endDate)) {
+            if (row.isSuccessful() && row.getRole() != null) {
+                loginsByRole.merge(row.getRole(), row.getAttemptCount(), Long::sum);
+            }
+        }
+        return loginsByRole;
     }
 }
\ No newline at end of file
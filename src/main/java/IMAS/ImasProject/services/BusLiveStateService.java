@@ -0,0 +1,297 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.BusPositionDTO;
+import IMAS.ImasProject.exception.ResourceNotFoundException;
+import IMAS.ImasProject.model.Bus;
+import IMAS.ImasProject.repository.BusRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind live state of bus positions and progress.
+ *
+ * Driver-app pings only update memory. Changed buses are written to {@code buses} in one
+ * batched UPDATE every {@code app.bus.live.flush-interval-ms} and on shutdown, and a single
+ * bus is flushed right away before a state change loads it, so DB writes do not grow with
+ * ping frequency.
+ *
+ * A bus saved through JPA carries the position and progress it was loaded with. Unless the
+ * save changed them, pings received in between win and are written again over the save.
+ */
+@Service
+public class BusLiveStateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BusLiveStateService.class);
+
+    private static final String UPDATE_SQL =
+            "UPDATE buses SET current_lat = ?, current_lng = ?, progress = ?, arrival_time = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BusRepository busRepository;
+
+    private final Map<Long, LiveBus> buses = new ConcurrentHashMap<>();
+
+    public BusLiveStateService(JdbcTemplate jdbcTemplate, BusRepository busRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.busRepository = busRepository;
+    }
+
+    /**
+     * Apply a position and/or progress ping; null values keep the current ones
+     */
+    public BusPositionDTO update(Long busId, Double currentLat, Double currentLng, Double progress) {
+        LiveBus bus = load(busId);
+        synchronized (bus) {
+            if (currentLat != null && currentLng != null) {
+                bus.currentLat = currentLat;
+                bus.currentLng = currentLng;
+            }
+            if (progress != null) {
+                bus.progress = progress;
+                // Re-estimate arrival from the pace so far while the bus is running
+                if (!bus.stopped && progress > 0 && bus.departureTime != null) {
+                    bus.arrivalTime = estimateArrival(bus.departureTime, progress);
+                }
+            }
+            bus.updatedAt = LocalDateTime.now();
+            bus.dirty = true;
+            return bus.snapshot(busId);
+        }
+    }
+
+    /**
+     * Current live state of a bus
+     */
+    public BusPositionDTO getPosition(Long busId) {
+        LiveBus bus = load(busId);
+        synchronized (bus) {
+            return bus.snapshot(busId);
+        }
+    }
+
+    /**
+     * Live state of every bus that reported or was loaded since startup
+     */
+    public List<BusPositionDTO> getPositions() {
+        List<BusPositionDTO> positions = new ArrayList<>(buses.size());
+        buses.forEach((busId, bus) -> {
+            synchronized (bus) {
+                positions.add(bus.snapshot(busId));
+            }
+        });
+        return positions;
+    }
+
+    /**
+     * Take over the state of a bus that was just saved through JPA; its position and progress
+     * are taken only when they differ from those it was loaded with
+     */
+    public void sync(Bus saved) {
+        if (saved == null || saved.getId() == null) {
+            return;
+        }
+        LiveBus created = new LiveBus(saved.getCurrentLat(), saved.getCurrentLng(), saved.getProgress(),
+                saved.getArrivalTime(), saved.getDepartureTime(),
+                Boolean.TRUE.equals(saved.getStopped()), Boolean.TRUE.equals(saved.getHasAccident()));
+        LiveBus bus = buses.putIfAbsent(saved.getId(), created);
+        if (bus == null) {
+            return;
+        }
+        synchronized (bus) {
+            bus.departureTime = saved.getDepartureTime();
+            bus.stopped = Boolean.TRUE.equals(saved.getStopped());
+            bus.hasAccident = Boolean.TRUE.equals(saved.getHasAccident());
+
+            boolean loaded = bus.loadedProgress != null;
+            if (!loaded || !Objects.equals(saved.getCurrentLat(), bus.loadedLat)
+                    || !Objects.equals(saved.getCurrentLng(), bus.loadedLng)) {
+                bus.currentLat = saved.getCurrentLat();
+                bus.currentLng = saved.getCurrentLng();
+            }
+            if (!loaded || !Objects.equals(saved.getProgress(), bus.loadedProgress)
+                    || !sameSecond(saved.getArrivalTime(), bus.loadedArrivalTime)) {
+                bus.progress = saved.getProgress() != null ? saved.getProgress() : 0.0;
+                bus.arrivalTime = saved.getArrivalTime();
+            }
+            bus.loadedLat = null;
+            bus.loadedLng = null;
+            bus.loadedProgress = null;
+            bus.loadedArrivalTime = null;
+
+            // The save wrote the values it carried; newer pings kept here must be written again
+            bus.dirty = !Objects.equals(bus.currentLat, saved.getCurrentLat())
+                    || !Objects.equals(bus.currentLng, saved.getCurrentLng())
+                    || !Objects.equals(bus.progress, saved.getProgress())
+                    || !sameSecond(bus.arrivalTime, saved.getArrivalTime());
+        }
+    }
+
+    /**
+     * Forget a deleted bus
+     */
+    public void evict(Long busId) {
+        buses.remove(busId);
+    }
+
+    /**
+     * Write the pending state of one bus now (before it is loaded for a state change), and
+     * remember what the load will read so {@link #sync(Bus)} can tell what the save changed
+     */
+    public void flush(Long busId) {
+        LiveBus bus = buses.get(busId);
+        if (bus == null) {
+            return;
+        }
+        Object[] row;
+        synchronized (bus) {
+            bus.loadedLat = bus.currentLat;
+            bus.loadedLng = bus.currentLng;
+            bus.loadedProgress = bus.progress;
+            bus.loadedArrivalTime = bus.arrivalTime;
+            if (!bus.dirty) {
+                return;
+            }
+            row = bus.takeRow(busId);
+        }
+        try {
+            jdbcTemplate.update(UPDATE_SQL, row);
+        } catch (RuntimeException e) {
+            markDirty(bus);
+            throw e;
+        }
+    }
+
+    /**
+     * Write every changed bus in one batch
+     */
+    @Scheduled(fixedDelayString = "${app.bus.live.flush-interval-ms:3000}")
+    public void flushAll() {
+        List<Object[]> rows = new ArrayList<>();
+        List<LiveBus> taken = new ArrayList<>();
+        buses.forEach((busId, bus) -> {
+            synchronized (bus) {
+                if (bus.dirty) {
+                    rows.add(bus.takeRow(busId));
+                    taken.add(bus);
+                }
+            }
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, rows);
+            logger.debug("Flushed live state of {} buses", rows.size());
+        } catch (Exception e) {
+            logger.error("Failed to flush live state of {} buses, will retry", rows.size(), e);
+            taken.forEach(this::markDirty);
+        }
+    }
+
+    @PreDestroy
+    private void flushOnShutdown() {
+        flushAll();
+    }
+
+    private void markDirty(LiveBus bus) {
+        synchronized (bus) {
+            bus.dirty = true;
+        }
+    }
+
+    private LiveBus load(Long busId) {
+        LiveBus bus = buses.get(busId);
+        if (bus != null) {
+            return bus;
+        }
+        List<Object[]> rows = busRepository.findLiveState(busId);
+        if (rows.isEmpty()) {
+            throw new ResourceNotFoundException("Bus not found with ID: " + busId);
+        }
+        Object[] row = rows.get(0);
+        LiveBus loaded = new LiveBus((Double) row[0], (Double) row[1], (Double) row[2],
+                (LocalDateTime) row[3], (LocalDateTime) row[4],
+                Boolean.TRUE.equals(row[5]), Boolean.TRUE.equals(row[6]));
+        LiveBus existing = buses.putIfAbsent(busId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    // The database may keep less precision than the value held here
+    private static boolean sameSecond(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.truncatedTo(ChronoUnit.SECONDS).equals(b.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    private static LocalDateTime estimateArrival(LocalDateTime departureTime, double progress) {
+        LocalDateTime now = LocalDateTime.now();
+        if (progress >= 100.0) {
+            return now;
+        }
+        double minutesPerPercent = Duration.between(departureTime, now).toMinutes() / progress;
+        return now.plusMinutes(Math.round((100.0 - progress) * minutesPerPercent));
+    }
+
+    private static final class LiveBus {
+        private Double currentLat;
+        private Double currentLng;
+        private Double progress;
+        private LocalDateTime arrivalTime;
+        private LocalDateTime departureTime;
+        private boolean stopped;
+        private boolean hasAccident;
+        private LocalDateTime updatedAt;
+        private boolean dirty;
+
+        // Live values when the bus was last loaded for a state change; null once synced
+        private Double loadedLat;
+        private Double loadedLng;
+        private Double loadedProgress;
+        private LocalDateTime loadedArrivalTime;
+
+        private LiveBus(Double currentLat, Double currentLng, Double progress, LocalDateTime arrivalTime,
+                        LocalDateTime departureTime, boolean stopped, boolean hasAccident) {
+            this.currentLat = currentLat;
+            this.currentLng = currentLng;
+            this.progress = progress != null ? progress : 0.0;
+            this.arrivalTime = arrivalTime;
+            this.departureTime = departureTime;
+            this.stopped = stopped;
+            this.hasAccident = hasAccident;
+        }
+
+        private Object[] takeRow(Long busId) {
+            dirty = false;
+            return new Object[]{currentLat, currentLng, progress,
+                    arrivalTime != null ? Timestamp.valueOf(arrivalTime) : null, busId};
+        }
+
+        private BusPositionDTO snapshot(Long busId) {
+            return BusPositionDTO.builder()
+                    .busId(busId)
+                    .currentLat(currentLat)
+                    .currentLng(currentLng)
+                    .progress(progress)
+                    .arrivalTime(arrivalTime)
+                    .stopped(stopped)
+                    .hasAccident(hasAccident)
+                    .updatedAt(updatedAt)
+                    .build();
+        }
+    }
+}
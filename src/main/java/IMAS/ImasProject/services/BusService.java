@@ -1,10 +1,12 @@
 package IMAS.ImasProject.services;
 
 import IMAS.ImasProject.model.Bus;
+import IMAS.ImasProject.dto.BusPositionDTO;
 import IMAS.ImasProject.dto.BusReport;
 import IMAS.ImasProject.repository.BusRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.time.Duration;
@@ -22,8 +24,12 @@ public class BusService {
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private BusLiveStateService busLiveStateService;
+
     public Bus save(Bus bus) {
         Bus savedBus = busRepository.save(bus);
+        busLiveStateService.sync(savedBus);
 
         // FIX: Correction de l'erreur de syntaxe dans le message
         String message = "A new bus '" + savedBus.getName() + "' has been created with ID: " + savedBus.getId();
@@ -49,9 +55,10 @@ public class BusService {
     }
 
     /**
-     * Find bus by ID
+     * Find bus by ID, with its pending live position written first
      */
     public Bus findById(Long id) {
+        busLiveStateService.flush(id);
         return busRepository.findById(id).orElse(null);
     }
 
@@ -59,6 +66,7 @@ public class BusService {
      * Find bus by ID with Optional wrapper
      */
     public Optional<Bus> findByIdOptional(Long id) {
+        busLiveStateService.flush(id);
         return busRepository.findById(id);
     }
 
@@ -67,6 +75,7 @@ public class BusService {
      */
     public void deleteById(Long id) {
         busRepository.deleteById(id);
+        busLiveStateService.evict(id);
     }
 
     /**
@@ -245,25 +254,35 @@ public class BusService {
     }
 
     /**
-     * Update bus position and progress
+     * Update bus position and progress in the live state; written to the database in batches
      */
-    @Transactional
-    public Bus updatePosition(Long busId, Double currentLat, Double currentLng, Double progress) {
-        Bus bus = findById(busId);
-        if (bus == null) {
-            throw new RuntimeException("Bus not found with ID: " + busId);
-        }
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BusPositionDTO updatePosition(Long busId, Double currentLat, Double currentLng, Double progress) {
+        return busLiveStateService.update(busId, currentLat, currentLng, progress);
+    }
 
-        bus.setCurrentLat(currentLat);
-        bus.setCurrentLng(currentLng);
-        bus.setProgress(progress);
+    /**
+     * Update only bus progress in the live state
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BusPositionDTO updateProgress(Long busId, Double progress) {
+        return busLiveStateService.update(busId, null, null, progress);
+    }
 
-        // Update arrival time based on progress if bus is running
-        if (!bus.getStopped() && progress != null && progress > 0) {
-            bus.setArrivalTime(calculateUpdatedArrivalTime(bus, progress));
-        }
+    /**
+     * Live position and progress of a bus
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BusPositionDTO getLivePosition(Long busId) {
+        return busLiveStateService.getPosition(busId);
+    }
 
-        return save(bus);
+    /**
+     * Live position and progress of every tracked bus
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BusPositionDTO> getLivePositions() {
+        return busLiveStateService.getPositions();
     }
 
     /**
@@ -300,29 +319,6 @@ public class BusService {
         return bus.getDepartureTime().plusMinutes(estimatedDurationMinutes);
     }
 
-    /**
-     * Calculate updated arrival time based on current progress
-     */
-    private LocalDateTime calculateUpdatedArrivalTime(Bus bus, Double progress) {
-        if (bus.getDepartureTime() == null || progress <= 0) {
-            return calculateEstimatedArrivalTime(bus);
-        }
-
-        // Calculate elapsed time since departure
-        Duration elapsed = Duration.between(bus.getDepartureTime(), LocalDateTime.now());
-
-        // Estimate remaining time based on progress
-        if (progress >= 100.0) {
-            return LocalDateTime.now();
-        }
-
-        double remainingProgress = 100.0 - progress;
-        double timePerProgress = elapsed.toMinutes() / progress;
-        long remainingMinutes = Math.round(remainingProgress * timePerProgress);
-
-        return LocalDateTime.now().plusMinutes(remainingMinutes);
-    }
-
     /**
      * Calculate route duration (placeholder for actual route calculation)
      */
@@ -0,0 +1,216 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.events.FareMatrixChangedEvent;
+import IMAS.ImasProject.model.FareRule;
+import IMAS.ImasProject.model.Ticket;
+import IMAS.ImasProject.repository.FareRuleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ticket pricing shared by ticketing and analytics.
+ *
+ * A fare is {@code app.fares.base} times the multiplier of its origin and destination, plus
+ * {@code app.fares.luggage} with luggage. The multipliers of the {@code fare_matrix} table are
+ * loaded into a flat table indexed by station number, so pricing is two map reads and an
+ * array read, without allocating. The table is rebuilt and swapped after every committed
+ * change to the matrix; unknown stations price at multiplier 1.
+ */
+@Service
+public class FareEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(FareEngine.class);
+
+    // Fares in force before the matrix was stored, seeded into an empty table
+    private static final List<FareRule> DEFAULT_RULES = List.of(
+            new FareRule("GARE_CENTRALE", "MATETE", 1.2),
+            new FareRule("GARE_CENTRALE", "LIMETE", 1.0),
+            new FareRule("GARE_CENTRALE", "BANDALUNGWA", 1.1),
+            new FareRule("GARE_CENTRALE", "NDJILI", 1.5),
+            new FareRule("GARE_CENTRALE", "MASINA", 1.6),
+            new FareRule("GARE_CENTRALE", "KIMBANSEKE", 2.0));
+
+    private final FareRuleRepository fareRuleRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.fares.base:2000}")
+    private double baseFare;
+
+    @Value("${app.fares.luggage:500}")
+    private double luggageFee;
+
+    private volatile Matrix matrix = Matrix.of(DEFAULT_RULES);
+
+    public FareEngine(FareRuleRepository fareRuleRepository, ApplicationEventPublisher eventPublisher) {
+        this.fareRuleRepository = fareRuleRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (fareRuleRepository.count() == 0) {
+            try {
+                fareRuleRepository.saveAll(DEFAULT_RULES.stream()
+                        .map(rule -> new FareRule(rule.getOrigin(), rule.getDestination(), rule.getMultiplier()))
+                        .toList());
+                log.info("Seeded fare matrix with {} default fares", DEFAULT_RULES.size());
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Fare matrix seeded concurrently: {}", e.getMessage());
+            }
+        }
+        reload();
+    }
+
+    // First of the fare change listeners, so the others see the new fares
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFareMatrixChanged(FareMatrixChangedEvent event) {
+        reload();
+    }
+
+    /**
+     * Rebuild the table from the stored matrix
+     */
+    public void reload() {
+        List<FareRule> rules = fareRuleRepository.findAll();
+        matrix = Matrix.of(rules);
+        log.info("Fare matrix loaded: {} fares between {} stations", rules.size(), matrix.stations.size());
+    }
+
+    /**
+     * Multiplier applied to the base fare between two stations
+     */
+    public double multiplier(String origin, String destination) {
+        return matrix.multiplier(origin, destination);
+    }
+
+    /**
+     * Fare between two stations
+     */
+    public double price(String origin, String destination, boolean hasLuggage) {
+        return baseFare * matrix.multiplier(origin, destination) + (hasLuggage ? luggageFee : 0.0);
+    }
+
+    /**
+     * Fare of a ticket
+     */
+    public double price(Ticket ticket) {
+        return price(ticket.getOrigin(), ticket.getDestination(), Boolean.TRUE.equals(ticket.getHasLuggage()));
+    }
+
+    public double getBaseFare() {
+        return baseFare;
+    }
+
+    public double getLuggageFee() {
+        return luggageFee;
+    }
+
+    /**
+     * Stored fares, by origin then destination
+     */
+    public List<FareRule> getRules() {
+        return fareRuleRepository.findAll().stream()
+                .sorted(Comparator.comparing(FareRule::getOrigin).thenComparing(FareRule::getDestination))
+                .toList();
+    }
+
+    /**
+     * Create or change the fare of one direction
+     */
+    @Transactional
+    public FareRule setRule(String origin, String destination, double multiplier) {
+        if (origin == null || origin.isBlank() || destination == null || destination.isBlank()) {
+            throw new IllegalArgumentException("Origin and destination are required");
+        }
+        if (!(multiplier > 0) || Double.isInfinite(multiplier)) {
+            throw new IllegalArgumentException("Fare multiplier must be positive");
+        }
+        FareRule rule = fareRuleRepository.findByOriginAndDestination(origin, destination)
+                .orElseGet(() -> new FareRule(origin, destination, multiplier));
+        rule.setMultiplier(multiplier);
+        FareRule saved = fareRuleRepository.save(rule);
+        eventPublisher.publishEvent(new FareMatrixChangedEvent(this));
+        return saved;
+    }
+
+    /**
+     * Remove the fare of one direction; returns false when there was none
+     */
+    @Transactional
+    public boolean deleteRule(String origin, String destination) {
+        return fareRuleRepository.findByOriginAndDestination(origin, destination)
+                .map(rule -> {
+                    fareRuleRepository.delete(rule);
+                    eventPublisher.publishEvent(new FareMatrixChangedEvent(this));
+                    return true;
+                })
+                .orElse(false);
+    }
+
+    // Immutable once built; a reload swaps in a new instance
+    private static final class Matrix {
+        private final Map<String, Integer> stations;
+        private final int size;
+        private final double[] multipliers;
+
+        private Matrix(Map<String, Integer> stations, double[] multipliers) {
+            this.stations = stations;
+            this.size = stations.size();
+            this.multipliers = multipliers;
+        }
+
+        private static Matrix of(Collection<FareRule> rules) {
+            Map<String, Integer> stations = new HashMap<>();
+            for (FareRule rule : rules) {
+                stations.putIfAbsent(rule.getOrigin(), stations.size());
+                stations.putIfAbsent(rule.getDestination(), stations.size());
+            }
+            int size = stations.size();
+            double[] multipliers = new double[size * size];
+            Arrays.fill(multipliers, Double.NaN);
+            for (FareRule rule : rules) {
+                multipliers[stations.get(rule.getOrigin()) * size + stations.get(rule.getDestination())] = rule.getMultiplier();
+            }
+            // A direction without its own fare takes the reverse one
+            for (FareRule rule : rules) {
+                int reverse = stations.get(rule.getDestination()) * size + stations.get(rule.getOrigin());
+                if (Double.isNaN(multipliers[reverse])) {
+                    multipliers[reverse] = rule.getMultiplier();
+                }
+            }
+            for (int i = 0; i < multipliers.length; i++) {
+                if (Double.isNaN(multipliers[i])) {
+                    multipliers[i] = 1.0;
+                }
+            }
+            return new Matrix(stations, multipliers);
+        }
+
+        private double multiplier(String origin, String destination) {
+            if (origin == null || destination == null) {
+                return 1.0;
+            }
+            Integer from = stations.get(origin);
+            Integer to = stations.get(destination);
+            return from == null || to == null ? 1.0 : multipliers[from * size + to];
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.events.VehicleChangedEvent;
+import IMAS.ImasProject.model.FuelType;
+import IMAS.ImasProject.model.VehicleStatus;
+import IMAS.ImasProject.repository.VehicleRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cached fleet statistics.
+ *
+ * One grouped query returns the whole fleet broken down by status, fuel type, vehicle
+ * type and activity; every statistics view is folded from it into an immutable snapshot.
+ * The snapshot is dropped after each committed vehicle change and otherwise reused for
+ * {@code app.fleet.statistics.ttl-ms}.
+ */
+@Service
+public class FleetStatisticsService {
+
+    private final VehicleRepository vehicleRepository;
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    @Value("${app.fleet.statistics.ttl-ms:30000}")
+    private long ttlMillis;
+
+    public FleetStatisticsService(VehicleRepository vehicleRepository) {
+        this.vehicleRepository = vehicleRepository;
+    }
+
+    /**
+     * Current snapshot, rebuilt when stale or invalidated
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (isFresh(current)) {
+                return current;
+            }
+            // A change committed while the query runs bumps the generation and keeps this snapshot stale
+            long loadedGeneration = generation.get();
+            current = load(loadedGeneration);
+            snapshot = current;
+            return current;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleChanged(VehicleChangedEvent event) {
+        generation.incrementAndGet();
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && current.generation == generation.get()
+                && System.currentTimeMillis() - current.loadedAtMillis < ttlMillis;
+    }
+
+    private Snapshot load(long loadedGeneration) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> groups = vehicleRepository.getFleetStatisticsGroups(now);
+
+        long total = 0, active = 0, inactive = 0, operational = 0, assigned = 0;
+        long accessible = 0, withAc = 0, withWifi = 0, withGps = 0;
+        long requiringMaintenance = 0, overdueForMaintenance = 0;
+        long totalCapacity = 0, activeCapacity = 0;
+        Integer minActiveCapacity = null, maxActiveCapacity = null;
+        Map<VehicleStatus, Long> byStatus = new EnumMap<>(VehicleStatus.class);
+        Map<FuelType, Long> byFuelType = new EnumMap<>(FuelType.class);
+        Map<String, Long> byType = new HashMap<>();
+
+        for (Object[] row : groups) {
+            VehicleStatus status = (VehicleStatus) row[0];
+            FuelType fuelType = (FuelType) row[1];
+            String vehicleType = (String) row[2];
+            Boolean isActive = (Boolean) row[3];
+            long count = asLong(row[4]);
+            long capacity = asLong(row[12]);
+
+            total += count;
+            assigned += asLong(row[5]);
+            accessible += asLong(row[6]);
+            withAc += asLong(row[7]);
+            withWifi += asLong(row[8]);
+            withGps += asLong(row[9]);
+            requiringMaintenance += asLong(row[10]);
+            overdueForMaintenance += asLong(row[11]);
+            totalCapacity += capacity;
+
+            if (status != null) {
+                byStatus.merge(status, count, Long::sum);
+            }
+            if (fuelType != null) {
+                byFuelType.merge(fuelType, count, Long::sum);
+            }
+            if (vehicleType != null) {
+                byType.merge(vehicleType, count, Long::sum);
+            }
+            if (Boolean.TRUE.equals(isActive)) {
+                active += count;
+                activeCapacity += capacity;
+                minActiveCapacity = min(minActiveCapacity, (Integer) row[13]);
+                maxActiveCapacity = max(maxActiveCapacity, (Integer) row[14]);
+                if (status == VehicleStatus.ACTIVE || status == VehicleStatus.IN_TRANSIT) {
+                    operational += count;
+                }
+            } else if (Boolean.FALSE.equals(isActive)) {
+                inactive += count;
+            }
+        }
+
+        Map<String, Long> statusBreakdown = new HashMap<>();
+        for (VehicleStatus status : VehicleStatus.values()) {
+            statusBreakdown.put(status.name(), byStatus.getOrDefault(status, 0L));
+        }
+        Map<String, Long> fuelTypeBreakdown = new HashMap<>();
+        for (FuelType fuelType : FuelType.values()) {
+            fuelTypeBreakdown.put(fuelType.name(), byFuelType.getOrDefault(fuelType, 0L));
+        }
+
+        Map<String, Object> fleet = new LinkedHashMap<>();
+        fleet.put("totalVehicles", total);
+        fleet.put("activeVehicles", active);
+        fleet.put("inactiveVehicles", inactive);
+        fleet.put("statusBreakdown", Collections.unmodifiableMap(statusBreakdown));
+        fleet.put("operationalVehicles", operational);
+        fleet.put("vehiclesRequiringMaintenance", requiringMaintenance);
+        fleet.put("vehiclesOverdueForMaintenance", overdueForMaintenance);
+        fleet.put("assignedVehicles", assigned);
+        fleet.put("unassignedVehicles", total - assigned);
+        fleet.put("averageCapacity", active > 0 ? (double) activeCapacity / active : null);
+        fleet.put("maxCapacity", maxActiveCapacity);
+        fleet.put("minCapacity", minActiveCapacity);
+        fleet.put("accessibleVehicles", accessible);
+        fleet.put("vehiclesWithAC", withAc);
+        fleet.put("vehiclesWithWifi", withWifi);
+        fleet.put("vehiclesWithGPS", withGps);
+
+        Map<String, Object> comprehensive = new LinkedHashMap<>();
+        comprehensive.put("totalVehicles", total);
+        comprehensive.put("activeVehicles", active);
+        comprehensive.put("vehiclesInTransit", byStatus.getOrDefault(VehicleStatus.IN_TRANSIT, 0L));
+        comprehensive.put("vehiclesInMaintenance", byStatus.getOrDefault(VehicleStatus.MAINTENANCE, 0L));
+        comprehensive.put("vehiclesInBreakdown", byStatus.getOrDefault(VehicleStatus.BREAKDOWN, 0L));
+        comprehensive.put("activeReadyVehicles", byStatus.getOrDefault(VehicleStatus.ACTIVE, 0L));
+        comprehensive.put("accessibleVehicles", accessible);
+        comprehensive.put("wifiEnabledVehicles", withWifi);
+        comprehensive.put("gpsEnabledVehicles", withGps);
+        comprehensive.put("totalCapacity", totalCapacity);
+        comprehensive.put("averageCapacity", total > 0 ? (double) totalCapacity / total : null);
+
+        return new Snapshot(loadedGeneration, System.currentTimeMillis(), now,
+                Collections.unmodifiableMap(fleet),
+                Collections.unmodifiableMap(comprehensive),
+                Collections.unmodifiableMap(byType),
+                Collections.unmodifiableMap(fuelTypeBreakdown));
+    }
+
+    private static long asLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    private static Integer min(Integer current, Integer value) {
+        return current == null || (value != null && value < current) ? value : current;
+    }
+
+    private static Integer max(Integer current, Integer value) {
+        return current == null || (value != null && value > current) ? value : current;
+    }
+
+    /**
+     * Immutable fleet statistics, one map per statistics endpoint
+     */
+    public static final class Snapshot {
+        private final long generation;
+        private final long loadedAtMillis;
+        private final LocalDateTime computedAt;
+        private final Map<String, Object> fleet;
+        private final Map<String, Object> comprehensive;
+        private final Map<String, Long> byType;
+        private final Map<String, Long> byFuelType;
+
+        private Snapshot(long generation, long loadedAtMillis, LocalDateTime computedAt,
+                         Map<String, Object> fleet, Map<String, Object> comprehensive,
+                         Map<String, Long> byType, Map<String, Long> byFuelType) {
+            this.generation = generation;
+            this.loadedAtMillis = loadedAtMillis;
+            this.computedAt = computedAt;
+            this.fleet = fleet;
+            this.comprehensive = comprehensive;
+            this.byType = byType;
+            this.byFuelType = byFuelType;
+        }
+
+        public LocalDateTime getComputedAt() {
+            return computedAt;
+        }
+
+        public Map<String, Object> getFleet() {
+            return fleet;
+        }
+
+        public Map<String, Object> getComprehensive() {
+            return comprehensive;
+        }
+
+        public Map<String, Long> getByType() {
+            return byType;
+        }
+
+        public Map<String, Long> getByFuelType() {
+            return byFuelType;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.VehicleLocationCreateDTO;
+import IMAS.ImasProject.model.VehicleLocation;
+import IMAS.ImasProject.repository.VehicleRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * High-throughput GPS ingest.
+ *
+ * Pings are validated against a cached set of vehicle ids and queued in memory;
+ * a single flusher thread writes them with JDBC batch inserts once
+ * {@code app.gps.ingest.batch-size} rows are waiting or
+ * {@code app.gps.ingest.flush-interval-ms} has elapsed. When the queue is full
+ * a request is refused as a whole so the caller can retry later.
+ *
+ * {@code vehicle_locations} has no foreign key to {@code vehicles}, so the database does not
+ * refuse pings of a vehicle deleted while they were queued: the flusher checks each batch
+ * against the id cache again and drops those pings itself. A batch is inserted in one
+ * transaction, so a failed insert leaves nothing behind and is retried once; when rows are
+ * refused again, the batch is split until only the refused rows are dropped.
+ */
+@Service
+public class GPSIngestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GPSIngestService.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO vehicle_locations (vehicle_id, latitude, longitude, speed, heading, passenger_count, " +
+                    "timestamp, accuracy, altitude, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VehicleRepository vehicleRepository;
+    private final VehicleLocationFanout vehicleLocationFanout;
+
+    private final BlockingQueue<Ping> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Set<Long> knownVehicleIds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    @Value("${app.gps.ingest.queue-capacity:200000}")
+    private int queueCapacity;
+
+    @Value("${app.gps.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.gps.ingest.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    public GPSIngestService(JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            VehicleRepository vehicleRepository,
+                            VehicleLocationFanout vehicleLocationFanout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.vehicleRepository = vehicleRepository;
+        this.vehicleLocationFanout = vehicleLocationFanout;
+    }
+
+    @PostConstruct
+    private void start() {
+        running = true;
+        flusher = new Thread(this::flushLoop, "gps-ingest-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    private void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Validate and enqueue a batch of pings. Nothing is queued when the batch does not fit.
+     */
+    public IngestResult submit(List<VehicleLocationCreateDTO> pings) {
+        if (pings == null) {
+            throw new IllegalArgumentException("A list of pings is required");
+        }
+        IngestResult result = new IngestResult();
+        List<Ping> accepted = new ArrayList<>(pings.size());
+
+        for (int i = 0; i < pings.size(); i++) {
+            VehicleLocationCreateDTO dto = pings.get(i);
+            if (!isValid(dto)) {
+                result.rejectedIndexes.add(i);
+            } else {
+                accepted.add(new Ping(dto.getVehicleId(), toLocation(dto)));
+            }
+        }
+
+        if (!reserve(accepted.size())) {
+            result.queueFull = true;
+            return result;
+        }
+        queue.addAll(accepted);
+        result.accepted = accepted.size();
+        return result;
+    }
+
+    /**
+     * Mark a newly created vehicle as a valid ping source
+     */
+    public void registerVehicle(Long vehicleId) {
+        if (vehicleId != null) {
+            knownVehicleIds.add(vehicleId);
+        }
+    }
+
+    /**
+     * Stop accepting pings for a deleted vehicle
+     */
+    public void forgetVehicle(Long vehicleId) {
+        knownVehicleIds.remove(vehicleId);
+    }
+
+    /**
+     * Reload the vehicle id cache; ids registered while the query runs are kept
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.gps.ingest.vehicle-id-refresh-ms:60000}")
+    public void refreshVehicleIds() {
+        Set<Long> before = new HashSet<>(knownVehicleIds);
+        Set<Long> ids = new HashSet<>(vehicleRepository.findAllIds());
+        knownVehicleIds.addAll(ids);
+        before.removeAll(ids);
+        knownVehicleIds.removeAll(before);
+        logger.debug("Vehicle id cache refreshed with {} ids", ids.size());
+    }
+
+    /**
+     * Ingest counters for monitoring
+     */
+    public Map<String, Object> getStatistics() {
+        return Map.of(
+                "queued", pending.get(),
+                "queueCapacity", queueCapacity,
+                "written", writtenCount.get(),
+                "dropped", droppedCount.get(),
+                "knownVehicles", knownVehicleIds.size());
+    }
+
+    private boolean reserve(int count) {
+        while (true) {
+            int current = pending.get();
+            if (current + count > queueCapacity) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + count)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean isValid(VehicleLocationCreateDTO dto) {
+        return dto != null
+                && dto.getVehicleId() != null
+                && knownVehicleIds.contains(dto.getVehicleId())
+                && dto.getLatitude() != null && dto.getLatitude() >= -90.0 && dto.getLatitude() <= 90.0
+                && dto.getLongitude() != null && dto.getLongitude() >= -180.0 && dto.getLongitude() <= 180.0
+                && (dto.getSpeed() == null || dto.getSpeed() >= 0.0)
+                && (dto.getHeading() == null || (dto.getHeading() >= 0.0 && dto.getHeading() <= 360.0))
+                && (dto.getPassengerCount() == null || dto.getPassengerCount() >= 0);
+    }
+
+    private void flushLoop() {
+        List<Ping> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                // Shutting down: write whatever is still queued
+                queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                pending.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Wait for a first ping, then collect until the batch is full or the flush interval expires
+     */
+    private void fillBatch(List<Ping> batch) throws InterruptedException {
+        Ping first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize) {
+                break;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Ping next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void write(List<Ping> batch) {
+        // Vehicles deleted while their pings were queued
+        List<Ping> known = new ArrayList<>(batch.size());
+        for (Ping ping : batch) {
+            if (knownVehicleIds.contains(ping.vehicleId)) {
+                known.add(ping);
+            }
+        }
+        if (known.size() < batch.size()) {
+            droppedCount.addAndGet(batch.size() - known.size());
+            logger.debug("Dropped {} GPS pings of unknown vehicles", batch.size() - known.size());
+        }
+
+        List<Ping> written = new ArrayList<>(known.size());
+        try {
+            insert(known);
+            written = known;
+        } catch (Exception e) {
+            logger.warn("GPS batch insert of {} rows failed, retrying once: {}", known.size(), e.getMessage());
+            try {
+                insert(known);
+                written = known;
+            } catch (Exception retryError) {
+                if (isRowError(retryError)) {
+                    insertSplitting(known, written);
+                } else {
+                    droppedCount.addAndGet(known.size());
+                    logger.error("Dropped {} GPS pings after failed retry", known.size(), retryError);
+                    return;
+                }
+            }
+        }
+
+        writtenCount.addAndGet(written.size());
+        for (Ping ping : written) {
+            vehicleLocationFanout.publish(ping.vehicleId, ping.location);
+        }
+    }
+
+    // Halves a batch the database refuses until the refused rows are alone, and drops only those
+    private void insertSplitting(List<Ping> batch, List<Ping> written) {
+        int half = batch.size() / 2;
+        for (List<Ping> part : List.of(batch.subList(0, half), batch.subList(half, batch.size()))) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            try {
+                insert(part);
+                written.addAll(part);
+            } catch (Exception e) {
+                if (part.size() > 1 && isRowError(e)) {
+                    insertSplitting(part, written);
+                } else {
+                    droppedCount.addAndGet(part.size());
+                    logger.error("Dropped {} GPS pings refused by the database", part.size(), e);
+                }
+            }
+        }
+    }
+
+    // A refused row rather than an unreachable database, which splitting would only hit more often
+    private static boolean isRowError(Exception e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof DataAccessResourceFailureException);
+    }
+
+    // One transaction, so a failed batch rewritten as several INSERTs leaves no rows behind
+    private void insert(List<Ping> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), GPSIngestService::setRow));
+    }
+
+    private static void setRow(PreparedStatement ps, Ping ping) throws SQLException {
+        VehicleLocation location = ping.location;
+        ps.setLong(1, ping.vehicleId);
+        ps.setDouble(2, location.getLatitude());
+        ps.setDouble(3, location.getLongitude());
+        setNullableDouble(ps, 4, location.getSpeed());
+        setNullableDouble(ps, 5, location.getHeading());
+        if (location.getPassengerCount() != null) {
+            ps.setInt(6, location.getPassengerCount());
+        } else {
+            ps.setNull(6, Types.INTEGER);
+        }
+        ps.setTimestamp(7, Timestamp.valueOf(location.getTimestamp()));
+        setNullableDouble(ps, 8, location.getAccuracy());
+        setNullableDouble(ps, 9, location.getAltitude());
+        ps.setTimestamp(10, Timestamp.valueOf(location.getCreatedAt()));
+    }
+
+    private static void setNullableDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value != null) {
+            ps.setDouble(index, value);
+        } else {
+            ps.setNull(index, Types.DOUBLE);
+        }
+    }
+
+    private static VehicleLocation toLocation(VehicleLocationCreateDTO dto) {
+        LocalDateTime now = LocalDateTime.now();
+        VehicleLocation location = new VehicleLocation();
+        location.setLatitude(dto.getLatitude());
+        location.setLongitude(dto.getLongitude());
+        location.setSpeed(dto.getSpeed());
+        location.setHeading(dto.getHeading());
+        location.setPassengerCount(dto.getPassengerCount());
+        location.setTimestamp(dto.getTimestamp() != null ? dto.getTimestamp() : now);
+        location.setAccuracy(dto.getAccuracy());
+        location.setAltitude(dto.getAltitude());
+        location.setCreatedAt(now);
+        return location;
+    }
+
+    private static final class Ping {
+        private final long vehicleId;
+        private final VehicleLocation location;
+
+        private Ping(long vehicleId, VehicleLocation location) {
+            this.vehicleId = vehicleId;
+            this.location = location;
+        }
+    }
+
+    /**
+     * Outcome of a submitted batch
+     */
+    public static final class IngestResult {
+        private int accepted;
+        private boolean queueFull;
+        private final List<Integer> rejectedIndexes = new ArrayList<>();
+
+        public int getAccepted() {
+            return accepted;
+        }
+
+        public int getRejected() {
+            return rejectedIndexes.size();
+        }
+
+        public List<Integer> getRejectedIndexes() {
+            return rejectedIndexes;
+        }
+
+        public boolean isQueueFull() {
+            return queueFull;
+        }
+    }
+}
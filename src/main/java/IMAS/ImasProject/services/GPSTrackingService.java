@@ -1,4 +1,3 @@
-/*
 package IMAS.ImasProject.services;
 
 import IMAS.ImasProject.model.Vehicle;
@@ -15,7 +14,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional
@@ -25,88 +29,84 @@ public class GPSTrackingService {
 
     private final VehicleRepository vehicleRepository;
     private final VehicleLocationRepository vehicleLocationRepository;
+    private final VehiclePositionStore vehiclePositionStore;
+    private final VehicleSpatialIndex vehicleSpatialIndex;
+    private final VehicleDistanceService vehicleDistanceService;
+    private final VehicleLocationPartitionService vehicleLocationPartitionService;
+    private final VehicleLocationFanout vehicleLocationFanout;
 
     // Constructor explicite pour l'injection de dépendance
     @Autowired
     public GPSTrackingService(VehicleRepository vehicleRepository,
-                              VehicleLocationRepository vehicleLocationRepository) {
+                              VehicleLocationRepository vehicleLocationRepository,
+                              VehiclePositionStore vehiclePositionStore,
+                              VehicleSpatialIndex vehicleSpatialIndex,
+                              VehicleDistanceService vehicleDistanceService,
+                              VehicleLocationPartitionService vehicleLocationPartitionService,
+                              VehicleLocationFanout vehicleLocationFanout) {
         this.vehicleRepository = vehicleRepository;
         this.vehicleLocationRepository = vehicleLocationRepository;
+        this.vehiclePositionStore = vehiclePositionStore;
+        this.vehicleSpatialIndex = vehicleSpatialIndex;
+        this.vehicleDistanceService = vehicleDistanceService;
+        this.vehicleLocationPartitionService = vehicleLocationPartitionService;
+        this.vehicleLocationFanout = vehicleLocationFanout;
     }
 
-    */
-/**
+    /**
      * Update vehicle location (GPS tracking)
-     *//*
-
+     */
     public VehicleLocationDTO updateVehicleLocation(VehicleLocationCreateDTO locationDTO) {
         log.info("Updating location for vehicle ID: {}", locationDTO.getVehicleId());
 
         Vehicle vehicle = vehicleRepository.findById(locationDTO.getVehicleId())
                 .orElseThrow(() -> new ResourceNotFoundException("Vehicle not found with ID: " + locationDTO.getVehicleId()));
 
-        // Create VehicleLocation without using builder() since it's not available
-        VehicleLocation location = new VehicleLocation();
-        location.setVehicle(vehicle);
-        location.setLatitude(locationDTO.getLatitude());
-        location.setLongitude(locationDTO.getLongitude());
-        location.setSpeed(locationDTO.getSpeed());
-        location.setHeading(locationDTO.getHeading());
-        location.setPassengerCount(locationDTO.getPassengerCount());
-        location.setTimestamp(locationDTO.getTimestamp() != null ? locationDTO.getTimestamp() : LocalDateTime.now());
-        location.setAccuracy(locationDTO.getAccuracy());
-        location.setAltitude(locationDTO.getAltitude());
-
-        VehicleLocation savedLocation = vehicleLocationRepository.save(location);
+        VehicleLocation savedLocation = vehicleLocationRepository.save(toLocation(vehicle, locationDTO));
+        onLocationSaved(savedLocation);
         log.info("Location updated for vehicle ID: {} at coordinates: {}, {}",
                 locationDTO.getVehicleId(), locationDTO.getLatitude(), locationDTO.getLongitude());
 
         return convertToLocationDTO(savedLocation);
     }
 
-    */
-/**
+    /**
      * Get current location of a vehicle
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public VehicleLocationDTO getCurrentVehicleLocation(Long vehicleId) {
-        Vehicle vehicle = vehicleRepository.findById(vehicleId)
-                .orElseThrow(() -> new ResourceNotFoundException("Vehicle not found with ID: " + vehicleId));
+        if (!vehicleRepository.existsById(vehicleId)) {
+            throw new ResourceNotFoundException("Vehicle not found with ID: " + vehicleId);
+        }
 
-        VehicleLocation currentLocation = vehicle.getCurrentLocation();
+        VehicleLocationDTO currentLocation = vehiclePositionStore.getLatest(vehicleId);
         if (currentLocation == null) {
             throw new ResourceNotFoundException("No location data found for vehicle ID: " + vehicleId);
         }
 
-        return convertToLocationDTO(currentLocation);
+        return currentLocation;
     }
 
-    */
-/**
+    /**
      * Get vehicle location history
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public List<VehicleLocationDTO> getVehicleLocationHistory(Long vehicleId, int limit) {
-        Vehicle vehicle = vehicleRepository.findById(vehicleId)
-                .orElseThrow(() -> new ResourceNotFoundException("Vehicle not found with ID: " + vehicleId));
+        if (!vehicleRepository.existsById(vehicleId)) {
+            throw new ResourceNotFoundException("Vehicle not found with ID: " + vehicleId);
+        }
 
-        List<VehicleLocation> recentLocations = vehicle.getRecentLocations(limit);
-        return recentLocations.stream()
-                .map(this::convertToLocationDTO)
-                .collect(Collectors.toList());
+        return vehiclePositionStore.getRecent(vehicleId, limit);
     }
 
-    */
-/**
+    /**
      * Get vehicle location history within a time range
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public List<VehicleLocationDTO> getVehicleLocationHistory(Long vehicleId, LocalDateTime startTime, LocalDateTime endTime) {
-        Vehicle vehicle = vehicleRepository.findById(vehicleId)
-                .orElseThrow(() -> new ResourceNotFoundException("Vehicle not found with ID: " + vehicleId));
+        if (!vehicleRepository.existsById(vehicleId)) {
+            throw new ResourceNotFoundException("Vehicle not found with ID: " + vehicleId);
+        }
 
         List<VehicleLocation> locations = vehicleLocationRepository
                 .findByVehicleIdAndTimestampBetween(vehicleId, startTime, endTime);
@@ -116,11 +116,36 @@ public class GPSTrackingService {
                 .collect(Collectors.toList());
     }
 
-    */
-/**
-     * Get all vehicles with their current GPS positions
-     *//*
+    /**
+     * Get a simplified, polyline-encoded vehicle track within a time range
+     */
+    @Transactional(readOnly = true)
+    public SimplifiedTrackDTO getSimplifiedLocationHistory(Long vehicleId, LocalDateTime startTime,
+                                                           LocalDateTime endTime, double toleranceMeters) {
+        if (!vehicleRepository.existsById(vehicleId)) {
+            throw new ResourceNotFoundException("Vehicle not found with ID: " + vehicleId);
+        }
+
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(toleranceMeters);
+        try (Stream<Object[]> track = vehicleLocationRepository.streamTrack(vehicleId, startTime, endTime)) {
+            track.forEach(row -> simplifier.add(((Number) row[0]).doubleValue(), ((Number) row[1]).doubleValue()));
+        }
+        TrajectorySimplifier.Result result = simplifier.finish();
+
+        SimplifiedTrackDTO dto = new SimplifiedTrackDTO();
+        dto.setVehicleId(vehicleId);
+        dto.setStartTime(startTime);
+        dto.setEndTime(endTime);
+        dto.setToleranceMeters(toleranceMeters);
+        dto.setOriginalPoints(result.getOriginalPoints());
+        dto.setSimplifiedPoints(result.getSimplifiedPoints());
+        dto.setEncodedPolyline(result.getEncodedPolyline());
+        return dto;
+    }
 
+    /**
+     * Get all vehicles with their current GPS positions
+     */
     @Transactional(readOnly = true)
     public List<VehicleGPSTrackingDTO> getAllVehiclesGPSTracking() {
         List<Vehicle> vehicles = vehicleRepository.findByHasGpsTrue();
@@ -130,11 +155,9 @@ public class GPSTrackingService {
                 .collect(Collectors.toList());
     }
 
-    */
-/**
+    /**
      * Get vehicles with recent location updates
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public List<VehicleGPSTrackingDTO> getVehiclesWithRecentLocations(int minutesAgo) {
         LocalDateTime sinceTime = LocalDateTime.now().minusMinutes(minutesAgo);
@@ -145,11 +168,9 @@ public class GPSTrackingService {
                 .collect(Collectors.toList());
     }
 
-    */
-/**
+    /**
      * Get currently moving vehicles
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public List<VehicleGPSTrackingDTO> getMovingVehicles() {
         LocalDateTime recentTime = LocalDateTime.now().minusMinutes(5); // Consider last 5 minutes
@@ -160,44 +181,33 @@ public class GPSTrackingService {
                 .collect(Collectors.toList());
     }
 
-    */
-/**
+    /**
      * Find vehicles within a specific radius of a location
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public List<VehicleGPSTrackingDTO> findVehiclesInRadius(Double latitude, Double longitude, Double radiusKm) {
         LocalDateTime recentTime = LocalDateTime.now().minusMinutes(30); // Consider last 30 minutes
-        List<Vehicle> vehiclesInRadius = vehicleRepository.findVehiclesInRadius(latitude, longitude, radiusKm, recentTime);
+        List<VehicleSpatialIndex.Hit> hits = vehicleSpatialIndex.findInRadius(latitude, longitude, radiusKm, recentTime);
 
-        return vehiclesInRadius.stream()
-                .map(this::convertToGPSTrackingDTO)
-                .collect(Collectors.toList());
+        return toGPSTrackingDTOs(hits);
     }
 
-    */
-/**
+    /**
      * Get vehicles within coordinate bounds (for map view)
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public List<VehicleGPSTrackingDTO> getVehiclesInBounds(Double minLatitude, Double maxLatitude,
                                                            Double minLongitude, Double maxLongitude) {
         LocalDateTime recentTime = LocalDateTime.now().minusMinutes(30);
-        List<VehicleLocation> locationsInBounds = vehicleLocationRepository
-                .findLocationsInBounds(minLatitude, maxLatitude, minLongitude, maxLongitude, recentTime);
+        List<VehicleSpatialIndex.Hit> hits = vehicleSpatialIndex
+                .findInBounds(minLatitude, maxLatitude, minLongitude, maxLongitude, recentTime);
 
-        return locationsInBounds.stream()
-                .map(location -> convertToGPSTrackingDTO(location.getVehicle()))
-                .distinct()
-                .collect(Collectors.toList());
+        return toGPSTrackingDTOs(hits);
     }
 
-    */
-/**
+    /**
      * Get real-time tracking data for a specific vehicle
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public VehicleGPSTrackingDTO getVehicleGPSTracking(Long vehicleId) {
         Vehicle vehicle = vehicleRepository.findById(vehicleId)
@@ -206,94 +216,105 @@ public class GPSTrackingService {
         return convertToGPSTrackingDTO(vehicle);
     }
 
-    */
-/**
-     * Calculate distance traveled by vehicle in a time period
-     *//*
-
+    /**
+     * Calculate distance traveled by vehicle in a time period (hourly distance buckets)
+     */
     @Transactional(readOnly = true)
     public Double calculateDistanceTraveled(Long vehicleId, LocalDateTime startTime, LocalDateTime endTime) {
-        List<VehicleLocation> route = vehicleLocationRepository
-                .getVehicleRouteInTimeRange(vehicleId, startTime, endTime);
-
-        if (route.size() < 2) {
-            return 0.0;
-        }
-
-        double totalDistance = 0.0;
-        for (int i = 1; i < route.size(); i++) {
-            VehicleLocation previous = route.get(i - 1);
-            VehicleLocation current = route.get(i);
-            totalDistance += previous.distanceTo(current);
-        }
-
-        return totalDistance;
+        return vehicleDistanceService.getDistanceTraveled(vehicleId, startTime, endTime);
     }
 
-    */
-/**
+    /**
      * Get average speed for a vehicle in a time period
-     *//*
-
+     */
     @Transactional(readOnly = true)
     public Double getAverageSpeed(Long vehicleId, LocalDateTime startTime, LocalDateTime endTime) {
         return vehicleLocationRepository.getAverageSpeedByVehicleIdAndTimeRange(vehicleId, startTime, endTime);
     }
 
-    */
-/**
-     * Clean up old location data
-     *//*
-
+    /**
+     * Clean up old location data (drops whole day partitions once rolled up)
+     */
     public void cleanupOldLocationData(int daysToKeep) {
         LocalDateTime cutoffTime = LocalDateTime.now().minusDays(daysToKeep);
-        vehicleLocationRepository.deleteByTimestampBefore(cutoffTime);
+        vehicleLocationPartitionService.purgeBefore(cutoffTime);
         log.info("Cleaned up location data older than {} days", daysToKeep);
     }
 
-    */
-/**
+    /**
      * Batch update vehicle locations
-     *//*
-
+     */
     public List<VehicleLocationDTO> batchUpdateVehicleLocations(List<VehicleLocationCreateDTO> locationUpdates) {
         log.info("Processing batch location update for {} vehicles", locationUpdates.size());
 
+        // One lookup for all distinct vehicles instead of one per fix
+        Set<Long> vehicleIds = locationUpdates.stream()
+                .map(VehicleLocationCreateDTO::getVehicleId)
+                .collect(Collectors.toSet());
+        Map<Long, Vehicle> vehicles = vehicleRepository.findAllById(vehicleIds).stream()
+                .collect(Collectors.toMap(Vehicle::getId, Function.identity()));
+
         List<VehicleLocation> locations = locationUpdates.stream()
                 .map(dto -> {
-                    Vehicle vehicle = vehicleRepository.findById(dto.getVehicleId())
-                            .orElseThrow(() -> new ResourceNotFoundException("Vehicle not found with ID: " + dto.getVehicleId()));
-
-                    // Create VehicleLocation without using builder()
-                    VehicleLocation location = new VehicleLocation();
-                    location.setVehicle(vehicle);
-                    location.setLatitude(dto.getLatitude());
-                    location.setLongitude(dto.getLongitude());
-                    location.setSpeed(dto.getSpeed());
-                    location.setHeading(dto.getHeading());
-                    location.setPassengerCount(dto.getPassengerCount());
-                    location.setTimestamp(dto.getTimestamp() != null ? dto.getTimestamp() : LocalDateTime.now());
-                    location.setAccuracy(dto.getAccuracy());
-                    location.setAltitude(dto.getAltitude());
-
-                    return location;
+                    Vehicle vehicle = vehicles.get(dto.getVehicleId());
+                    if (vehicle == null) {
+                        throw new ResourceNotFoundException("Vehicle not found with ID: " + dto.getVehicleId());
+                    }
+                    return toLocation(vehicle, dto);
                 })
                 .collect(Collectors.toList());
 
         List<VehicleLocation> savedLocations = vehicleLocationRepository.saveAll(locations);
+        savedLocations.forEach(this::onLocationSaved);
 
         return savedLocations.stream()
                 .map(this::convertToLocationDTO)
                 .collect(Collectors.toList());
     }
 
-    */
-/**
-     * Convert VehicleLocation to VehicleLocationDTO
-     *//*
+    /**
+     * Propagate a persisted fix to the in-memory position views
+     */
+    private void onLocationSaved(VehicleLocation location) {
+        vehicleLocationFanout.publish(location.getVehicle().getId(), location);
+    }
+
+    /**
+     * Load the vehicles of index hits by primary key, keeping the hit order
+     */
+    private List<VehicleGPSTrackingDTO> toGPSTrackingDTOs(List<VehicleSpatialIndex.Hit> hits) {
+        List<Long> ids = hits.stream().map(VehicleSpatialIndex.Hit::getVehicleId).collect(Collectors.toList());
+        Map<Long, Vehicle> vehicles = vehicleRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Vehicle::getId, Function.identity()));
+
+        return ids.stream()
+                .map(vehicles::get)
+                .filter(Objects::nonNull)
+                .map(this::convertToGPSTrackingDTO)
+                .collect(Collectors.toList());
+    }
 
+    /**
+     * Build a VehicleLocation entity from an incoming fix
+     */
+    private VehicleLocation toLocation(Vehicle vehicle, VehicleLocationCreateDTO dto) {
+        VehicleLocation location = new VehicleLocation();
+        location.setVehicle(vehicle);
+        location.setLatitude(dto.getLatitude());
+        location.setLongitude(dto.getLongitude());
+        location.setSpeed(dto.getSpeed());
+        location.setHeading(dto.getHeading());
+        location.setPassengerCount(dto.getPassengerCount());
+        location.setTimestamp(dto.getTimestamp() != null ? dto.getTimestamp() : LocalDateTime.now());
+        location.setAccuracy(dto.getAccuracy());
+        location.setAltitude(dto.getAltitude());
+        return location;
+    }
+
+    /**
+     * Convert VehicleLocation to VehicleLocationDTO
+     */
     private VehicleLocationDTO convertToLocationDTO(VehicleLocation location) {
-        // Create VehicleLocationDTO without using builder()
         VehicleLocationDTO dto = new VehicleLocationDTO();
         dto.setId(location.getId());
         dto.setLatitude(location.getLatitude());
@@ -309,34 +330,30 @@ public class GPSTrackingService {
         return dto;
     }
 
-    */
-/**
-     * Convert Vehicle to VehicleGPSTrackingDTO
-     *//*
-
+    /**
+     * Convert Vehicle to VehicleGPSTrackingDTO, reading the position from the store
+     */
     private VehicleGPSTrackingDTO convertToGPSTrackingDTO(Vehicle vehicle) {
-        VehicleLocation currentLocation = vehicle.getCurrentLocation();
-        VehicleLocationDTO currentLocationDTO = null;
+        VehicleLocationDTO currentLocation = vehiclePositionStore.getLatest(vehicle.getId());
 
-        if (currentLocation != null) {
-            currentLocationDTO = convertToLocationDTO(currentLocation);
-        }
+        double currentSpeed = currentLocation != null && currentLocation.getSpeed() != null ? currentLocation.getSpeed() : 0.0;
+        int passengerCount = currentLocation != null && currentLocation.getPassengerCount() != null ? currentLocation.getPassengerCount() : 0;
+        Integer capacity = vehicle.getCapacity();
 
-        // Create VehicleGPSTrackingDTO without using builder()
         VehicleGPSTrackingDTO dto = new VehicleGPSTrackingDTO();
         dto.setVehicleId(vehicle.getId());
         dto.setVehicleNumber(vehicle.getVehicleNumber());
         dto.setLicensePlate(vehicle.getLicensePlate());
         dto.setStatus(vehicle.getStatus());
-        dto.setCurrentLocation(currentLocationDTO);
-        dto.setCurrentSpeed(vehicle.getCurrentSpeed());
-        dto.setCurrentPassengerCount(vehicle.getCurrentPassengerCount());
-        dto.setOccupancyRate(vehicle.getOccupancyRate());
-        dto.setIsMoving(vehicle.isMoving());
+        dto.setCurrentLocation(currentLocation);
+        dto.setCurrentSpeed(currentSpeed);
+        dto.setCurrentPassengerCount(passengerCount);
+        dto.setOccupancyRate(capacity != null && capacity > 0 ? (double) passengerCount / capacity : 0.0);
+        dto.setIsMoving(currentSpeed > 0);
         dto.setLastLocationUpdate(currentLocation != null ? currentLocation.getTimestamp() : null);
         dto.setRouteName(vehicle.getRoute() != null ? vehicle.getRoute().getName() : null);
         dto.setRouteId(vehicle.getRoute() != null ? vehicle.getRoute().getId() : null);
 
         return dto;
     }
-}*/
+}
@@ -0,0 +1,167 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.model.LoginAttempt;
+import IMAS.ImasProject.model.StaffRole;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Maintains and reads the {@code login_attempt_counts} table.
+ *
+ * Each batch of recorded attempts adds its counts per hour, role and outcome in the
+ * transaction that inserts the attempts, so login analytics read a few rows per hour instead
+ * of every attempt. {@link #rebuild()} recomputes the counts from the attempts, and runs at
+ * startup when the table is empty but attempts exist.
+ */
+@Service
+public class LoginStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(LoginStatsService.class);
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO login_attempt_counts (hour_start, user_role, successful, attempt_count) VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE attempt_count = attempt_count + VALUES(attempt_count)";
+
+    private static final String BACKFILL_SQL =
+            "INSERT INTO login_attempt_counts (hour_start, user_role, successful, attempt_count) " +
+                    "SELECT DATE_FORMAT(attempt_time, '%Y-%m-%d %H:00:00'), COALESCE(user_role, ''), successful, COUNT(*) " +
+                    "FROM login_attempts " +
+                    "GROUP BY DATE_FORMAT(attempt_time, '%Y-%m-%d %H:00:00'), COALESCE(user_role, ''), successful";
+
+    private static final String ROWS_SQL =
+            "SELECT hour_start, user_role, successful, attempt_count FROM login_attempt_counts " +
+                    "WHERE hour_start BETWEEN ? AND ? AND attempt_count > 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LoginStatsService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Long counts = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM login_attempt_counts", Long.class);
+        Long attempts = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM login_attempts", Long.class);
+        if (counts != null && counts == 0 && attempts != null && attempts > 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Recompute all counts from the attempts table, in one transaction
+     */
+    public int rebuild() {
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM login_attempt_counts");
+            return jdbcTemplate.update(BACKFILL_SQL);
+        });
+        log.info("Login attempt counts rebuilt with {} rows", rows);
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * Count a batch of attempts, one upsert per hour, role and outcome; call in the
+     * transaction that inserts them
+     */
+    public void add(Collection<LoginAttempt> attempts) {
+        Map<Key, Long> counts = new HashMap<>();
+        for (LoginAttempt attempt : attempts) {
+            counts.merge(new Key(attempt.getAttemptTime().truncatedTo(ChronoUnit.HOURS),
+                    attempt.getUserRole() != null ? attempt.getUserRole().name() : "",
+                    attempt.isSuccessful()), 1L, Long::sum);
+        }
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> rows.add(new Object[]{Timestamp.valueOf(key.hour), key.role, key.successful, count}));
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+    }
+
+    /**
+     * Counts of the hours starting between two times, inclusive
+     */
+    public List<Row> getRows(LocalDateTime from, LocalDateTime to) {
+        return jdbcTemplate.query(ROWS_SQL, (rs, rowNum) -> {
+            String role = rs.getString(2);
+            return new Row(rs.getTimestamp(1).toLocalDateTime(),
+                    role == null || role.isEmpty() ? null : StaffRole.valueOf(role),
+                    rs.getBoolean(3), rs.getLong(4));
+        }, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    private static final class Key {
+        private final LocalDateTime hour;
+        private final String role;
+        private final boolean successful;
+
+        private Key(LocalDateTime hour, String role, boolean successful) {
+            this.hour = hour;
+            this.role = role;
+            this.successful = successful;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return successful == key.successful && hour.equals(key.hour) && role.equals(key.role);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(hour, role, successful);
+        }
+    }
+
+    /**
+     * Attempts of one hour, role and outcome
+     */
+    public static final class Row {
+        private final LocalDateTime hour;
+        private final StaffRole role;
+        private final boolean successful;
+        private final long attemptCount;
+
+        private Row(LocalDateTime hour, StaffRole role, boolean successful, long attemptCount) {
+            this.hour = hour;
+            this.role = role;
+            this.successful = successful;
+            this.attemptCount = attemptCount;
+        }
+
+        public LocalDateTime getHour() {
+            return hour;
+        }
+
+        /**
+         * Role of the attempts, null when they had none
+         */
+        public StaffRole getRole() {
+            return role;
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+
+        public long getAttemptCount() {
+            return attemptCount;
+        }
+    }
+}
@@ -3,20 +3,89 @@ package IMAS.ImasProject.services;
 import IMAS.ImasProject.model.LoginAttempt;
 import IMAS.ImasProject.model.StaffRole;
 import IMAS.ImasProject.repository.LoginAttemptRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records login attempts and reads them back.
+ *
+ * Recording only queues the attempt: a single writer thread inserts queued attempts with JDBC
+ * batch inserts, together with their hourly counts in {@link LoginStatsService}, once
+ * {@code app.analytics.login.batch-size} attempts are waiting or
+ * {@code app.analytics.login.flush-interval-ms} has elapsed. When the queue is full the
+ * attempt is written by the caller instead, so no attempt is lost.
+ */
 @Service
 @Transactional
 public class LoginTrackingService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LoginTrackingService.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO login_attempts (email, ip_address, successful, attempt_time, user_role, failure_reason, " +
+                    "user_agent, device_type, location) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     @Autowired
     private LoginAttemptRepository loginAttemptRepository;
 
+    @Autowired
+    private LoginStatsService loginStatsService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.analytics.login.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.analytics.login.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.analytics.login.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    private BlockingQueue<LoginAttempt> queue;
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    private void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::writeLoop, "login-attempt-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    private void stop() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    // Only queues the attempt, so no transaction is needed on the login path
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void recordLoginAttempt(String email, String ipAddress, boolean successful,
                                    StaffRole userRole, String failureReason, String userAgent) {
         LoginAttempt attempt = new LoginAttempt();
@@ -30,7 +99,10 @@ public class LoginTrackingService {
         attempt.setDeviceType(extractDeviceType(userAgent));
         attempt.setLocation("Kinshasa, DRC"); // You can integrate with IP geolocation service
 
-        loginAttemptRepository.save(attempt);
+        if (!queue.offer(attempt)) {
+            logger.warn("Login attempt queue full, writing attempt for {} directly", email);
+            write(List.of(attempt));
+        }
     }
 
     public List<LoginAttempt> getRecentLoginAttempts(int limit) {
@@ -80,6 +152,71 @@ public class LoginTrackingService {
         return loginAttemptRepository.findMostActiveUsers(since, limit);
     }
 
+    private void writeLoop() {
+        List<LoginAttempt> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                // Shutting down: write whatever is still queued
+                queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Wait for a first attempt, then collect until the batch is full or the flush interval expires
+     */
+    private void fillBatch(List<LoginAttempt> batch) throws InterruptedException {
+        LoginAttempt first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize) {
+                break;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            LoginAttempt next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    // Attempts and their counts commit together, so the counts always match the attempts
+    private void write(List<LoginAttempt> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (PreparedStatement ps, LoginAttempt attempt) -> {
+                    ps.setString(1, attempt.getEmail());
+                    ps.setString(2, attempt.getIpAddress());
+                    ps.setBoolean(3, attempt.isSuccessful());
+                    ps.setTimestamp(4, Timestamp.valueOf(attempt.getAttemptTime()));
+                    ps.setString(5, attempt.getUserRole() != null ? attempt.getUserRole().name() : null);
+                    ps.setString(6, attempt.getFailureReason());
+                    ps.setString(7, attempt.getUserAgent());
+                    ps.setString(8, attempt.getDeviceType());
+                    ps.setString(9, attempt.getLocation());
+                });
+                loginStatsService.add(batch);
+            });
+        } catch (Exception e) {
+            logger.error("Dropped {} login attempts after failed batch insert", batch.size(), e);
+        }
+    }
+
     private String extractDeviceType(String userAgent) {
         if (userAgent == null) return "Unknown";
 
@@ -0,0 +1,243 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.events.FareMatrixChangedEvent;
+import IMAS.ImasProject.model.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Maintains and reads the {@code passenger_ticket_stats} table.
+ *
+ * Buying a ticket adds one ticket and its fare to the passenger's counters, and a paid ticket
+ * that is cancelled or deleted takes them back, in the writing transaction. The leaderboards
+ * are then two indexed {@code ORDER BY ... LIMIT} reads, whatever the ticket history.
+ * {@link #rebuild()} recomputes the counters from the tickets, pricing them in SQL with the
+ * fare matrix; it runs at startup when the table is empty and after fare changes.
+ *
+ * A fare change only flags a rebuild: the maintenance scheduler runs it within
+ * {@code app.passengers.stats.rebuild-delay-ms}, once for any number of changes, so the
+ * request that changed the fare does not wait for it. The flag is raised after
+ * {@link FareEngine} has reloaded, so purchases counted after the rebuild read the tickets
+ * are priced with the new fares, and those priced before are recomputed by it.
+ */
+@Service
+public class PassengerStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(PassengerStatsService.class);
+
+    // Ticket statuses counted as bought
+    private static final Set<String> COUNTED_STATUSES = Set.of("PAID", "BOARDED");
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO passenger_ticket_stats (passenger_id, passenger_name, ticket_count, total_spent) " +
+                    "VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE ticket_count = ticket_count + VALUES(ticket_count), " +
+                    "total_spent = total_spent + VALUES(total_spent), " +
+                    "passenger_name = COALESCE(VALUES(passenger_name), passenger_name)";
+
+    // Same pricing as FareEngine: the route's fare, else the reverse one, else multiplier 1
+    private static final String BACKFILL_SQL =
+            "INSERT INTO passenger_ticket_stats (passenger_id, passenger_name, ticket_count, total_spent) " +
+                    "SELECT t.passenger_id, MAX(CONCAT(t.first_name, ' ', t.last_name)), COUNT(*), " +
+                    "SUM(? * COALESCE(f.multiplier, r.multiplier, 1) + CASE WHEN t.has_luggage THEN ? ELSE 0 END) " +
+                    "FROM ticket t " +
+                    "LEFT JOIN fare_matrix f ON f.origin = t.origin AND f.destination = t.destination " +
+                    "LEFT JOIN fare_matrix r ON r.origin = t.destination AND r.destination = t.origin " +
+                    "WHERE t.status IN ('PAID', 'BOARDED') AND t.passenger_id IS NOT NULL " +
+                    "GROUP BY t.passenger_id";
+
+    private static final String TOP_SQL =
+            "SELECT passenger_id, passenger_name, ticket_count, total_spent FROM passenger_ticket_stats " +
+                    "WHERE ticket_count > 0 ORDER BY %s DESC, passenger_id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FareEngine fareEngine;
+
+    private final AtomicBoolean rebuildRequested = new AtomicBoolean();
+
+    public PassengerStatsService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, FareEngine fareEngine) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.fareEngine = fareEngine;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Long passengers = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM passenger_ticket_stats", Long.class);
+        Long tickets = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ticket", Long.class);
+        if (passengers != null && passengers == 0 && tickets != null && tickets > 0) {
+            rebuild();
+        }
+    }
+
+    // Ordered after FareEngine's own listener, which reloads the fares first
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFareMatrixChanged(FareMatrixChangedEvent event) {
+        rebuildRequested.set(true);
+    }
+
+    /**
+     * Run the rebuild requested by fare changes since the last one
+     */
+    @Scheduled(fixedDelayString = "${app.passengers.stats.rebuild-delay-ms:5000}", scheduler = "maintenanceTaskScheduler")
+    public void rebuildIfRequested() {
+        if (rebuildRequested.getAndSet(false)) {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                rebuildRequested.set(true);
+                log.error("Passenger ticket stats rebuild failed, retrying later", e);
+            }
+        }
+    }
+
+    /**
+     * Recompute every passenger's counters from the ticket table, in one transaction
+     */
+    public int rebuild() {
+        Integer passengers = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM passenger_ticket_stats");
+            return jdbcTemplate.update(BACKFILL_SQL, fareEngine.getBaseFare(), fareEngine.getLuggageFee());
+        });
+        log.info("Passenger ticket stats rebuilt for {} passengers", passengers);
+        return passengers != null ? passengers : 0;
+    }
+
+    /**
+     * Move a ticket's purchase from its previous entry to its current one; either may be null
+     */
+    public void move(Entry from, Entry to) {
+        if (Objects.equals(from, to)) {
+            return;
+        }
+        if (from != null) {
+            jdbcTemplate.update(UPSERT_SQL, from.passengerId, null, -1L, -price(from));
+        }
+        if (to != null) {
+            jdbcTemplate.update(UPSERT_SQL, to.passengerId, to.passengerName, 1L, price(to));
+        }
+    }
+
+    /**
+     * The k passengers with the most tickets
+     */
+    public List<Row> getTopByTickets(int k) {
+        return top("ticket_count", k);
+    }
+
+    /**
+     * The k passengers who spent the most
+     */
+    public List<Row> getTopBySpending(int k) {
+        return top("total_spent", k);
+    }
+
+    /**
+     * Number of passengers with at least one counted ticket
+     */
+    public long countPassengers() {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM passenger_ticket_stats WHERE ticket_count > 0", Long.class);
+        return count != null ? count : 0L;
+    }
+
+    private List<Row> top(String column, int k) {
+        return jdbcTemplate.query(String.format(TOP_SQL, column), (rs, rowNum) ->
+                new Row(rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getDouble(4)), k);
+    }
+
+    private double price(Entry entry) {
+        return fareEngine.price(entry.origin, entry.destination, entry.hasLuggage);
+    }
+
+    /**
+     * Counter entry of a ticket in its current state, or null when it is not counted
+     */
+    public static Entry entryOf(Ticket ticket) {
+        if (ticket.getPassengerId() == null || !COUNTED_STATUSES.contains(ticket.getStatus())) {
+            return null;
+        }
+        return new Entry(ticket.getPassengerId(), ticket.getFullName(), ticket.getOrigin(),
+                ticket.getDestination(), Boolean.TRUE.equals(ticket.getHasLuggage()));
+    }
+
+    /**
+     * What a counted ticket adds to its passenger's counters
+     */
+    public static final class Entry {
+        private final Long passengerId;
+        private final String passengerName;
+        private final String origin;
+        private final String destination;
+        private final boolean hasLuggage;
+
+        private Entry(Long passengerId, String passengerName, String origin, String destination, boolean hasLuggage) {
+            this.passengerId = passengerId;
+            this.passengerName = passengerName;
+            this.origin = origin;
+            this.destination = destination;
+            this.hasLuggage = hasLuggage;
+        }
+
+        // The name is refreshed on purchase only, so it is not part of the entry's identity
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            Entry entry = (Entry) o;
+            return hasLuggage == entry.hasLuggage && passengerId.equals(entry.passengerId)
+                    && Objects.equals(origin, entry.origin) && Objects.equals(destination, entry.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(passengerId, origin, destination, hasLuggage);
+        }
+    }
+
+    /**
+     * Lifetime counters of one passenger
+     */
+    public static final class Row {
+        private final long passengerId;
+        private final String passengerName;
+        private final long ticketCount;
+        private final double totalSpent;
+
+        private Row(long passengerId, String passengerName, long ticketCount, double totalSpent) {
+            this.passengerId = passengerId;
+            this.passengerName = passengerName;
+            this.ticketCount = ticketCount;
+            this.totalSpent = totalSpent;
+        }
+
+        public long getPassengerId() {
+            return passengerId;
+        }
+
+        public String getPassengerName() {
+            return passengerName;
+        }
+
+        public long getTicketCount() {
+            return ticketCount;
+        }
+
+        public double getTotalSpent() {
+            return totalSpent;
+        }
+    }
+}
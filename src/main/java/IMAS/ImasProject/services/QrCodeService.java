@@ -0,0 +1,179 @@
+package IMAS.ImasProject.services;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.client.j2se.MatrixToImageWriter;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * QR code images of ticket payloads, rendered on demand.
+ *
+ * Images are addressed by the SHA-256 of their payload and size, so an image never changes
+ * under its key. Lookups go to a bounded in-memory LRU of {@code app.tickets.qr.cache-size}
+ * images, then to PNG files under {@code app.tickets.qr.store-dir}, and only then render the
+ * payload; the store is skipped when the directory is blank (the default) or cannot be
+ * written. Stored images encode boarding tokens, so those older than
+ * {@code app.tickets.qr.store-max-age-hours} are deleted; a deleted image is rendered again
+ * when it is next asked for.
+ */
+@Service
+public class QrCodeService {
+
+    private static final Logger log = LoggerFactory.getLogger(QrCodeService.class);
+
+    public static final int SIZE = 200;
+
+    private final Map<String, byte[]> cache;
+    private final Path storeDir;
+
+    @Value("${app.tickets.qr.store-max-age-hours:24}")
+    private long storeMaxAgeHours;
+
+    public QrCodeService(@Value("${app.tickets.qr.cache-size:1000}") int cacheSize,
+                         @Value("${app.tickets.qr.store-dir:}") String storeDir) {
+        this.cache = new LinkedHashMap<>(Math.min(cacheSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.storeDir = storeDir == null || storeDir.isBlank() ? null : Paths.get(storeDir);
+    }
+
+    /**
+     * PNG image of a payload
+     */
+    public byte[] getPng(String qrData) throws WriterException, IOException {
+        String key = keyOf(qrData);
+        synchronized (cache) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        byte[] png = readStored(key);
+        if (png == null) {
+            png = render(qrData);
+            store(key, png);
+        }
+        synchronized (cache) {
+            cache.put(key, png);
+        }
+        return png;
+    }
+
+    /**
+     * Entity tag of a payload's image; equal payloads always have equal images
+     */
+    public String getETag(String qrData) {
+        return "\"" + keyOf(qrData) + "\"";
+    }
+
+    /**
+     * Delete stored images older than the maximum age, and temporary files left by failed writes
+     */
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${app.tickets.qr.store-cleanup-interval-ms:3600000}",
+            scheduler = "maintenanceTaskScheduler")
+    public void cleanUpStore() {
+        if (storeDir == null || !Files.isDirectory(storeDir)) {
+            return;
+        }
+        FileTime cutoff = FileTime.from(Instant.now().minus(Duration.ofHours(storeMaxAgeHours)));
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(storeDir, 2)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            log.warn("Could not list stored QR codes in {}: {}", storeDir, e.getMessage());
+            return;
+        }
+        int deleted = 0;
+        for (Path file : files) {
+            try {
+                if (Files.getLastModifiedTime(file).compareTo(cutoff) < 0 && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete stored QR code {}: {}", file, e.getMessage());
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} stored QR codes older than {} hours", deleted, storeMaxAgeHours);
+        }
+    }
+
+    private byte[] render(String qrData) throws WriterException, IOException {
+        log.debug("Rendering QR code with data: {}", qrData);
+        BitMatrix bitMatrix = new QRCodeWriter().encode(qrData, BarcodeFormat.QR_CODE, SIZE, SIZE);
+        ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
+        MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream);
+        return pngOutputStream.toByteArray();
+    }
+
+    private byte[] readStored(String key) {
+        if (storeDir == null) {
+            return null;
+        }
+        Path file = fileOf(key);
+        try {
+            return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+        } catch (IOException e) {
+            log.warn("Could not read stored QR code {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    // Written to a temporary file first, so concurrent readers never see a partial image
+    private void store(String key, byte[] png) {
+        if (storeDir == null) {
+            return;
+        }
+        Path file = fileOf(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(temp, png);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not store QR code {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path fileOf(String key) {
+        return storeDir.resolve(key.substring(0, 2)).resolve(key + ".png");
+    }
+
+    private static String keyOf(String qrData) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((SIZE + ":" + qrData).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
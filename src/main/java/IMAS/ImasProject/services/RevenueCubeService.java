@@ -0,0 +1,302 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.model.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Maintains and reads the {@code revenue_cube} table.
+ *
+ * Every ticket insert, change and delete moves one count between cells in the same
+ * transaction, so the cube always matches the ticket table. {@link #rebuild()} recomputes it
+ * from the tickets, and runs at startup when the cube is empty but tickets exist.
+ */
+@Service
+public class RevenueCubeService {
+
+    private static final Logger log = LoggerFactory.getLogger(RevenueCubeService.class);
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO revenue_cube (day, bus_id, driver_id, origin, destination, status, has_luggage, ticket_count) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE ticket_count = ticket_count + VALUES(ticket_count)";
+
+    private static final String BACKFILL_SQL =
+            "INSERT INTO revenue_cube (day, bus_id, driver_id, origin, destination, status, has_luggage, ticket_count) " +
+                    "SELECT DATE(issued_at), bus_id, COALESCE(driver_id, 0), origin, destination, status, has_luggage, COUNT(*) " +
+                    "FROM ticket WHERE issued_at IS NOT NULL AND status IS NOT NULL " +
+                    "GROUP BY DATE(issued_at), bus_id, COALESCE(driver_id, 0), origin, destination, status, has_luggage";
+
+    private static final String ROWS_SQL =
+            "SELECT c.day, c.bus_id, b.name, c.driver_id, s.first_name, s.last_name, " +
+                    "c.origin, c.destination, c.has_luggage, SUM(c.ticket_count) " +
+                    "FROM revenue_cube c " +
+                    "LEFT JOIN buses b ON b.id = c.bus_id " +
+                    "LEFT JOIN staff s ON s.id = c.driver_id " +
+                    "WHERE c.status IN (%s) AND c.day BETWEEN ? AND ? " +
+                    "GROUP BY c.day, c.bus_id, b.name, c.driver_id, s.first_name, s.last_name, c.origin, c.destination, c.has_luggage " +
+                    "HAVING SUM(c.ticket_count) > 0";
+
+    private static final String BUS_ROUTE_SQL =
+            "SELECT bus_id, origin, destination, has_luggage, SUM(ticket_count) FROM revenue_cube " +
+                    "WHERE status IN (%s) AND day BETWEEN ? AND ? " +
+                    "GROUP BY bus_id, origin, destination, has_luggage " +
+                    "HAVING SUM(ticket_count) > 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public RevenueCubeService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        Long cells = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM revenue_cube", Long.class);
+        Long tickets = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM ticket", Long.class);
+        if (cells != null && cells == 0 && tickets != null && tickets > 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Recompute the whole cube from the ticket table, in one transaction
+     */
+    public int rebuild() {
+        Integer cells = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM revenue_cube");
+            return jdbcTemplate.update(BACKFILL_SQL);
+        });
+        log.info("Revenue cube rebuilt with {} cells", cells);
+        return cells != null ? cells : 0;
+    }
+
+    /**
+     * Move a ticket's count from its previous cell to its current one; either may be null
+     */
+    public void move(Cell from, Cell to) {
+        if (Objects.equals(from, to)) {
+            return;
+        }
+        if (from != null) {
+            add(from, -1);
+        }
+        if (to != null) {
+            add(to, 1);
+        }
+    }
+
+    /**
+     * Cells with tickets in the given statuses issued between two days, inclusive
+     */
+    public List<Row> getRows(Collection<String> statuses, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(String.format(ROWS_SQL, placeholders(statuses)), (rs, rowNum) -> {
+            String firstName = rs.getString(5);
+            String lastName = rs.getString(6);
+            return new Row(rs.getDate(1).toLocalDate(), rs.getLong(2), rs.getString(3), rs.getLong(4),
+                    firstName != null || lastName != null ? firstName + " " + lastName : null,
+                    rs.getString(7), rs.getString(8), rs.getBoolean(9), rs.getLong(10));
+        }, args(statuses, from, to));
+    }
+
+    /**
+     * Ticket counts per bus and fare (route and luggage) for tickets in the given statuses issued
+     * between two days, inclusive
+     */
+    public List<BusRouteRow> getBusRouteRows(Collection<String> statuses, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query(String.format(BUS_ROUTE_SQL, placeholders(statuses)), (rs, rowNum) ->
+                new BusRouteRow(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getBoolean(4), rs.getLong(5)),
+                args(statuses, from, to));
+    }
+
+    private static String placeholders(Collection<String> statuses) {
+        return String.join(", ", statuses.stream().map(status -> "?").toList());
+    }
+
+    private static Object[] args(Collection<String> statuses, LocalDate from, LocalDate to) {
+        Object[] args = new Object[statuses.size() + 2];
+        int i = 0;
+        for (String status : statuses) {
+            args[i++] = status;
+        }
+        args[i++] = Date.valueOf(from);
+        args[i] = Date.valueOf(to);
+        return args;
+    }
+
+    private void add(Cell cell, long delta) {
+        jdbcTemplate.update(UPSERT_SQL, Date.valueOf(cell.day), cell.busId, cell.driverId, cell.origin,
+                cell.destination, cell.status, cell.hasLuggage, delta);
+    }
+
+    /**
+     * Cube cell of a ticket in its current state, or null when it cannot be counted
+     */
+    public static Cell cellOf(Ticket ticket) {
+        if (ticket.getIssuedAt() == null || ticket.getStatus() == null || ticket.getBus() == null
+                || ticket.getOrigin() == null || ticket.getDestination() == null) {
+            return null;
+        }
+        return new Cell(ticket.getIssuedAt().toLocalDate(), ticket.getBus().getId(),
+                ticket.getDriver() != null ? ticket.getDriver().getId() : 0L,
+                ticket.getOrigin(), ticket.getDestination(), ticket.getStatus(),
+                Boolean.TRUE.equals(ticket.getHasLuggage()));
+    }
+
+    /**
+     * Key of one cube cell
+     */
+    public static final class Cell {
+        private final LocalDate day;
+        private final Long busId;
+        private final Long driverId;
+        private final String origin;
+        private final String destination;
+        private final String status;
+        private final boolean hasLuggage;
+
+        private Cell(LocalDate day, Long busId, Long driverId, String origin, String destination,
+                     String status, boolean hasLuggage) {
+            this.day = day;
+            this.busId = busId;
+            this.driverId = driverId;
+            this.origin = origin;
+            this.destination = destination;
+            this.status = status;
+            this.hasLuggage = hasLuggage;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Cell)) return false;
+            Cell cell = (Cell) o;
+            return hasLuggage == cell.hasLuggage && day.equals(cell.day) && Objects.equals(busId, cell.busId)
+                    && Objects.equals(driverId, cell.driverId) && origin.equals(cell.origin)
+                    && destination.equals(cell.destination) && status.equals(cell.status);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(day, busId, driverId, origin, destination, status, hasLuggage);
+        }
+    }
+
+    /**
+     * Ticket count of one cell summed over the requested statuses
+     */
+    public static final class Row {
+        private final LocalDate day;
+        private final long busId;
+        private final String busName;
+        private final long driverId;
+        private final String driverName;
+        private final String origin;
+        private final String destination;
+        private final boolean hasLuggage;
+        private final long ticketCount;
+
+        private Row(LocalDate day, long busId, String busName, long driverId, String driverName,
+                    String origin, String destination, boolean hasLuggage, long ticketCount) {
+            this.day = day;
+            this.busId = busId;
+            this.busName = busName;
+            this.driverId = driverId;
+            this.driverName = driverName;
+            this.origin = origin;
+            this.destination = destination;
+            this.hasLuggage = hasLuggage;
+            this.ticketCount = ticketCount;
+        }
+
+        public LocalDate getDay() {
+            return day;
+        }
+
+        public long getBusId() {
+            return busId;
+        }
+
+        public String getBusName() {
+            return busName;
+        }
+
+        /**
+         * Driver of the tickets, 0 when they have none
+         */
+        public long getDriverId() {
+            return driverId;
+        }
+
+        public String getDriverName() {
+            return driverName;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public boolean isHasLuggage() {
+            return hasLuggage;
+        }
+
+        public long getTicketCount() {
+            return ticketCount;
+        }
+    }
+
+    /**
+     * Ticket count of one bus at one fare
+     */
+    public static final class BusRouteRow {
+        private final long busId;
+        private final String origin;
+        private final String destination;
+        private final boolean hasLuggage;
+        private final long ticketCount;
+
+        BusRouteRow(long busId, String origin, String destination, boolean hasLuggage, long ticketCount) {
+            this.busId = busId;
+            this.origin = origin;
+            this.destination = destination;
+            this.hasLuggage = hasLuggage;
+            this.ticketCount = ticketCount;
+        }
+
+        public long getBusId() {
+            return busId;
+        }
+
+        public String getOrigin() {
+            return origin;
+        }
+
+        public String getDestination() {
+            return destination;
+        }
+
+        public boolean isHasLuggage() {
+            return hasLuggage;
+        }
+
+        public long getTicketCount() {
+            return ticketCount;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.exception.HoldLimitExceededException;
+import IMAS.ImasProject.exception.SeatHeldException;
+import IMAS.ImasProject.exception.SeatUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-lived seat holds taken while a passenger checks out.
+ *
+ * A hold reserves a seat of a trip for one passenger during {@code app.tickets.hold.duration-ms};
+ * other passengers cannot hold or buy it meanwhile, and buying it consumes the hold. Holds
+ * are kept in memory and expire through a hashed timing wheel advanced every
+ * {@code app.tickets.hold.tick-ms}: scheduling and expiring a hold are O(1), with no
+ * polling of individual holds. Reads ignore holds past their deadline, so a late tick never
+ * extends a hold. Every change bumps the trip's hold version, which is part of the seat
+ * map's entity tag.
+ */
+@Service
+public class SeatHoldService {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatHoldService.class);
+
+    private static final int WHEEL_SIZE = 512;
+
+    private final SeatInventoryService seatInventoryService;
+
+    private final Map<SeatInventoryService.TripKey, TripHolds> trips = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    private final Queue<Hold>[] wheel;
+    private final AtomicLong currentTick = new AtomicLong();
+
+    @Value("${app.tickets.hold.duration-ms:300000}")
+    private long holdMillis;
+
+    @Value("${app.tickets.hold.tick-ms:1000}")
+    private long tickMillis;
+
+    @Value("${app.tickets.hold.max-per-passenger:6}")
+    private int maxHoldsPerPassenger;
+
+    @SuppressWarnings("unchecked")
+    public SeatHoldService(SeatInventoryService seatInventoryService) {
+        this.seatInventoryService = seatInventoryService;
+        this.wheel = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Hold a free seat (1-based) for a passenger, or extend the passenger's own hold
+     */
+    public Hold hold(SeatInventoryService.TripKey trip, int seat, Long passengerId) {
+        Objects.requireNonNull(passengerId, "passengerId");
+        if (seatInventoryService.isTaken(trip, seat)) {
+            throw new SeatUnavailableException("Seat " + seat + " is already taken for this trip");
+        }
+        long now = System.currentTimeMillis();
+        while (true) {
+            TripHolds holds = trips.computeIfAbsent(trip, TripHolds::new);
+            Hold hold;
+            synchronized (holds) {
+                if (trips.get(trip) != holds) {
+                    // Emptied and dropped meanwhile
+                    continue;
+                }
+                Hold current = holds.active(seat, now);
+                if (current != null && !current.passengerId.equals(passengerId)) {
+                    throw new SeatHeldException("Seat " + seat + " is held by another passenger");
+                }
+                if (current == null && holds.countFor(passengerId, now) >= maxHoldsPerPassenger) {
+                    throw new HoldLimitExceededException("A passenger can hold at most " + maxHoldsPerPassenger + " seats per trip");
+                }
+                hold = new Hold(trip, seat, passengerId, now + holdMillis);
+                holds.seats.put(seat, hold);
+                holds.version = versions.incrementAndGet();
+            }
+            schedule(hold, now);
+            return hold;
+        }
+    }
+
+    /**
+     * Drop a passenger's hold on a seat; returns false when the passenger held nothing there
+     */
+    public boolean release(SeatInventoryService.TripKey trip, int seat, Long passengerId) {
+        TripHolds holds = trips.get(trip);
+        if (holds == null) {
+            return false;
+        }
+        synchronized (holds) {
+            Hold current = holds.active(seat, System.currentTimeMillis());
+            if (current == null || !current.passengerId.equals(passengerId)) {
+                return false;
+            }
+            remove(holds, seat);
+        }
+        return true;
+    }
+
+    /**
+     * Fail unless the seat is free of holds or held by this passenger
+     */
+    public void checkAvailableTo(SeatInventoryService.TripKey trip, int seat, Long passengerId) {
+        if (isHeldByOther(trip, seat, passengerId)) {
+            throw new SeatHeldException("Seat " + seat + " is held by another passenger");
+        }
+    }
+
+    /**
+     * Whether another passenger currently holds the seat
+     */
+    public boolean isHeldByOther(SeatInventoryService.TripKey trip, int seat, Long passengerId) {
+        TripHolds holds = trips.get(trip);
+        if (holds == null) {
+            return false;
+        }
+        synchronized (holds) {
+            Hold current = holds.active(seat, System.currentTimeMillis());
+            return current != null && !current.passengerId.equals(passengerId);
+        }
+    }
+
+    /**
+     * Remove the passenger's hold once the seat is bought: after the caller's transaction
+     * commits, so a failed purchase keeps the hold
+     */
+    public void consume(SeatInventoryService.TripKey trip, int seat, Long passengerId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            release(trip, seat, passengerId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                release(trip, seat, passengerId);
+            }
+        });
+    }
+
+    /**
+     * Currently held seats of a trip and the version of its holds
+     */
+    public TripHoldsView getHolds(SeatInventoryService.TripKey trip) {
+        TripHolds holds = trips.get(trip);
+        if (holds == null) {
+            return new TripHoldsView(0L, Collections.emptyList());
+        }
+        long now = System.currentTimeMillis();
+        synchronized (holds) {
+            List<Integer> held = new ArrayList<>();
+            holds.seats.forEach((seat, hold) -> {
+                if (hold.expiresAtMillis > now) {
+                    held.add(seat);
+                }
+            });
+            Collections.sort(held);
+            return new TripHoldsView(holds.version, held);
+        }
+    }
+
+    /**
+     * Advance the wheel by one tick and expire the holds due in that slot
+     */
+    @Scheduled(fixedRateString = "${app.tickets.hold.tick-ms:1000}")
+    public void tick() {
+        long tick = currentTick.incrementAndGet();
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        Iterator<Hold> iterator = wheel[(int) (tick & (WHEEL_SIZE - 1))].iterator();
+        while (iterator.hasNext()) {
+            Hold hold = iterator.next();
+            if (hold.remainingRounds > 0) {
+                hold.remainingRounds--;
+                continue;
+            }
+            iterator.remove();
+            if (hold.expiresAtMillis > now) {
+                // Scheduled against a tick that had already advanced; put it back where it belongs
+                schedule(hold, now);
+            } else if (expire(hold)) {
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            log.debug("Expired {} seat holds", expired);
+        }
+    }
+
+    private void schedule(Hold hold, long now) {
+        long ticks = Math.max(1, (hold.expiresAtMillis - now + tickMillis - 1) / tickMillis);
+        hold.remainingRounds = (ticks - 1) / WHEEL_SIZE;
+        wheel[(int) ((currentTick.get() + ticks) & (WHEEL_SIZE - 1))].add(hold);
+    }
+
+    // Only the hold still registered for its seat is expired; replaced holds are just dropped
+    private boolean expire(Hold hold) {
+        TripHolds holds = trips.get(hold.trip);
+        if (holds == null) {
+            return false;
+        }
+        synchronized (holds) {
+            if (holds.seats.get(hold.seat) != hold) {
+                return false;
+            }
+            remove(holds, hold.seat);
+        }
+        return true;
+    }
+
+    // Callers hold the trip's lock; a trip without holds is dropped and reads as version 0
+    private void remove(TripHolds holds, int seat) {
+        holds.seats.remove(seat);
+        holds.version = versions.incrementAndGet();
+        if (holds.seats.isEmpty()) {
+            trips.remove(holds.trip, holds);
+        }
+    }
+
+    private static final class TripHolds {
+        private final SeatInventoryService.TripKey trip;
+        private final Map<Integer, Hold> seats = new HashMap<>();
+        private long version;
+
+        private TripHolds(SeatInventoryService.TripKey trip) {
+            this.trip = trip;
+        }
+
+        private Hold active(int seat, long now) {
+            Hold hold = seats.get(seat);
+            return hold != null && hold.expiresAtMillis > now ? hold : null;
+        }
+
+        private int countFor(Long passengerId, long now) {
+            int count = 0;
+            for (Hold hold : seats.values()) {
+                if (hold.passengerId.equals(passengerId) && hold.expiresAtMillis > now) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * A seat held for a passenger until a deadline
+     */
+    public static final class Hold {
+        private final SeatInventoryService.TripKey trip;
+        private final int seat;
+        private final Long passengerId;
+        private final long expiresAtMillis;
+        // Full wheel turns left before expiry; only touched by the ticking thread after scheduling
+        private volatile long remainingRounds;
+
+        private Hold(SeatInventoryService.TripKey trip, int seat, Long passengerId, long expiresAtMillis) {
+            this.trip = trip;
+            this.seat = seat;
+            this.passengerId = passengerId;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public int getSeat() {
+            return seat;
+        }
+
+        public Long getPassengerId() {
+            return passengerId;
+        }
+
+        public LocalDateTime getExpiresAt() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(expiresAtMillis), ZoneId.systemDefault());
+        }
+    }
+
+    /**
+     * Held seats of a trip at one version
+     */
+    public static final class TripHoldsView {
+        private final long version;
+        private final List<Integer> heldSeats;
+
+        private TripHoldsView(long version, List<Integer> heldSeats) {
+            this.version = version;
+            this.heldSeats = Collections.unmodifiableList(heldSeats);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Integer> getHeldSeats() {
+            return heldSeats;
+        }
+    }
+}
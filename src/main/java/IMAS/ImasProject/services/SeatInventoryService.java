@@ -0,0 +1,378 @@
+package IMAS.ImasProject.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Seat inventory of each trip, held as a bitmap.
+ *
+ * A trip is a bus, a departure time to the minute, an origin and a destination. Its row in
+ * {@code trip_seat_inventory} is created on the first change from the PAID and BOARDED
+ * tickets already sold, and is unique per trip; reads of a trip without a row compute its
+ * bitmaps from the tickets without storing them. It holds a bitmap of taken seats and one of boarded
+ * seats. Every change goes through {@code UPDATE ... WHERE version = ?}, so of two buyers
+ * of the same seat exactly one succeeds and the other sees the seat taken. Bitmaps are
+ * cached once their transaction commits, so availability checks are a bit lookup that never
+ * sees an uncommitted reservation, and the version doubles as the seat map's version for
+ * HTTP caching.
+ */
+@Service
+public class SeatInventoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatInventoryService.class);
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final String SELECT_SQL =
+            "SELECT id, version, seats, boarded FROM trip_seat_inventory " +
+                    "WHERE bus_id = ? AND departure_time = ? AND origin = ? AND destination = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO trip_seat_inventory (bus_id, departure_time, origin, destination, seats, boarded, version) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String CAS_SQL =
+            "UPDATE trip_seat_inventory SET seats = ?, boarded = ?, version = version + 1 WHERE id = ? AND version = ?";
+
+    private static final String SOLD_SEATS_SQL =
+            "SELECT seat_number, status FROM ticket WHERE bus_id = ? AND departure_time >= ? AND departure_time < ? " +
+                    "AND origin = ? AND destination = ? AND status IN ('PAID', 'BOARDED')";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<TripKey, Inventory> inventories = new ConcurrentHashMap<>();
+
+    public SeatInventoryService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Whether a seat (1-based) is taken on a trip
+     */
+    public boolean isTaken(TripKey trip, int seat) {
+        return read(trip).isTaken(seat);
+    }
+
+    /**
+     * Number of taken seats on a trip
+     */
+    public int countTaken(TripKey trip) {
+        return read(trip).count();
+    }
+
+    /**
+     * Taken and boarded seats of a trip with their version
+     */
+    public SeatMap getSeatMap(TripKey trip) {
+        Inventory inventory = read(trip);
+        return new SeatMap(inventory.id, inventory.version, seatsOf(inventory.seats), seatsOf(inventory.boarded));
+    }
+
+    /**
+     * Take a seat (1-based); returns false when it is already taken. Joins the caller's
+     * transaction, so the seat is freed again if that transaction rolls back.
+     */
+    public boolean reserve(TripKey trip, int seat) {
+        return update(trip, seat, inventory -> inventory.isTaken(seat) ? null : inventory.with(seat, true, false));
+    }
+
+    /**
+     * Free a seat (1-based); returns false when it was not taken
+     */
+    public boolean release(TripKey trip, int seat) {
+        return update(trip, seat, inventory -> inventory.isTaken(seat) ? inventory.with(seat, false, false) : null);
+    }
+
+    /**
+     * Mark a seat (1-based) as boarded; returns false when it already was
+     */
+    public boolean board(TripKey trip, int seat) {
+        return update(trip, seat, inventory -> inventory.isBoarded(seat) ? null : inventory.with(seat, true, true));
+    }
+
+    /**
+     * Forget cached trips that departed more than a day ago
+     */
+    @Scheduled(fixedDelayString = "${app.tickets.seat-inventory.evict-interval-ms:3600000}")
+    public void evictDepartedTrips() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(1);
+        inventories.keySet().removeIf(trip -> trip.departureTime.isBefore(cutoff));
+    }
+
+    // Applies a change (null when there is nothing to do) with compare-and-set on the version
+    private boolean update(TripKey trip, int seat, UnaryOperator<Inventory> change) {
+        if (seat < 1) {
+            throw new IllegalArgumentException("Invalid seat number: " + seat);
+        }
+        Inventory inventory = get(trip);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            Inventory updated = change.apply(inventory);
+            if (updated == null) {
+                return false;
+            }
+            if (jdbcTemplate.update(CAS_SQL, updated.seats, updated.boarded, inventory.id, inventory.version) == 1) {
+                publish(trip, updated);
+                return true;
+            }
+            // Lost the race: wait for the winner's commit and retry on its bitmap
+            inventory = load(trip, true);
+        }
+        throw new IllegalStateException("Seat inventory of trip " + trip + " is too contended, try again");
+    }
+
+    // Caches a bitmap once it is committed: right away outside a transaction, otherwise after
+    // the commit, so other threads never see a change that may still roll back
+    private void publish(TripKey trip, Inventory inventory) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache(trip, inventory);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    cache(trip, inventory);
+                } else {
+                    inventories.remove(trip);
+                }
+            }
+        });
+    }
+
+    // Commits of one row may complete out of order; the newest version wins
+    private void cache(TripKey trip, Inventory inventory) {
+        inventories.merge(trip, inventory, (current, candidate) ->
+                candidate.id != current.id || candidate.version >= current.version ? candidate : current);
+    }
+
+    // Reads never create a row: a trip without one is computed from its sold tickets and not cached
+    private Inventory read(TripKey trip) {
+        Inventory inventory = inventories.get(trip);
+        if (inventory != null) {
+            return inventory;
+        }
+        inventory = select(trip, false);
+        if (inventory == null) {
+            Inventory sold = soldSeats(trip);
+            return new Inventory(0L, 0L, sold.seats, sold.boarded);
+        }
+        publish(trip, inventory);
+        return inventory;
+    }
+
+    private Inventory get(TripKey trip) {
+        Inventory inventory = inventories.get(trip);
+        if (inventory != null) {
+            return inventory;
+        }
+        inventory = load(trip, false);
+        publish(trip, inventory);
+        return inventory;
+    }
+
+    private Inventory load(TripKey trip, boolean forUpdate) {
+        Inventory inventory = select(trip, forUpdate);
+        if (inventory != null) {
+            return inventory;
+        }
+        Inventory sold = soldSeats(trip);
+        try {
+            jdbcTemplate.update(INSERT_SQL, trip.busId, Timestamp.valueOf(trip.departureTime),
+                    trip.origin, trip.destination, sold.seats, sold.boarded);
+        } catch (DuplicateKeyException e) {
+            log.debug("Seat inventory of trip {} created concurrently", trip);
+        }
+        // Locking read, which sees a row committed by a concurrent creator
+        return select(trip, true);
+    }
+
+    private Inventory select(TripKey trip, boolean forUpdate) {
+        List<Inventory> rows = jdbcTemplate.query(forUpdate ? SELECT_SQL + " FOR UPDATE" : SELECT_SQL,
+                (resultSet, rowNum) -> new Inventory(resultSet.getLong(1), resultSet.getLong(2),
+                        resultSet.getBytes(3), resultSet.getBytes(4)),
+                trip.busId, Timestamp.valueOf(trip.departureTime), trip.origin, trip.destination);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Bitmaps of the tickets sold before the trip had an inventory row
+    private Inventory soldSeats(TripKey trip) {
+        List<Object[]> tickets = jdbcTemplate.query(SOLD_SEATS_SQL,
+                (resultSet, rowNum) -> new Object[]{resultSet.getString(1), resultSet.getString(2)},
+                trip.busId, Timestamp.valueOf(trip.departureTime), Timestamp.valueOf(trip.departureTime.plusMinutes(1)),
+                trip.origin, trip.destination);
+        Inventory inventory = new Inventory(0L, 0L, null, null);
+        for (Object[] ticket : tickets) {
+            String seatNumber = (String) ticket[0];
+            if (seatNumber == null) {
+                continue;
+            }
+            try {
+                int seat = Integer.parseInt(seatNumber.trim());
+                if (seat >= 1) {
+                    inventory = inventory.with(seat, true, "BOARDED".equals(ticket[1]));
+                }
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring non-numeric seat '{}' sold on trip {}", seatNumber, trip);
+            }
+        }
+        return inventory;
+    }
+
+    private static List<Integer> seatsOf(byte[] bitmap) {
+        List<Integer> seats = new ArrayList<>();
+        for (int bit = 0; bit < bitmap.length * 8; bit++) {
+            if ((bitmap[bit >> 3] & (1 << (bit & 7))) != 0) {
+                seats.add(bit + 1);
+            }
+        }
+        return seats;
+    }
+
+    /**
+     * Identity of a trip for seat inventory purposes
+     */
+    public static final class TripKey {
+        private final Long busId;
+        private final LocalDateTime departureTime;
+        private final String origin;
+        private final String destination;
+
+        private TripKey(Long busId, LocalDateTime departureTime, String origin, String destination) {
+            this.busId = busId;
+            this.departureTime = departureTime;
+            this.origin = origin;
+            this.destination = destination;
+        }
+
+        public static TripKey of(Long busId, LocalDateTime departureTime, String origin, String destination) {
+            return new TripKey(Objects.requireNonNull(busId, "busId"),
+                    Objects.requireNonNull(departureTime, "departureTime").truncatedTo(ChronoUnit.MINUTES),
+                    Objects.requireNonNull(origin, "origin"), Objects.requireNonNull(destination, "destination"));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TripKey)) return false;
+            TripKey other = (TripKey) o;
+            return busId.equals(other.busId) && departureTime.equals(other.departureTime)
+                    && origin.equals(other.origin) && destination.equals(other.destination);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(busId, departureTime, origin, destination);
+        }
+
+        @Override
+        public String toString() {
+            return "bus " + busId + " at " + departureTime + " " + origin + "->" + destination;
+        }
+    }
+
+    /**
+     * Seat map of a trip at one version
+     */
+    public static final class SeatMap {
+        private final long inventoryId;
+        private final long version;
+        private final List<Integer> takenSeats;
+        private final List<Integer> boardedSeats;
+
+        private SeatMap(long inventoryId, long version, List<Integer> takenSeats, List<Integer> boardedSeats) {
+            this.inventoryId = inventoryId;
+            this.version = version;
+            this.takenSeats = Collections.unmodifiableList(takenSeats);
+            this.boardedSeats = Collections.unmodifiableList(boardedSeats);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Entity tag of this seat map combined with the trip's hold version, changing with every
+         * purchase, release, boarding, hold and hold expiry on the trip
+         */
+        public String getETag(long holdVersion) {
+            return "\"" + inventoryId + "-" + version + "-" + holdVersion + "\"";
+        }
+
+        public List<Integer> getTakenSeats() {
+            return takenSeats;
+        }
+
+        public List<Integer> getBoardedSeats() {
+            return boardedSeats;
+        }
+    }
+
+    // Immutable committed state of one inventory row
+    private static final class Inventory {
+        private final long id;
+        private final long version;
+        private final byte[] seats;
+        private final byte[] boarded;
+
+        private Inventory(long id, long version, byte[] seats, byte[] boarded) {
+            this.id = id;
+            this.version = version;
+            this.seats = seats != null ? seats : new byte[0];
+            this.boarded = boarded != null ? boarded : new byte[0];
+        }
+
+        private boolean isTaken(int seat) {
+            return isSet(seats, seat - 1);
+        }
+
+        private boolean isBoarded(int seat) {
+            return isSet(boarded, seat - 1);
+        }
+
+        private int count() {
+            int count = 0;
+            for (byte b : seats) {
+                count += Integer.bitCount(b & 0xFF);
+            }
+            return count;
+        }
+
+        // Boarded seats are always taken; freeing a seat also clears its boarding
+        private Inventory with(int seat, boolean taken, boolean isBoarded) {
+            int bit = seat - 1;
+            return new Inventory(id, version + 1, set(seats, bit, taken), set(boarded, bit, taken && isBoarded));
+        }
+
+        private static boolean isSet(byte[] bitmap, int bit) {
+            return bit >> 3 < bitmap.length && (bitmap[bit >> 3] & (1 << (bit & 7))) != 0;
+        }
+
+        private static byte[] set(byte[] bitmap, int bit, boolean value) {
+            byte[] copy = Arrays.copyOf(bitmap, Math.max(bitmap.length, (bit >> 3) + 1));
+            if (value) {
+                copy[bit >> 3] |= (byte) (1 << (bit & 7));
+            } else {
+                copy[bit >> 3] &= (byte) ~(1 << (bit & 7));
+            }
+            return copy;
+        }
+    }
+}
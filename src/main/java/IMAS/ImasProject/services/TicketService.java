@@ -1,22 +1,27 @@
 package IMAS.ImasProject.services;
 
+import IMAS.ImasProject.exception.SeatUnavailableException;
+import IMAS.ImasProject.exception.TicketTokenExpiredException;
 import IMAS.ImasProject.model.Ticket;
 import IMAS.ImasProject.repository.TicketRepository;
-import com.google.zxing.BarcodeFormat;
 import com.google.zxing.WriterException;
-import com.google.zxing.client.j2se.MatrixToImageWriter;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
 import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class TicketService {
@@ -26,6 +31,22 @@ public class TicketService {
     @Autowired
     private TicketRepository ticketRepository;
 
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatHoldService seatHoldService;
+
+    @Autowired
+    private QrCodeService qrCodeService;
+
+    @Autowired
+    private TicketTokenService ticketTokenService;
+
+    // Tickets issued before signed tokens carry "ticketId-ticketNumber"
+    @Value("${app.tickets.qr.accept-legacy:true}")
+    private boolean acceptLegacyQrCodes;
+
     /**
      * Save a ticket without generating QR code
      * Used for initial ticket creation
@@ -35,8 +56,8 @@ public class TicketService {
     }
 
     /**
-     * Save a ticket and generate QR code if ID is available
-     * This method ensures the ticket is saved first, then QR code is generated
+     * Save a ticket and attach its QR code if ID is available
+     * The image is not stored on the ticket row; it comes from the QR code cache
      */
     @Transactional
     public Ticket saveWithQrCode(Ticket ticket) {
@@ -44,15 +65,12 @@ public class TicketService {
         Ticket savedTicket = ticketRepository.save(ticket);
         log.info("Ticket saved with ID: {}", savedTicket.getId());
 
-        // Step 2: Generate QR code now that we have the ID
+        // Step 2: Attach the QR code now that we have the ID
         if (savedTicket.getId() != null) {
             try {
                 byte[] qrCodeImage = generateQrCodeImage(savedTicket);
                 savedTicket.setQrCode(qrCodeImage);
-
-                // Step 3: Update ticket with QR code
-                savedTicket = ticketRepository.save(savedTicket);
-                log.info("QR code generated and saved for ticket ID: {}, QR code size: {} bytes",
+                log.info("QR code generated for ticket ID: {}, QR code size: {} bytes",
                         savedTicket.getId(), qrCodeImage.length);
             } catch (Exception e) {
                 log.error("Failed to generate QR code for ticket ID: {}, error: {}",
@@ -64,11 +82,26 @@ public class TicketService {
         return savedTicket;
     }
 
+    /**
+     * Take the ticket's seat on its trip and save the ticket with its QR code, atomically.
+     * A seat held by another passenger is refused; the passenger's own hold is consumed on commit.
+     */
+    @Transactional
+    public Ticket bookSeat(Ticket ticket, int seat) {
+        SeatInventoryService.TripKey trip = tripKey(ticket);
+        seatHoldService.checkAvailableTo(trip, seat, ticket.getPassengerId());
+        if (!seatInventoryService.reserve(trip, seat)) {
+            throw new SeatUnavailableException("Seat " + seat + " is already taken for this trip");
+        }
+        seatHoldService.consume(trip, seat, ticket.getPassengerId());
+        return saveWithQrCode(ticket);
+    }
+
     /**
      * Generate QR code for existing ticket
      * This method can be called after ticket creation
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public Ticket generateQrCodeForExistingTicket(Long ticketId) {
         Ticket ticket = ticketRepository.findById(ticketId)
                 .orElseThrow(() -> new EntityNotFoundException("Ticket not found with ID: " + ticketId));
@@ -84,7 +117,6 @@ public class TicketService {
         try {
             byte[] qrCodeImage = generateQrCodeImage(ticket);
             ticket.setQrCode(qrCodeImage);
-            ticket = ticketRepository.save(ticket);
             log.info("QR code generated for existing ticket ID: {}", ticketId);
             return ticket;
         } catch (Exception e) {
@@ -110,21 +142,8 @@ public class TicketService {
             throw new IllegalStateException("Cannot generate QR code: Ticket number is null or empty");
         }
 
-        // Create QR code data
-        String qrData = ticket.getId() + "-" + ticket.getTicketNumber();
-        log.debug("Generating QR code with data: {}", qrData);
-
         try {
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(qrData, BarcodeFormat.QR_CODE, 200, 200);
-
-            ByteArrayOutputStream pngOutputStream = new ByteArrayOutputStream();
-            MatrixToImageWriter.writeToStream(bitMatrix, "PNG", pngOutputStream);
-            byte[] qrCodeBytes = pngOutputStream.toByteArray();
-
-            log.debug("QR code generated successfully, size: {} bytes", qrCodeBytes.length);
-            return qrCodeBytes;
-
+            return qrCodeService.getPng(getQrData(ticket));
         } catch (WriterException e) {
             log.error("Error encoding QR code for ticket {}: {}", ticket.getId(), e.getMessage());
             throw new WriterException("Failed to encode QR code: " + e.getMessage());
@@ -134,6 +153,13 @@ public class TicketService {
         }
     }
 
+    /**
+     * Entity tag of a ticket's QR code image
+     */
+    public String getQrCodeETag(Ticket ticket) {
+        return qrCodeService.getETag(getQrData(ticket));
+    }
+
     /**
      * Regenerate QR code for an existing ticket
      */
@@ -177,34 +203,198 @@ public class TicketService {
         return ticketRepository.findByBusId(busId);
     }
 
+    /**
+     * Whether a seat is held by a PAID or BOARDED ticket departing within a minute of the given
+     * time; a null origin or destination matches any
+     */
+    public boolean isSeatTaken(Long busId, LocalDateTime departureTime, String origin, String destination, String seatNumber) {
+        return ticketRepository.existsActiveSeat(busId, seatNumber, departureTime.minusMinutes(1),
+                departureTime.plusMinutes(1), origin, destination);
+    }
+
+    /**
+     * PAID and BOARDED tickets departing within a minute of the given time; a null origin or
+     * destination matches any
+     */
+    public List<Ticket> findActiveForTrip(Long busId, LocalDateTime departureTime, String origin, String destination) {
+        return ticketRepository.findActiveForTrip(busId, departureTime.minusMinutes(1), departureTime.plusMinutes(1),
+                origin, destination);
+    }
+
+    /**
+     * Mark a ticket as boarded, on the ticket and in its trip's seat map
+     */
+    @Transactional
+    public Ticket board(Ticket ticket) {
+        ticket.setStatus("BOARDED");
+        ticket.setBoardingTime(LocalDateTime.now());
+        Ticket saved = ticketRepository.save(ticket);
+        try {
+            seatInventoryService.board(tripKey(saved), Integer.parseInt(saved.getSeatNumber().trim()));
+        } catch (RuntimeException e) {
+            log.warn("Could not mark seat '{}' of ticket {} as boarded: {}", saved.getSeatNumber(), saved.getId(), e.getMessage());
+        }
+        return saved;
+    }
+
     /**
      * Delete ticket by ID
      */
+    @Transactional
     public void deleteById(Long id) {
+        Ticket ticket = ticketRepository.findById(id).orElse(null);
+        if (ticket != null && ("PAID".equals(ticket.getStatus()) || "BOARDED".equals(ticket.getStatus()))) {
+            releaseSeat(ticket);
+        }
         ticketRepository.deleteById(id);
     }
 
+    /**
+     * Trip of a ticket in the seat inventory
+     */
+    public SeatInventoryService.TripKey tripKey(Ticket ticket) {
+        return SeatInventoryService.TripKey.of(ticket.getBus().getId(), ticket.getDepartureTime(),
+                ticket.getOrigin(), ticket.getDestination());
+    }
+
+    private void releaseSeat(Ticket ticket) {
+        try {
+            seatInventoryService.release(tripKey(ticket), Integer.parseInt(ticket.getSeatNumber().trim()));
+        } catch (RuntimeException e) {
+            log.warn("Could not release seat '{}' of ticket {}: {}", ticket.getSeatNumber(), ticket.getId(), e.getMessage());
+        }
+    }
+
     /**
      * Verify QR code and return the corresponding ticket
+     * Signed tokens are checked before any lookup, so forged or expired ones never reach the database
      */
     public Ticket verifyQrCode(String qrData) {
         if (qrData == null || qrData.trim().isEmpty()) {
             throw new IllegalArgumentException("QR data cannot be empty");
         }
 
-        // Format attendu : "ticketId-ticketNumber"
-        String[] parts = qrData.split("-", 2); // Limit to 2 parts in case ticket number contains hyphens
-        if (parts.length < 2) {
-            throw new IllegalArgumentException("Invalid QR code format. Expected format: ticketId-ticketNumber");
+        if (TicketTokenService.isToken(qrData.trim())) {
+            TicketTokenService.Claims claims = ticketTokenService.verify(qrData.trim(), LocalDateTime.now());
+            Ticket ticket = ticketRepository.findById(claims.getTicketId())
+                    .orElseThrow(() -> new EntityNotFoundException("Ticket not found with ID: " + claims.getTicketId()));
+            checkClaims(ticket, claims);
+            log.info("QR token verified successfully for ticket ID: {}", ticket.getId());
+            return ticket;
         }
 
-        Long ticketId;
+        Ticket ticket = findByLegacyQrData(qrData);
+        log.info("QR code verified successfully for ticket ID: {}, ticket number: {}",
+                ticket.getId(), ticket.getTicketNumber());
+        return ticket;
+    }
+
+    /**
+     * Board the tickets of scans collected offline, in one transaction.
+     * Every scan gets an outcome; a ticket scanned twice is boarded once, at its first scan.
+     */
+    @Transactional
+    public List<ScanOutcome> reconcileScans(List<BoardingScan> scans) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ScanOutcome> outcomes = new ArrayList<>(scans.size());
+        List<Object> verified = new ArrayList<>(scans.size());
+        Set<Long> ticketIds = new HashSet<>();
+
+        // Signatures and expiry first, in-process
+        for (BoardingScan scan : scans) {
+            String qrData = scan.getQrData() != null ? scan.getQrData().trim() : "";
+            LocalDateTime scannedAt = scan.getScannedAt() == null || scan.getScannedAt().isAfter(now) ? now : scan.getScannedAt();
+            ScanOutcome outcome = new ScanOutcome(qrData, scannedAt);
+            outcomes.add(outcome);
+            try {
+                if (TicketTokenService.isToken(qrData)) {
+                    TicketTokenService.Claims claims = ticketTokenService.verify(qrData, scannedAt);
+                    outcome.ticketId = claims.getTicketId();
+                    verified.add(claims);
+                } else {
+                    String[] parts = parseLegacyQrData(qrData);
+                    outcome.ticketId = Long.parseLong(parts[0]);
+                    verified.add(parts[1]);
+                }
+                ticketIds.add(outcome.ticketId);
+            } catch (IllegalArgumentException e) {
+                outcome.reject(e instanceof TicketTokenExpiredException ? ScanOutcome.EXPIRED : ScanOutcome.INVALID, e.getMessage());
+                verified.add(null);
+            }
+        }
+
+        // One read for every scanned ticket, one batched write for the boarded ones
+        Map<Long, Ticket> tickets = new HashMap<>();
+        ticketRepository.findAllById(ticketIds).forEach(ticket -> tickets.put(ticket.getId(), ticket));
+        List<Ticket> boarded = new ArrayList<>();
+        for (int i = 0; i < outcomes.size(); i++) {
+            ScanOutcome outcome = outcomes.get(i);
+            Object proof = verified.get(i);
+            if (proof == null) {
+                continue;
+            }
+            Ticket ticket = tickets.get(outcome.ticketId);
+            if (ticket == null) {
+                outcome.reject(ScanOutcome.NOT_FOUND, "Ticket not found with ID: " + outcome.ticketId);
+                continue;
+            }
+            try {
+                if (proof instanceof TicketTokenService.Claims claims) {
+                    checkClaims(ticket, claims);
+                } else if (!ticket.getTicketNumber().equals(proof)) {
+                    throw new IllegalArgumentException("Ticket number mismatch");
+                } else if (ticket.getDepartureTime().plusHours(1).isBefore(outcome.scannedAt)) {
+                    outcome.reject(ScanOutcome.EXPIRED, "Departure time has passed");
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                outcome.reject(ScanOutcome.INVALID, e.getMessage());
+                continue;
+            }
+            outcome.ticketNumber = ticket.getTicketNumber();
+            if ("BOARDED".equals(ticket.getStatus())) {
+                outcome.reject(ScanOutcome.ALREADY_BOARDED, "Ticket already used");
+            } else if (!"PAID".equals(ticket.getStatus())) {
+                outcome.reject(ScanOutcome.NOT_PAID, "Ticket not paid");
+            } else {
+                ticket.setStatus("BOARDED");
+                ticket.setBoardingTime(outcome.scannedAt);
+                boarded.add(ticket);
+                outcome.status = ScanOutcome.BOARDED;
+                outcome.message = "Ticket scanned successfully";
+            }
+        }
+
+        ticketRepository.saveAll(boarded);
+        for (Ticket ticket : boarded) {
+            try {
+                seatInventoryService.board(tripKey(ticket), Integer.parseInt(ticket.getSeatNumber().trim()));
+            } catch (RuntimeException e) {
+                log.warn("Could not mark seat '{}' of ticket {} as boarded: {}", ticket.getSeatNumber(), ticket.getId(), e.getMessage());
+            }
+        }
+        log.info("Reconciled {} offline scans, {} tickets boarded", scans.size(), boarded.size());
+        return outcomes;
+    }
+
+    // A genuine token names exactly this ticket's bus, departure and seat
+    private void checkClaims(Ticket ticket, TicketTokenService.Claims claims) {
+        Long busId = ticket.getBus() != null ? ticket.getBus().getId() : ticket.getBusId();
+        int seat;
         try {
-            ticketId = Long.parseLong(parts[0]);
+            seat = ticket.getSeatNumber() != null ? Integer.parseInt(ticket.getSeatNumber().trim()) : 0;
         } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Invalid ticket ID in QR code: " + parts[0]);
+            seat = 0;
         }
+        if (busId == null || busId != claims.getBusId() || seat != claims.getSeat()
+                || !ticket.getDepartureTime().truncatedTo(ChronoUnit.MINUTES).equals(claims.getDepartureTime())) {
+            throw new IllegalArgumentException("QR token does not match the ticket's trip or seat");
+        }
+    }
 
+    private Ticket findByLegacyQrData(String qrData) {
+        String[] parts = parseLegacyQrData(qrData);
+        Long ticketId = Long.parseLong(parts[0]);
         Ticket ticket = ticketRepository.findById(ticketId)
                 .orElseThrow(() -> new EntityNotFoundException("Ticket not found with ID: " + ticketId));
 
@@ -214,30 +404,41 @@ public class TicketService {
             throw new IllegalArgumentException("Ticket number mismatch. Expected: " +
                     ticket.getTicketNumber() + ", got: " + expectedTicketNumber);
         }
-
-        log.info("QR code verified successfully for ticket ID: {}, ticket number: {}",
-                ticketId, ticket.getTicketNumber());
         return ticket;
     }
 
+    // Format attendu : "ticketId-ticketNumber"
+    private String[] parseLegacyQrData(String qrData) {
+        if (!acceptLegacyQrCodes) {
+            throw new IllegalArgumentException("Unsigned QR codes are no longer accepted");
+        }
+        String[] parts = qrData.split("-", 2); // Limit to 2 parts in case ticket number contains hyphens
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Invalid QR code format. Expected format: ticketId-ticketNumber");
+        }
+        try {
+            Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid ticket ID in QR code: " + parts[0]);
+        }
+        return parts;
+    }
+
     /**
      * Check if ticket has a valid QR code
      */
     public boolean hasValidQrCode(Ticket ticket) {
-        if (ticket == null || ticket.getId() == null) {
-            return false;
-        }
-        return ticket.hasQrCode();
+        return getQrData(ticket) != null;
     }
 
     /**
-     * Get QR code data string for a ticket
+     * Get QR code data string for a ticket: its signed token
      */
     public String getQrData(Ticket ticket) {
-        if (ticket == null || ticket.getId() == null || ticket.getTicketNumber() == null) {
+        if (ticket == null || ticket.getId() == null || ticket.getTicketNumber() == null || ticket.getDepartureTime() == null) {
             return null;
         }
-        return ticket.getId() + "-" + ticket.getTicketNumber();
+        return ticketTokenService.issue(ticket);
     }
 
     /**
@@ -254,4 +455,54 @@ public class TicketService {
             throw new IllegalStateException("Ticket number cannot be null or empty");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * A QR code scanned by a driver, possibly offline
+     */
+    public static class BoardingScan {
+        private String qrData;
+        private LocalDateTime scannedAt;
+
+        public String getQrData() { return qrData; }
+        public void setQrData(String qrData) { this.qrData = qrData; }
+
+        public LocalDateTime getScannedAt() { return scannedAt; }
+        public void setScannedAt(LocalDateTime scannedAt) { this.scannedAt = scannedAt; }
+    }
+
+    /**
+     * Result of reconciling one offline scan
+     */
+    public static class ScanOutcome {
+        public static final String BOARDED = "BOARDED";
+        public static final String ALREADY_BOARDED = "ALREADY_BOARDED";
+        public static final String NOT_PAID = "NOT_PAID";
+        public static final String NOT_FOUND = "NOT_FOUND";
+        public static final String EXPIRED = "EXPIRED";
+        public static final String INVALID = "INVALID";
+
+        private final String qrData;
+        private final LocalDateTime scannedAt;
+        private Long ticketId;
+        private String ticketNumber;
+        private String status;
+        private String message;
+
+        private ScanOutcome(String qrData, LocalDateTime scannedAt) {
+            this.qrData = qrData;
+            this.scannedAt = scannedAt;
+        }
+
+        private void reject(String status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        public String getQrData() { return qrData; }
+        public LocalDateTime getScannedAt() { return scannedAt; }
+        public Long getTicketId() { return ticketId; }
+        public String getTicketNumber() { return ticketNumber; }
+        public String getStatus() { return status; }
+        public String getMessage() { return message; }
+    }
+}
@@ -0,0 +1,199 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.exception.TicketTokenExpiredException;
+import IMAS.ImasProject.model.Ticket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Signed ticket tokens carried by QR codes.
+ *
+ * A token is {@code T1.<payload>.<signature>}: the payload packs the ticket id, bus,
+ * departure minute, seat and expiry in 27 bytes, and the signature is a truncated
+ * HMAC-SHA256 of it under {@code app.tickets.qr.secret}. Anyone holding the secret, such as
+ * a driver app scanning offline, can check a token without reading the ticket. Tokens
+ * expire {@code app.tickets.qr.validity-after-departure-minutes} after departure.
+ *
+ * The secret is required: a key made up at startup would void every printed ticket on
+ * restart, differ between instances and never reach the driver apps.
+ */
+@Service
+public class TicketTokenService {
+
+    public static final String PREFIX = "T1.";
+
+    private static final byte VERSION = 1;
+    private static final int PAYLOAD_LENGTH = 27;
+    private static final int SIGNATURE_LENGTH = 16;
+    private static final int MIN_KEY_LENGTH = 32;
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final ThreadLocal<Mac> macs;
+    private final long validityMinutes;
+
+    public TicketTokenService(@Value("${app.tickets.qr.secret:}") String secret,
+                              @Value("${app.tickets.qr.validity-after-departure-minutes:60}") long validityMinutes) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("app.tickets.qr.secret is not set: provide the QR token signing key in TICKET_QR_SECRET");
+        }
+        byte[] keyBytes;
+        try {
+            keyBytes = Base64.getDecoder().decode(secret.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("app.tickets.qr.secret is not valid Base64", e);
+        }
+        if (keyBytes.length < MIN_KEY_LENGTH) {
+            throw new IllegalStateException("app.tickets.qr.secret must decode to at least " + MIN_KEY_LENGTH + " bytes");
+        }
+        SecretKeySpec key = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot sign ticket tokens", e);
+            }
+        });
+        this.validityMinutes = validityMinutes;
+    }
+
+    /**
+     * Whether a QR payload is a signed token rather than a legacy {@code id-ticketNumber}
+     */
+    public static boolean isToken(String qrData) {
+        return qrData != null && qrData.startsWith(PREFIX);
+    }
+
+    /**
+     * Signed token of a saved ticket
+     */
+    public String issue(Ticket ticket) {
+        if (ticket.getId() == null || ticket.getDepartureTime() == null) {
+            throw new IllegalStateException("Cannot sign QR token: ticket ID and departure time are required");
+        }
+        Long busId = ticket.getBus() != null ? ticket.getBus().getId() : ticket.getBusId();
+        long departureMinute = toEpochMinute(ticket.getDepartureTime());
+
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_LENGTH);
+        payload.put(VERSION);
+        payload.putLong(ticket.getId());
+        payload.putLong(busId != null ? busId : 0L);
+        payload.putInt((int) departureMinute);
+        payload.putShort((short) seatOf(ticket));
+        payload.putInt((int) (departureMinute + validityMinutes));
+        byte[] bytes = payload.array();
+        return PREFIX + ENCODER.encodeToString(bytes) + "." + ENCODER.encodeToString(sign(bytes));
+    }
+
+    /**
+     * Check a token's signature and expiry at the given time, without any lookup
+     *
+     * @throws IllegalArgumentException when the token is malformed, forged or expired
+     */
+    public Claims verify(String token, LocalDateTime at) {
+        if (!isToken(token)) {
+            throw new IllegalArgumentException("Not a signed ticket token");
+        }
+        String[] parts = token.substring(PREFIX.length()).split("\\.");
+        byte[] bytes;
+        byte[] signature;
+        try {
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Malformed ticket token");
+            }
+            bytes = DECODER.decode(parts[0]);
+            signature = DECODER.decode(parts[1]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed ticket token");
+        }
+        if (bytes.length != PAYLOAD_LENGTH || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unsupported ticket token");
+        }
+        if (!MessageDigest.isEqual(sign(bytes), signature)) {
+            throw new IllegalArgumentException("Invalid ticket token signature");
+        }
+
+        ByteBuffer payload = ByteBuffer.wrap(bytes, 1, PAYLOAD_LENGTH - 1);
+        Claims claims = new Claims(payload.getLong(), payload.getLong(),
+                fromEpochMinute(payload.getInt()), payload.getShort(), fromEpochMinute(payload.getInt()));
+        if (!at.isBefore(claims.expiresAt)) {
+            throw new TicketTokenExpiredException("Ticket token expired at " + claims.expiresAt);
+        }
+        return claims;
+    }
+
+    // doFinal resets the MAC, so each thread reuses its own instance
+    private byte[] sign(byte[] payload) {
+        return Arrays.copyOf(macs.get().doFinal(payload), SIGNATURE_LENGTH);
+    }
+
+    private static int seatOf(Ticket ticket) {
+        try {
+            return ticket.getSeatNumber() != null ? Integer.parseInt(ticket.getSeatNumber().trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long toEpochMinute(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond() / 60;
+    }
+
+    private static LocalDateTime fromEpochMinute(long minute) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(minute * 60), ZoneId.systemDefault());
+    }
+
+    /**
+     * Ticket facts carried by a verified token
+     */
+    public static final class Claims {
+        private final long ticketId;
+        private final long busId;
+        private final LocalDateTime departureTime;
+        private final int seat;
+        private final LocalDateTime expiresAt;
+
+        private Claims(long ticketId, long busId, LocalDateTime departureTime, int seat, LocalDateTime expiresAt) {
+            this.ticketId = ticketId;
+            this.busId = busId;
+            this.departureTime = departureTime;
+            this.seat = seat;
+            this.expiresAt = expiresAt;
+        }
+
+        public long getTicketId() {
+            return ticketId;
+        }
+
+        public long getBusId() {
+            return busId;
+        }
+
+        public LocalDateTime getDepartureTime() {
+            return departureTime;
+        }
+
+        public int getSeat() {
+            return seat;
+        }
+
+        public LocalDateTime getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package IMAS.ImasProject.services;
+
+import java.util.Arrays;
+
+/**
+ * Simplifies an ordered GPS track while it is being read.
+ *
+ * Fixes are fed one at a time into primitive arrays. A radial filter drops fixes closer
+ * than the tolerance to the last kept one, then Douglas–Peucker removes the remaining
+ * points that deviate less than the tolerance from the simplified line. The result is
+ * returned as a Google encoded polyline (precision 1e-5).
+ */
+public class TrajectorySimplifier {
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540.0;
+    private static final double METERS_PER_DEGREE_LON = 111_320.0;
+
+    private final double toleranceMeters;
+
+    private double[] latitudes = new double[1024];
+    private double[] longitudes = new double[1024];
+    private int size = 0;
+    private int seen = 0;
+
+    // Last fix skipped by the radial filter, re-added at the end so the track keeps its end point
+    private boolean hasSkipped = false;
+    private double skippedLatitude;
+    private double skippedLongitude;
+
+    public TrajectorySimplifier(double toleranceMeters) {
+        this.toleranceMeters = Math.max(0.0, toleranceMeters);
+    }
+
+    /**
+     * Feed the next fix in time order
+     */
+    public void add(double latitude, double longitude) {
+        seen++;
+        if (size > 0 && distanceMeters(latitudes[size - 1], longitudes[size - 1], latitude, longitude) < toleranceMeters) {
+            hasSkipped = true;
+            skippedLatitude = latitude;
+            skippedLongitude = longitude;
+            return;
+        }
+        hasSkipped = false;
+        append(latitude, longitude);
+    }
+
+    /**
+     * Run the simplification and encode the kept points
+     */
+    public Result finish() {
+        if (hasSkipped) {
+            append(skippedLatitude, skippedLongitude);
+            hasSkipped = false;
+        }
+        boolean[] keep = douglasPeucker();
+
+        StringBuilder encoded = new StringBuilder(size * 4);
+        long previousLat = 0;
+        long previousLon = 0;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            long lat = Math.round(latitudes[i] * 1e5);
+            long lon = Math.round(longitudes[i] * 1e5);
+            encodeSigned(lat - previousLat, encoded);
+            encodeSigned(lon - previousLon, encoded);
+            previousLat = lat;
+            previousLon = lon;
+            kept++;
+        }
+        return new Result(encoded.toString(), seen, kept);
+    }
+
+    private void append(double latitude, double longitude) {
+        if (size == latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, size * 2);
+            longitudes = Arrays.copyOf(longitudes, size * 2);
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        size++;
+    }
+
+    /**
+     * Iterative Douglas–Peucker over the buffered points, with an explicit stack of index ranges
+     */
+    private boolean[] douglasPeucker() {
+        boolean[] keep = new boolean[size];
+        if (size == 0) {
+            return keep;
+        }
+        keep[0] = true;
+        keep[size - 1] = true;
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            if (last - first < 2) {
+                continue;
+            }
+
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistanceMeters(i, first, last);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            if (maxDistance > toleranceMeters) {
+                keep[farthest] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = first;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = last;
+            }
+        }
+        return keep;
+    }
+
+    /**
+     * Distance of a point to the segment [first, last] on a local flat projection
+     */
+    private double segmentDistanceMeters(int point, int first, int last) {
+        double scaleLon = METERS_PER_DEGREE_LON * Math.cos(Math.toRadians(latitudes[first]));
+        double dx = (longitudes[last] - longitudes[first]) * scaleLon;
+        double dy = (latitudes[last] - latitudes[first]) * METERS_PER_DEGREE_LAT;
+        double px = (longitudes[point] - longitudes[first]) * scaleLon;
+        double py = (latitudes[point] - latitudes[first]) * METERS_PER_DEGREE_LAT;
+
+        double lengthSquared = dx * dx + dy * dy;
+        if (lengthSquared == 0.0) {
+            return Math.hypot(px, py);
+        }
+        double t = Math.max(0.0, Math.min(1.0, (px * dx + py * dy) / lengthSquared));
+        return Math.hypot(px - t * dx, py - t * dy);
+    }
+
+    private static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dx = (lon2 - lon1) * METERS_PER_DEGREE_LON * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double dy = (lat2 - lat1) * METERS_PER_DEGREE_LAT;
+        return Math.hypot(dx, dy);
+    }
+
+    private static void encodeSigned(long value, StringBuilder out) {
+        long shifted = value < 0 ? ~(value << 1) : value << 1;
+        while (shifted >= 0x20) {
+            out.append((char) ((0x20 | (shifted & 0x1f)) + 63));
+            shifted >>= 5;
+        }
+        out.append((char) (shifted + 63));
+    }
+
+    /**
+     * Encoded polyline and point counts of a simplified track
+     */
+    public static final class Result {
+        private final String encodedPolyline;
+        private final int originalPoints;
+        private final int simplifiedPoints;
+
+        private Result(String encodedPolyline, int originalPoints, int simplifiedPoints) {
+            this.encodedPolyline = encodedPolyline;
+            this.originalPoints = originalPoints;
+            this.simplifiedPoints = simplifiedPoints;
+        }
+
+        public String getEncodedPolyline() {
+            return encodedPolyline;
+        }
+
+        public int getOriginalPoints() {
+            return originalPoints;
+        }
+
+        public int getSimplifiedPoints() {
+            return simplifiedPoints;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package IMAS.ImasProject.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trip counts of drivers over consecutive time buckets.
+ *
+ * A series is {@code count} buckets of {@code size} days, weeks or months from a start day,
+ * counted by trip creation time. One {@code GROUP BY} over driver and bucket number answers
+ * a driver or the whole fleet, so the cost is one indexed range scan whatever the number of
+ * buckets; empty buckets are filled with zero.
+ */
+@Service
+public class TripCountService {
+
+    public static final int MAX_BUCKETS = 366;
+
+    // Bucket number of a trip, from its creation time and the series start
+    private static final String DAYS_BUCKET = "FLOOR(DATEDIFF(t.created_at, ?) / ?)";
+    private static final String MONTHS_BUCKET = "FLOOR(PERIOD_DIFF(EXTRACT(YEAR_MONTH FROM t.created_at), ?) / ?)";
+
+    private static final String COUNTS_SQL =
+            "SELECT t.driver_id, s.first_name, s.last_name, %s AS bucket, COUNT(*) " +
+                    "FROM trips t LEFT JOIN staff s ON s.id = t.driver_id " +
+                    "WHERE t.created_at >= ? AND t.created_at < ?%s " +
+                    "GROUP BY t.driver_id, s.first_name, s.last_name, bucket " +
+                    "ORDER BY t.driver_id, bucket";
+
+    public enum Unit { DAY, WEEK, MONTH }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TripCountService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Start of the bucket containing a day: the day itself, its Monday, or the first of its month
+     */
+    public static LocalDate align(LocalDate day, Unit unit) {
+        switch (unit) {
+            case WEEK:
+                return day.with(DayOfWeek.MONDAY);
+            case MONTH:
+                return day.withDayOfMonth(1);
+            default:
+                return day;
+        }
+    }
+
+    /**
+     * Start of the first of {@code count} buckets ending with the one containing today
+     */
+    public static LocalDate lastBuckets(Unit unit, int size, int count) {
+        LocalDate current = align(LocalDate.now(), unit);
+        long back = (long) size * (count - 1);
+        return unit == Unit.MONTH ? current.minusMonths(back) : current.minusDays(back * daysPerUnit(unit));
+    }
+
+    /**
+     * Series of one driver
+     */
+    public Series getDriverSeries(Long driverId, Unit unit, int size, LocalDate from, int count) {
+        List<Series> series = query(driverId, unit, size, from, count);
+        if (!series.isEmpty()) {
+            return series.get(0);
+        }
+        return new Series(driverId, null, buckets(unit, size, unit == Unit.MONTH ? from.withDayOfMonth(1) : from, count));
+    }
+
+    /**
+     * Series of every driver with trips in the range
+     */
+    public List<Series> getFleetSeries(Unit unit, int size, LocalDate from, int count) {
+        return query(null, unit, size, from, count);
+    }
+
+    private List<Series> query(Long driverId, Unit unit, int size, LocalDate from, int count) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Bucket size must be positive");
+        }
+        if (count < 1 || count > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Bucket count must be between 1 and " + MAX_BUCKETS);
+        }
+        if (unit == Unit.MONTH) {
+            from = from.withDayOfMonth(1);
+        }
+        LocalDate to = unit == Unit.MONTH
+                ? from.plusMonths((long) size * count)
+                : from.plusDays((long) size * count * daysPerUnit(unit));
+
+        List<Object> args = new ArrayList<>();
+        if (unit == Unit.MONTH) {
+            args.add(from.getYear() * 100 + from.getMonthValue());
+            args.add(size);
+        } else {
+            args.add(Date.valueOf(from));
+            args.add(size * daysPerUnit(unit));
+        }
+        args.add(Timestamp.valueOf(from.atStartOfDay()));
+        args.add(Timestamp.valueOf(to.atStartOfDay()));
+        if (driverId != null) {
+            args.add(driverId);
+        }
+        String sql = String.format(COUNTS_SQL, unit == Unit.MONTH ? MONTHS_BUCKET : DAYS_BUCKET,
+                driverId != null ? " AND t.driver_id = ?" : "");
+
+        Map<Long, Series> series = new LinkedHashMap<>();
+        LocalDate start = from;
+        jdbcTemplate.query(sql, rs -> {
+            long id = rs.getLong(1);
+            Series driverSeries = series.get(id);
+            if (driverSeries == null) {
+                String firstName = rs.getString(2);
+                String lastName = rs.getString(3);
+                driverSeries = new Series(id, firstName != null || lastName != null ? firstName + " " + lastName : null,
+                        buckets(unit, size, start, count));
+                series.put(id, driverSeries);
+            }
+            int bucket = rs.getInt(4);
+            if (bucket >= 0 && bucket < count) {
+                driverSeries.buckets.get(bucket).tripCount = rs.getLong(5);
+            }
+        }, args.toArray());
+        return new ArrayList<>(series.values());
+    }
+
+    private static List<Bucket> buckets(Unit unit, int size, LocalDate from, int count) {
+        List<Bucket> buckets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            buckets.add(new Bucket(unit == Unit.MONTH
+                    ? from.plusMonths((long) size * i)
+                    : from.plusDays((long) size * i * daysPerUnit(unit))));
+        }
+        return buckets;
+    }
+
+    private static int daysPerUnit(Unit unit) {
+        return unit == Unit.WEEK ? 7 : 1;
+    }
+
+    /**
+     * Trip counts of one driver, one per bucket in time order
+     */
+    public static final class Series {
+        private final Long driverId;
+        private final String driverName;
+        private final List<Bucket> buckets;
+
+        private Series(Long driverId, String driverName, List<Bucket> buckets) {
+            this.driverId = driverId;
+            this.driverName = driverName;
+            this.buckets = buckets;
+        }
+
+        public Long getDriverId() {
+            return driverId;
+        }
+
+        public String getDriverName() {
+            return driverName;
+        }
+
+        public List<Bucket> getBuckets() {
+            return Collections.unmodifiableList(buckets);
+        }
+    }
+
+    /**
+     * Trips of one bucket, identified by its first day
+     */
+    public static final class Bucket {
+        private final LocalDate start;
+        private long tripCount;
+
+        private Bucket(LocalDate start) {
+            this.start = start;
+        }
+
+        public LocalDate getStart() {
+            return start;
+        }
+
+        public long getTripCount() {
+            return tripCount;
+        }
+    }
+}
@@ -9,7 +9,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -22,11 +21,13 @@ public class TripService {
 
     private final TripRepository tripRepository;
     private final StaffService staffService;
+    private final TripCountService tripCountService;
 
     @Autowired
-    public TripService(TripRepository tripRepository, StaffService staffService) {
+    public TripService(TripRepository tripRepository, StaffService staffService, TripCountService tripCountService) {
         this.tripRepository = tripRepository;
         this.staffService = staffService;
+        this.tripCountService = tripCountService;
     }
 
     @Transactional
@@ -84,21 +85,15 @@ public class TripService {
     public List<Map<String, Object>> getDriverMonthlyStats(Long driverId) {
         validateDriver(driverId);
 
-        LocalDate now = LocalDate.now();
-        LocalDate startDate = now.minusMonths(11).withDayOfMonth(1);
+        LocalDate startDate = TripCountService.lastBuckets(TripCountService.Unit.MONTH, 1, 12);
+        TripCountService.Series series = tripCountService.getDriverSeries(driverId, TripCountService.Unit.MONTH, 1, startDate, 12);
         List<Map<String, Object>> monthlyStats = new ArrayList<>();
 
-        for (int i = 0; i < 12; i++) {
-            LocalDate currentMonth = startDate.plusMonths(i);
-            LocalDateTime startOfMonth = currentMonth.atStartOfDay();
-            LocalDateTime endOfMonth = currentMonth.plusMonths(1).atStartOfDay();
-
-            long tripCount = tripRepository.findByDriverIdAndCreatedAtBetween(driverId, startOfMonth, endOfMonth).size();
-
+        for (TripCountService.Bucket bucket : series.getBuckets()) {
             Map<String, Object> monthStats = new HashMap<>();
-            monthStats.put("year", currentMonth.getYear());
-            monthStats.put("month", currentMonth.getMonthValue());
-            monthStats.put("tripCount", tripCount);
+            monthStats.put("year", bucket.getStart().getYear());
+            monthStats.put("month", bucket.getStart().getMonthValue());
+            monthStats.put("tripCount", bucket.getTripCount());
             monthlyStats.add(monthStats);
         }
 
@@ -109,27 +104,44 @@ public class TripService {
     public List<Map<String, Object>> getDriverWeeklyStats(Long driverId) {
         validateDriver(driverId);
 
-        LocalDate now = LocalDate.now();
-        LocalDate startDate = now.minusWeeks(3).with(java.time.DayOfWeek.MONDAY);
+        LocalDate startDate = TripCountService.lastBuckets(TripCountService.Unit.WEEK, 1, 4);
+        TripCountService.Series series = tripCountService.getDriverSeries(driverId, TripCountService.Unit.WEEK, 1, startDate, 4);
         List<Map<String, Object>> weeklyStats = new ArrayList<>();
 
-        for (int i = 0; i < 4; i++) {
-            LocalDate currentWeek = startDate.plusWeeks(i);
-            LocalDateTime startOfWeek = currentWeek.atStartOfDay();
-            LocalDateTime endOfWeek = currentWeek.plusDays(7).atStartOfDay();
-
-            long tripCount = tripRepository.findByDriverIdAndCreatedAtBetween(driverId, startOfWeek, endOfWeek).size();
-
+        for (int i = 0; i < series.getBuckets().size(); i++) {
+            TripCountService.Bucket bucket = series.getBuckets().get(i);
             Map<String, Object> weekStats = new HashMap<>();
-            weekStats.put("year", currentWeek.getYear());
+            weekStats.put("year", bucket.getStart().getYear());
             weekStats.put("week", i + 1);
-            weekStats.put("tripCount", tripCount);
+            weekStats.put("tripCount", bucket.getTripCount());
             weeklyStats.add(weekStats);
         }
 
         return weeklyStats;
     }
 
+    /**
+     * Trip counts of a driver over {@code count} buckets of {@code size} units; from defaults
+     * to the buckets ending with the current one
+     */
+    @Transactional(readOnly = true)
+    public TripCountService.Series getDriverTripSeries(Long driverId, TripCountService.Unit unit, int size,
+                                                       LocalDate from, int count) {
+        validateDriver(driverId);
+        return tripCountService.getDriverSeries(driverId, unit, size,
+                from != null ? from : TripCountService.lastBuckets(unit, size, count), count);
+    }
+
+    /**
+     * Trip counts of every driver with trips over the same buckets, in one query
+     */
+    @Transactional(readOnly = true)
+    public List<TripCountService.Series> getFleetTripSeries(TripCountService.Unit unit, int size,
+                                                            LocalDate from, int count) {
+        return tripCountService.getFleetSeries(unit, size,
+                from != null ? from : TripCountService.lastBuckets(unit, size, count), count);
+    }
+
     @Transactional(readOnly = true)
     public Map<String, Object> getDriverOnTimeStats(Long driverId) {
         validateDriver(driverId);
@@ -0,0 +1,325 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.VehicleSuggestionDTO;
+import IMAS.ImasProject.events.VehicleChangedEvent;
+import IMAS.ImasProject.repository.VehicleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory autocomplete over vehicle numbers, license plates, manufacturers and models.
+ *
+ * Values are normalized (lower case, letters and digits only) and stored once per field,
+ * sorted, with the ids of the vehicles carrying them. Suggestions are ranked exact match
+ * first, then prefix, then substring, then by field and value. Prefix matches are read off
+ * the sorted values; when they do not fill the page, queries of three characters or more
+ * also scan the values holding the rarest trigram of the query. The index is loaded at
+ * startup and each vehicle is reloaded after a committed change.
+ */
+@Service
+public class VehicleAutocompleteIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleAutocompleteIndex.class);
+
+    public static final int MAX_SUGGESTIONS = 50;
+
+    private static final int REFRESH_CHUNK_SIZE = 1000;
+
+    /**
+     * Indexed vehicle fields, in ranking order for equally good matches
+     */
+    public enum Field {
+        VEHICLE_NUMBER, LICENSE_PLATE, MANUFACTURER, MODEL
+    }
+
+    private static final Comparator<Match> RANKING = Comparator
+            .comparingInt((Match match) -> match.rank)
+            .thenComparingInt(match -> match.term.field.ordinal())
+            .thenComparing(match -> match.term.normalized);
+
+    private final VehicleRepository vehicleRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Field, TreeMap<String, Term>> terms = new EnumMap<>(Field.class);
+    private final Map<String, Set<Term>> trigrams = new HashMap<>();
+    private final Map<Long, List<Term>> vehicleTerms = new HashMap<>();
+    private volatile boolean loaded;
+
+    public VehicleAutocompleteIndex(VehicleRepository vehicleRepository) {
+        this.vehicleRepository = vehicleRepository;
+        for (Field field : Field.values()) {
+            terms.put(field, new TreeMap<>());
+        }
+    }
+
+    /**
+     * Index every vehicle
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Object[]> rows = vehicleRepository.findSearchableFields();
+        lock.writeLock().lock();
+        try {
+            terms.values().forEach(Map::clear);
+            trigrams.clear();
+            vehicleTerms.clear();
+            for (Object[] row : rows) {
+                put(row);
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Autocomplete index built for {} vehicles", rows.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onVehicleChanged(VehicleChangedEvent event) {
+        if (!event.getVehicleIds().isEmpty()) {
+            refresh(event.getVehicleIds());
+        }
+    }
+
+    /**
+     * Reload the given vehicles; those that no longer exist are dropped from the index
+     */
+    public void refresh(Collection<Long> vehicleIds) {
+        List<Long> ids = new ArrayList<>(vehicleIds);
+        for (int from = 0; from < ids.size(); from += REFRESH_CHUNK_SIZE) {
+            List<Long> chunk = ids.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, ids.size()));
+            List<Object[]> rows = vehicleRepository.findSearchableFieldsByIds(chunk);
+            lock.writeLock().lock();
+            try {
+                chunk.forEach(this::remove);
+                rows.forEach(this::put);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Whether the startup load has completed
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Best suggestions for a query, optionally restricted to one field
+     */
+    public List<VehicleSuggestionDTO> suggest(String query, Field field, int limit) {
+        String normalized = normalize(query);
+        int size = Math.max(1, Math.min(limit, MAX_SUGGESTIONS));
+        if (normalized.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            List<Match> matches = prefixMatches(normalized, field, size);
+            // Substring matches rank below every prefix match, so they are only searched for a short page
+            if (matches.size() < size && normalized.length() >= 3) {
+                matches.addAll(substringMatches(normalized, field, size - matches.size()));
+            }
+            if (matches.size() > size) {
+                matches.subList(size, matches.size()).clear();
+            }
+
+            List<VehicleSuggestionDTO> suggestions = new ArrayList<>(matches.size());
+            for (Match match : matches) {
+                Term term = match.term;
+                suggestions.add(VehicleSuggestionDTO.builder()
+                        .field(term.field.name())
+                        .value(term.value)
+                        .vehicleCount(term.vehicleIds.size())
+                        .vehicleId(term.vehicleIds.size() == 1 ? term.vehicleIds.iterator().next() : null)
+                        .build());
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Distinct values of a field, in normalized order
+     */
+    public List<String> values(Field field) {
+        lock.readLock().lock();
+        try {
+            List<String> values = new ArrayList<>(terms.get(field).size());
+            for (Term term : terms.get(field).values()) {
+                values.add(term.value);
+            }
+            return values;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Values are sorted, so the first entries of each prefix range are the best prefix matches of that field
+    private List<Match> prefixMatches(String normalized, Field field, int size) {
+        List<Match> matches = new ArrayList<>();
+        for (Field candidateField : Field.values()) {
+            if (field != null && field != candidateField) {
+                continue;
+            }
+            NavigableMap<String, Term> range = terms.get(candidateField)
+                    .subMap(normalized, true, normalized + Character.MAX_VALUE, false);
+            int taken = 0;
+            for (Term term : range.values()) {
+                if (taken++ == size) {
+                    break;
+                }
+                matches.add(new Match(term, term.normalized.length() == normalized.length() ? 0 : 1));
+            }
+        }
+        matches.sort(RANKING);
+        return matches;
+    }
+
+    // Scans the rarest trigram of the query, keeping the best `size` values that contain it past the start
+    private List<Match> substringMatches(String normalized, Field field, int size) {
+        Set<Term> rarest = null;
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            Set<Term> posting = trigrams.get(normalized.substring(i, i + 3));
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            if (rarest == null || posting.size() < rarest.size()) {
+                rarest = posting;
+            }
+        }
+
+        // Worst match at the head, so the queue keeps the best `size` matches
+        PriorityQueue<Match> best = new PriorityQueue<>(size + 1, RANKING.reversed());
+        for (Term term : rarest) {
+            if ((field != null && term.field != field) || term.normalized.startsWith(normalized)
+                    || !term.normalized.contains(normalized)) {
+                continue;
+            }
+            best.add(new Match(term, 2));
+            if (best.size() > size) {
+                best.poll();
+            }
+        }
+        List<Match> matches = new ArrayList<>(best);
+        matches.sort(RANKING);
+        return matches;
+    }
+
+    // Callers hold the write lock
+    private void put(Object[] row) {
+        Long vehicleId = (Long) row[0];
+        List<Term> indexed = new ArrayList<>(4);
+        for (Field field : Field.values()) {
+            String value = (String) row[field.ordinal() + 1];
+            String normalized = normalize(value);
+            if (normalized.isEmpty()) {
+                continue;
+            }
+            Term term = terms.get(field).computeIfAbsent(normalized, key -> {
+                Term created = new Term(field, key, value.trim());
+                for (String trigram : trigramsOf(key)) {
+                    trigrams.computeIfAbsent(trigram, k -> new HashSet<>()).add(created);
+                }
+                return created;
+            });
+            term.vehicleIds.add(vehicleId);
+            indexed.add(term);
+        }
+        if (!indexed.isEmpty()) {
+            vehicleTerms.put(vehicleId, indexed);
+        }
+    }
+
+    // Callers hold the write lock
+    private void remove(Long vehicleId) {
+        List<Term> indexed = vehicleTerms.remove(vehicleId);
+        if (indexed == null) {
+            return;
+        }
+        for (Term term : indexed) {
+            term.vehicleIds.remove(vehicleId);
+            if (!term.vehicleIds.isEmpty()) {
+                continue;
+            }
+            terms.get(term.field).remove(term.normalized);
+            for (String trigram : trigramsOf(term.normalized)) {
+                Set<Term> posting = trigrams.get(trigram);
+                if (posting != null) {
+                    posting.remove(term);
+                    if (posting.isEmpty()) {
+                        trigrams.remove(trigram);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Set<String> trigramsOf(String normalized) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            result.add(normalized.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+
+    private static final class Term {
+        private final Field field;
+        private final String normalized;
+        private final String value;
+        private final Set<Long> vehicleIds = new HashSet<>(2);
+
+        private Term(Field field, String normalized, String value) {
+            this.field = field;
+            this.normalized = normalized;
+            this.value = value;
+        }
+    }
+
+    private static final class Match {
+        private final Term term;
+        private final int rank;
+
+        private Match(Term term, int rank) {
+            this.term = term;
+            this.rank = rank;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.events.VehicleChangedEvent;
+import IMAS.ImasProject.model.VehicleStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Set-based bulk vehicle operations.
+ *
+ * Ids are processed {@code app.vehicle.bulk.chunk-size} at a time. Each chunk locks the
+ * existing vehicles with one SELECT and changes them all with one UPDATE or DELETE, whatever
+ * the chunk size. The whole operation runs in one transaction and publishes a single
+ * {@link VehicleChangedEvent} for every affected vehicle.
+ */
+@Service
+public class VehicleBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleBulkService.class);
+
+    private static final String LOCK_SQL = "SELECT id FROM vehicles WHERE id IN (:ids) FOR UPDATE";
+
+    // Vehicles still referenced by rows that are not deleted with them
+    private static final String REFERENCED_SQL =
+            "SELECT vehicle_id FROM arrivals WHERE vehicle_id IN (:ids) " +
+                    "UNION SELECT vehicle_id FROM imas_notifications WHERE vehicle_id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.vehicle.bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    public VehicleBulkService(NamedParameterJdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Set the status of the given vehicles
+     */
+    @Transactional
+    public BulkResult updateStatus(Collection<Long> vehicleIds, VehicleStatus status) {
+        return update(vehicleIds, "status = :status", new MapSqlParameterSource("status", status.name()));
+    }
+
+    /**
+     * Assign the given vehicles to an existing route
+     */
+    @Transactional
+    public BulkResult assignRoute(Collection<Long> vehicleIds, Long routeId) {
+        return update(vehicleIds, "route_id = :routeId", new MapSqlParameterSource("routeId", routeId));
+    }
+
+    /**
+     * Activate the given vehicles
+     */
+    @Transactional
+    public BulkResult activate(Collection<Long> vehicleIds) {
+        return update(vehicleIds, "is_active = TRUE", new MapSqlParameterSource());
+    }
+
+    /**
+     * Deactivate the given vehicles, which also sets them INACTIVE
+     */
+    @Transactional
+    public BulkResult deactivate(Collection<Long> vehicleIds) {
+        return update(vehicleIds, "is_active = FALSE, status = :status",
+                new MapSqlParameterSource("status", VehicleStatus.INACTIVE.name()));
+    }
+
+    /**
+     * Delete the given vehicles with their location history, rollups and distance buckets,
+     * none of which has a foreign key to cascade; vehicles that still have
+     * arrivals or notifications are left in place and reported as conflicts
+     */
+    @Transactional
+    public BulkResult delete(Collection<Long> vehicleIds) {
+        BulkResult result = new BulkResult();
+        for (List<Long> chunk : chunks(vehicleIds)) {
+            List<Long> existing = lock(chunk, result);
+            if (existing.isEmpty()) {
+                continue;
+            }
+            Set<Long> referenced = new HashSet<>(jdbcTemplate.queryForList(REFERENCED_SQL,
+                    new MapSqlParameterSource("ids", existing), Long.class));
+            List<Long> deletable = new ArrayList<>(existing.size());
+            for (Long id : existing) {
+                if (referenced.contains(id)) {
+                    result.conflictIds.add(id);
+                } else {
+                    deletable.add(id);
+                }
+            }
+            if (deletable.isEmpty()) {
+                continue;
+            }
+            MapSqlParameterSource params = new MapSqlParameterSource("ids", deletable);
+            jdbcTemplate.update("DELETE FROM vehicle_locations WHERE vehicle_id IN (:ids)", params);
+            jdbcTemplate.update("DELETE FROM vehicle_location_rollups WHERE vehicle_id IN (:ids)", params);
+            jdbcTemplate.update("DELETE FROM vehicle_distance_buckets WHERE vehicle_id IN (:ids)", params);
+            jdbcTemplate.update("DELETE FROM vehicles WHERE id IN (:ids)", params);
+            result.affectedIds.addAll(deletable);
+        }
+        return publish(result, "deleted");
+    }
+
+    private BulkResult update(Collection<Long> vehicleIds, String assignments, MapSqlParameterSource params) {
+        BulkResult result = new BulkResult();
+        params.addValue("updatedAt", Timestamp.valueOf(LocalDateTime.now()));
+        for (List<Long> chunk : chunks(vehicleIds)) {
+            List<Long> existing = lock(chunk, result);
+            if (existing.isEmpty()) {
+                continue;
+            }
+            params.addValue("ids", existing);
+            jdbcTemplate.update("UPDATE vehicles SET " + assignments + ", updated_at = :updatedAt WHERE id IN (:ids)", params);
+            result.affectedIds.addAll(existing);
+        }
+        return publish(result, "updated");
+    }
+
+    // Locks the existing vehicles of a chunk and records the missing ones
+    private List<Long> lock(List<Long> chunk, BulkResult result) {
+        Set<Long> found = new HashSet<>(jdbcTemplate.queryForList(LOCK_SQL,
+                new MapSqlParameterSource("ids", chunk), Long.class));
+        List<Long> existing = new ArrayList<>(found.size());
+        for (Long id : chunk) {
+            if (found.contains(id)) {
+                existing.add(id);
+            } else {
+                result.notFoundIds.add(id);
+            }
+        }
+        return existing;
+    }
+
+    private List<List<Long>> chunks(Collection<Long> vehicleIds) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(vehicleIds));
+        distinct.removeIf(id -> id == null);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            chunks.add(distinct.subList(from, Math.min(from + chunkSize, distinct.size())));
+        }
+        return chunks;
+    }
+
+    private BulkResult publish(BulkResult result, String action) {
+        if (!result.affectedIds.isEmpty()) {
+            eventPublisher.publishEvent(new VehicleChangedEvent(this, result.affectedIds));
+        }
+        logger.info("Bulk {} {} vehicles ({} not found, {} conflicts)", action,
+                result.affectedIds.size(), result.notFoundIds.size(), result.conflictIds.size());
+        return result;
+    }
+
+    /**
+     * Per-id outcome of a bulk operation
+     */
+    public static final class BulkResult {
+        private final List<Long> affectedIds = new ArrayList<>();
+        private final List<Long> notFoundIds = new ArrayList<>();
+        private final List<Long> conflictIds = new ArrayList<>();
+
+        public List<Long> getAffectedIds() {
+            return affectedIds;
+        }
+
+        public List<Long> getNotFoundIds() {
+            return notFoundIds;
+        }
+
+        public List<Long> getConflictIds() {
+            return conflictIds;
+        }
+    }
+}
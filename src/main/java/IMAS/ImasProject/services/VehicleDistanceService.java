@@ -0,0 +1,301 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.model.TimeBucket;
+import IMAS.ImasProject.repository.VehicleDistanceBucketRepository;
+import IMAS.ImasProject.repository.VehicleLocationRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incremental distance counters.
+ *
+ * Every accepted fix adds the distance from the previous fix of the same vehicle to
+ * an hourly and a daily bucket and to the vehicle odometer. Increments are kept in
+ * memory and upserted every {@code app.gps.distance.flush-interval-ms} and on shutdown, so
+ * a window query sums a few bucket rows instead of walking {@code vehicle_locations}.
+ */
+@Service
+public class VehicleDistanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleDistanceService.class);
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    private static final String UPSERT_BUCKET_SQL =
+            "INSERT INTO vehicle_distance_buckets (vehicle_id, granularity, bucket_start, distance_km, fix_count) " +
+                    "VALUES (?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE distance_km = distance_km + VALUES(distance_km), " +
+                    "fix_count = fix_count + VALUES(fix_count)";
+
+    private static final String UPDATE_ODOMETER_SQL =
+            "UPDATE vehicles SET odometer_reading = COALESCE(odometer_reading, 0) + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VehicleDistanceBucketRepository bucketRepository;
+    private final VehicleLocationRepository vehicleLocationRepository;
+
+    private final Map<Long, LastFix> lastFixes = new ConcurrentHashMap<>();
+    private final Map<BucketKey, Increment> pendingBuckets = new ConcurrentHashMap<>();
+    private final Map<Long, Double> pendingOdometer = new ConcurrentHashMap<>();
+
+    @Value("${app.gps.distance.max-speed-kmh:200}")
+    private double maxSpeedKmh;
+
+    public VehicleDistanceService(JdbcTemplate jdbcTemplate,
+                                  VehicleDistanceBucketRepository bucketRepository,
+                                  VehicleLocationRepository vehicleLocationRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bucketRepository = bucketRepository;
+        this.vehicleLocationRepository = vehicleLocationRepository;
+    }
+
+    /**
+     * Account for a new fix; it may already be persisted
+     */
+    public void record(Long vehicleId, Double latitude, Double longitude, LocalDateTime timestamp) {
+        if (vehicleId == null || latitude == null || longitude == null || timestamp == null) {
+            return;
+        }
+        if (!lastFixes.containsKey(vehicleId)) {
+            // First fix since startup: continue from the last persisted one before it, which
+            // excludes the fix itself and any later fix of its own batch
+            vehicleLocationRepository.findFirstByVehicleIdAndTimestampBeforeOrderByTimestampDesc(vehicleId, timestamp)
+                    .ifPresent(previous -> lastFixes.putIfAbsent(vehicleId, new LastFix(previous.getLatitude(),
+                            previous.getLongitude(), toEpochMillis(previous.getTimestamp()))));
+        }
+
+        long epochMillis = toEpochMillis(timestamp);
+        double[] segment = new double[1];
+        lastFixes.compute(vehicleId, (id, last) -> {
+            if (last != null && epochMillis <= last.epochMillis) {
+                // Late or duplicate fix: the segment it belongs to was already counted
+                return last;
+            }
+            if (last != null) {
+                double distance = haversine(last.latitude, last.longitude, latitude, longitude);
+                double hours = (epochMillis - last.epochMillis) / 3_600_000.0;
+                // Reject GPS jumps that would need an impossible speed
+                if (distance / hours <= maxSpeedKmh) {
+                    segment[0] = distance;
+                }
+            }
+            return new LastFix(latitude, longitude, epochMillis);
+        });
+
+        add(vehicleId, TimeBucket.HOUR, timestamp, segment[0]);
+        add(vehicleId, TimeBucket.DAY, timestamp, segment[0]);
+        if (segment[0] > 0) {
+            pendingOdometer.merge(vehicleId, segment[0], Double::sum);
+        }
+    }
+
+    /**
+     * Stop tracking a deleted vehicle
+     */
+    public void forgetVehicle(Long vehicleId) {
+        lastFixes.remove(vehicleId);
+        pendingOdometer.remove(vehicleId);
+        pendingBuckets.keySet().removeIf(key -> key.vehicleId == vehicleId);
+    }
+
+    /**
+     * Distance driven by a vehicle between two instants, at hour resolution
+     */
+    public double getDistanceTraveled(Long vehicleId, LocalDateTime startTime, LocalDateTime endTime) {
+        double total = 0.0;
+        for (Segment segment : split(startTime, endTime)) {
+            total += bucketRepository.sumDistance(vehicleId, segment.granularity, segment.start, segment.end);
+        }
+        return total;
+    }
+
+    /**
+     * Distance driven per vehicle between two instants, at hour resolution
+     */
+    public Map<Long, Double> getDistanceByVehicle(LocalDateTime startTime, LocalDateTime endTime) {
+        Map<Long, Double> distances = new HashMap<>();
+        for (Segment segment : split(startTime, endTime)) {
+            for (Object[] row : bucketRepository.sumDistanceByVehicle(segment.granularity, segment.start, segment.end)) {
+                distances.merge((Long) row[0], ((Number) row[1]).doubleValue(), Double::sum);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Write accumulated increments to the bucket table and odometers
+     */
+    @Scheduled(fixedDelayString = "${app.gps.distance.flush-interval-ms:5000}")
+    public void flush() {
+        List<BucketKey> keys = new ArrayList<>(pendingBuckets.keySet());
+        List<Object[]> bucketRows = new ArrayList<>(keys.size());
+        Map<BucketKey, Increment> taken = new HashMap<>();
+        for (BucketKey key : keys) {
+            Increment increment = pendingBuckets.remove(key);
+            if (increment != null) {
+                taken.put(key, increment);
+                bucketRows.add(new Object[]{key.vehicleId, key.granularity.name(),
+                        Timestamp.valueOf(LocalDateTime.ofEpochSecond(key.bucketStart, 0, ZoneOffset.UTC)),
+                        increment.distanceKm, increment.fixCount});
+            }
+        }
+
+        List<Long> vehicleIds = new ArrayList<>(pendingOdometer.keySet());
+        List<Object[]> odometerRows = new ArrayList<>(vehicleIds.size());
+        Map<Long, Double> takenOdometer = new HashMap<>();
+        for (Long vehicleId : vehicleIds) {
+            Double distance = pendingOdometer.remove(vehicleId);
+            if (distance != null) {
+                takenOdometer.put(vehicleId, distance);
+                odometerRows.add(new Object[]{distance, vehicleId});
+            }
+        }
+
+        // Failed writes put their increments back so the next flush retries them
+        if (!bucketRows.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_BUCKET_SQL, bucketRows);
+            } catch (Exception e) {
+                logger.error("Failed to flush {} distance buckets, will retry", bucketRows.size(), e);
+                taken.forEach((key, increment) -> pendingBuckets.merge(key, increment, Increment::plus));
+            }
+        }
+        if (!odometerRows.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_ODOMETER_SQL, odometerRows);
+            } catch (Exception e) {
+                logger.error("Failed to flush {} odometers, will retry", odometerRows.size(), e);
+                takenOdometer.forEach((vehicleId, distance) -> pendingOdometer.merge(vehicleId, distance, Double::sum));
+            }
+        }
+    }
+
+    // Destroyed after GPSIngestService, which reaches this service through the fanout, so
+    // the pings it drains on shutdown are counted too
+    @PreDestroy
+    private void flushOnShutdown() {
+        flush();
+    }
+
+    private void add(Long vehicleId, TimeBucket granularity, LocalDateTime timestamp, double distanceKm) {
+        BucketKey key = new BucketKey(vehicleId, granularity,
+                granularity.truncate(timestamp).toEpochSecond(ZoneOffset.UTC));
+        pendingBuckets.compute(key, (k, increment) -> {
+            Increment current = increment != null ? increment : new Increment();
+            current.distanceKm += distanceKm;
+            current.fixCount++;
+            return current;
+        });
+    }
+
+    /**
+     * Cover [start, end) with whole days in the middle and hours at both edges
+     */
+    private static List<Segment> split(LocalDateTime startTime, LocalDateTime endTime) {
+        LocalDateTime start = TimeBucket.HOUR.truncate(startTime);
+        LocalDateTime end = TimeBucket.HOUR.ceil(endTime);
+        List<Segment> segments = new ArrayList<>(3);
+        if (!start.isBefore(end)) {
+            return segments;
+        }
+
+        LocalDateTime firstDay = TimeBucket.DAY.ceil(start);
+        LocalDateTime lastDay = TimeBucket.DAY.truncate(end);
+        if (firstDay.isBefore(lastDay)) {
+            segments.add(new Segment(TimeBucket.HOUR, start, firstDay));
+            segments.add(new Segment(TimeBucket.DAY, firstDay, lastDay));
+            segments.add(new Segment(TimeBucket.HOUR, lastDay, end));
+        } else {
+            segments.add(new Segment(TimeBucket.HOUR, start, end));
+        }
+        return segments;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double deltaLat = Math.toRadians(lat2 - lat1);
+        double deltaLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static final class LastFix {
+        private final double latitude;
+        private final double longitude;
+        private final long epochMillis;
+
+        private LastFix(double latitude, double longitude, long epochMillis) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.epochMillis = epochMillis;
+        }
+    }
+
+    private static final class BucketKey {
+        private final long vehicleId;
+        private final TimeBucket granularity;
+        private final long bucketStart;
+
+        private BucketKey(long vehicleId, TimeBucket granularity, long bucketStart) {
+            this.vehicleId = vehicleId;
+            this.granularity = granularity;
+            this.bucketStart = bucketStart;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof BucketKey)) return false;
+            BucketKey that = (BucketKey) obj;
+            return vehicleId == that.vehicleId && bucketStart == that.bucketStart && granularity == that.granularity;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(vehicleId, granularity, bucketStart);
+        }
+    }
+
+    private static final class Increment {
+        private double distanceKm;
+        private long fixCount;
+
+        private Increment plus(Increment other) {
+            distanceKm += other.distanceKm;
+            fixCount += other.fixCount;
+            return this;
+        }
+    }
+
+    private static final class Segment {
+        private final TimeBucket granularity;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+
+        private Segment(TimeBucket granularity, LocalDateTime start, LocalDateTime end) {
+            this.granularity = granularity;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package IMAS.ImasProject.services;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Vehicle exports written straight to the response stream.
+ *
+ * Rows are read in id order, {@code app.export.chunk-size} at a time, each chunk being a
+ * forward-only read-only query resuming after the last id written, with the route code
+ * joined in. Each row is written as soon as it is read, and a connection is only held for
+ * one chunk, however slowly the client reads. XLSX output uses a streaming workbook that
+ * keeps only a small window of rows in memory, so memory use does not depend on the
+ * number of vehicles.
+ */
+@Service
+public class VehicleExportService {
+
+    private static final String[] HEADERS = {
+            "ID", "Vehicle Number", "License Plate", "Capacity", "Vehicle Type", "Status", "Manufacturer",
+            "Model", "Year", "Fuel Type", "Is Active", "Route ID", "Route Code"
+    };
+
+    private static final String EXPORT_SQL =
+            "SELECT v.id, v.vehicle_number, v.license_plate, v.capacity, v.vehicle_type, v.status, " +
+                    "v.manufacturer, v.model, v.year, v.fuel_type, v.is_active, v.route_id, r.route_code " +
+                    "FROM vehicles v LEFT JOIN routes r ON r.id = v.route_id " +
+                    "WHERE v.id > ? ORDER BY v.id LIMIT ?";
+
+    private static final int XLSX_ROW_WINDOW = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.export.chunk-size:500}")
+    private int chunkSize;
+
+    public VehicleExportService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Write all vehicles as CSV (RFC 4180 quoting)
+     */
+    public void writeCsv(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writeCsvLine(writer, HEADERS);
+
+        String[] values = new String[HEADERS.length];
+        try {
+            forEachVehicle(resultSet -> {
+                readRow(resultSet, values);
+                try {
+                    writeCsvLine(writer, values);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Write all vehicles as an XLSX workbook
+     */
+    public void writeXlsx(OutputStream outputStream) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(XLSX_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("Vehicles");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < HEADERS.length; i++) {
+                header.createCell(i).setCellValue(HEADERS[i]);
+            }
+
+            int[] rowIndex = {1};
+            forEachVehicle(resultSet -> {
+                Row row = sheet.createRow(rowIndex[0]++);
+                row.createCell(0).setCellValue(resultSet.getLong(1));
+                setText(row.createCell(1), resultSet.getString(2));
+                setText(row.createCell(2), resultSet.getString(3));
+                row.createCell(3).setCellValue(resultSet.getInt(4));
+                setText(row.createCell(4), resultSet.getString(5));
+                setText(row.createCell(5), resultSet.getString(6));
+                setText(row.createCell(6), resultSet.getString(7));
+                setText(row.createCell(7), resultSet.getString(8));
+                int year = resultSet.getInt(9);
+                if (!resultSet.wasNull()) {
+                    row.createCell(8).setCellValue(year);
+                }
+                setText(row.createCell(9), resultSet.getString(10));
+                row.createCell(10).setCellValue(resultSet.getBoolean(11));
+                long routeId = resultSet.getLong(12);
+                if (!resultSet.wasNull()) {
+                    row.createCell(11).setCellValue(routeId);
+                }
+                setText(row.createCell(12), resultSet.getString(13));
+            });
+
+            workbook.write(outputStream);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void forEachVehicle(RowCallbackHandler handler) {
+        long[] lastId = {0L};
+        int[] rowsInChunk = new int[1];
+        do {
+            rowsInChunk[0] = 0;
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setLong(1, lastId[0]);
+                statement.setInt(2, chunkSize);
+                statement.setFetchSize(chunkSize);
+                return statement;
+            }, (RowCallbackHandler) resultSet -> {
+                handler.processRow(resultSet);
+                lastId[0] = resultSet.getLong(1);
+                rowsInChunk[0]++;
+            });
+        } while (rowsInChunk[0] == chunkSize);
+    }
+
+    private static void readRow(ResultSet resultSet, String[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = resultSet.getString(i + 1);
+        }
+        // is_active is a BIT column; print it the way the entity does
+        values[10] = String.valueOf(resultSet.getBoolean(11));
+    }
+
+    private static void setText(Cell cell, String value) {
+        if (value != null) {
+            cell.setCellValue(value);
+        }
+    }
+
+    private static void writeCsvLine(Writer writer, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write('\n');
+    }
+}
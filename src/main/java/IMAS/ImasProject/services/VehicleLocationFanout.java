@@ -0,0 +1,54 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.model.VehicleLocation;
+import org.springframework.stereotype.Service;
+
+/**
+ * Pushes every persisted fix to the in-memory vehicle views, in a fixed order,
+ * whichever write path (single fix or batched ingest) produced it.
+ */
+@Service
+public class VehicleLocationFanout {
+
+    private final VehicleDistanceService vehicleDistanceService;
+    private final VehiclePositionStore vehiclePositionStore;
+    private final VehicleSpatialIndex vehicleSpatialIndex;
+    private final VehicleMotionTracker vehicleMotionTracker;
+    private final VehicleViewportBroadcaster vehicleViewportBroadcaster;
+
+    public VehicleLocationFanout(VehicleDistanceService vehicleDistanceService,
+                                 VehiclePositionStore vehiclePositionStore,
+                                 VehicleSpatialIndex vehicleSpatialIndex,
+                                 VehicleMotionTracker vehicleMotionTracker,
+                                 VehicleViewportBroadcaster vehicleViewportBroadcaster) {
+        this.vehicleDistanceService = vehicleDistanceService;
+        this.vehiclePositionStore = vehiclePositionStore;
+        this.vehicleSpatialIndex = vehicleSpatialIndex;
+        this.vehicleMotionTracker = vehicleMotionTracker;
+        this.vehicleViewportBroadcaster = vehicleViewportBroadcaster;
+    }
+
+    /**
+     * Publish a persisted fix of a vehicle
+     */
+    public void publish(Long vehicleId, VehicleLocation location) {
+        // Distance continues from its own last fix, or from the newest persisted fix before this one
+        vehicleDistanceService.record(vehicleId, location.getLatitude(), location.getLongitude(), location.getTimestamp());
+        vehiclePositionStore.record(vehicleId, location);
+        vehicleSpatialIndex.update(vehicleId, location.getLatitude(), location.getLongitude(), location.getTimestamp());
+        vehicleMotionTracker.update(vehicleId, location.getLatitude(), location.getLongitude(),
+                location.getSpeed(), location.getTimestamp());
+        vehicleViewportBroadcaster.onFix(vehicleId, location);
+    }
+
+    /**
+     * Drop a deleted vehicle from every view
+     */
+    public void remove(Long vehicleId) {
+        vehicleDistanceService.forgetVehicle(vehicleId);
+        vehiclePositionStore.evict(vehicleId);
+        vehicleSpatialIndex.remove(vehicleId);
+        vehicleMotionTracker.remove(vehicleId);
+        vehicleViewportBroadcaster.remove(vehicleId);
+    }
+}
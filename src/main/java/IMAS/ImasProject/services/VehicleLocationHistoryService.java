@@ -0,0 +1,149 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.VehicleLocationDTO;
+import IMAS.ImasProject.model.TimeBucket;
+import IMAS.ImasProject.model.VehicleLocation;
+import IMAS.ImasProject.model.VehicleLocationRollup;
+import IMAS.ImasProject.repository.VehicleLocationRepository;
+import IMAS.ImasProject.repository.VehicleLocationRollupRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Location history served from raw fixes or rollups.
+ *
+ * Short, recent windows read raw fixes; longer windows, or windows reaching past
+ * raw retention, read the 1-minute and then the 1-hour rollups.
+ */
+@Service
+@Transactional(readOnly = true)
+public class VehicleLocationHistoryService {
+
+    /**
+     * Storage a history query is answered from
+     */
+    public enum Resolution {
+        RAW, MINUTE, HOUR
+    }
+
+    private final VehicleLocationRepository vehicleLocationRepository;
+    private final VehicleLocationRollupRepository rollupRepository;
+
+    @Value("${app.gps.history.raw-max-window-hours:6}")
+    private long rawMaxWindowHours;
+
+    @Value("${app.gps.history.minute-max-window-hours:168}")
+    private long minuteMaxWindowHours;
+
+    @Value("${app.gps.retention.raw-days:30}")
+    private int rawRetentionDays;
+
+    @Value("${app.gps.retention.minute-rollup-days:90}")
+    private int minuteRollupRetentionDays;
+
+    public VehicleLocationHistoryService(VehicleLocationRepository vehicleLocationRepository,
+                                         VehicleLocationRollupRepository rollupRepository) {
+        this.vehicleLocationRepository = vehicleLocationRepository;
+        this.rollupRepository = rollupRepository;
+    }
+
+    /**
+     * Pick the storage for a window: raw fixes when short and recent, then minute, then hour rollups
+     */
+    public Resolution chooseResolution(LocalDateTime startTime, LocalDateTime endTime) {
+        Duration window = Duration.between(startTime, endTime);
+        LocalDateTime now = LocalDateTime.now();
+
+        if (window.toHours() < rawMaxWindowHours && !startTime.isBefore(now.minusDays(rawRetentionDays))) {
+            return Resolution.RAW;
+        }
+        if (window.toHours() < minuteMaxWindowHours && !startTime.isBefore(now.minusDays(minuteRollupRetentionDays))) {
+            return Resolution.MINUTE;
+        }
+        return Resolution.HOUR;
+    }
+
+    /**
+     * Ordered route of a vehicle; rollup points sit at the centroid of their bucket
+     */
+    public List<VehicleLocationDTO> getRoute(Long vehicleId, LocalDateTime startTime, LocalDateTime endTime,
+                                             Resolution resolution) {
+        if (resolution == Resolution.RAW) {
+            return vehicleLocationRepository.getVehicleRouteInTimeRange(vehicleId, startTime, endTime).stream()
+                    .map(location -> toDTO(vehicleId, location))
+                    .collect(Collectors.toList());
+        }
+
+        TimeBucket granularity = toBucket(resolution);
+        return rollupRepository.findSeries(vehicleId, granularity, granularity.truncate(startTime), endTime).stream()
+                .map(this::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Speed, passenger and bounding-box statistics of a vehicle over a window
+     */
+    public Map<String, Object> getStatistics(Long vehicleId, LocalDateTime startTime, LocalDateTime endTime,
+                                             Resolution resolution) {
+        Object[] row;
+        if (resolution == Resolution.RAW) {
+            row = vehicleLocationRepository.getLocationStatistics(vehicleId, startTime, endTime).get(0);
+        } else {
+            TimeBucket granularity = toBucket(resolution);
+            row = rollupRepository.getStatistics(vehicleId, granularity, granularity.truncate(startTime), endTime).get(0);
+        }
+
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("resolution", resolution);
+        statistics.put("totalLocations", row[0] != null ? ((Number) row[0]).longValue() : 0L);
+        statistics.put("avgSpeed", row[1]);
+        statistics.put("maxSpeed", row[2]);
+        statistics.put("avgPassengers", row[3]);
+        statistics.put("maxPassengers", row[4]);
+        statistics.put("minLatitude", row[5]);
+        statistics.put("maxLatitude", row[6]);
+        statistics.put("minLongitude", row[7]);
+        statistics.put("maxLongitude", row[8]);
+        return statistics;
+    }
+
+    private static TimeBucket toBucket(Resolution resolution) {
+        return resolution == Resolution.MINUTE ? TimeBucket.MINUTE : TimeBucket.HOUR;
+    }
+
+    private VehicleLocationDTO toDTO(Long vehicleId, VehicleLocation location) {
+        VehicleLocationDTO dto = new VehicleLocationDTO();
+        dto.setId(location.getId());
+        dto.setVehicleId(vehicleId);
+        dto.setLatitude(location.getLatitude());
+        dto.setLongitude(location.getLongitude());
+        dto.setSpeed(location.getSpeed());
+        dto.setHeading(location.getHeading());
+        dto.setPassengerCount(location.getPassengerCount());
+        dto.setTimestamp(location.getTimestamp());
+        dto.setAccuracy(location.getAccuracy());
+        dto.setAltitude(location.getAltitude());
+        return dto;
+    }
+
+    private VehicleLocationDTO toDTO(VehicleLocationRollup rollup) {
+        Double averagePassengers = rollup.getAveragePassengerCount();
+
+        VehicleLocationDTO dto = new VehicleLocationDTO();
+        dto.setVehicleId(rollup.getVehicleId());
+        dto.setLatitude(rollup.getCentroidLatitude());
+        dto.setLongitude(rollup.getCentroidLongitude());
+        dto.setSpeed(rollup.getAverageSpeed());
+        dto.setPassengerCount(averagePassengers != null ? (int) Math.round(averagePassengers) : null);
+        dto.setTimestamp(rollup.getBucketStart());
+        return dto;
+    }
+}
@@ -0,0 +1,219 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.repository.VehicleLocationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Day partitioning and retention of {@code vehicle_locations}.
+ *
+ * The table is range-partitioned by day on {@code timestamp}. A daily job keeps
+ * {@code app.gps.partitioning.days-ahead} empty partitions ready and drops the
+ * partitions that are past retention and already rolled up, so expiry never runs
+ * a large DELETE. When partitioning is disabled or unavailable, expiry falls back
+ * to small batched deletes.
+ */
+@Service
+public class VehicleLocationPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleLocationPartitionService.class);
+
+    private static final String TABLE = "vehicle_locations";
+    private static final String FUTURE_PARTITION = "p_future";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int DELETE_BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VehicleLocationRepository vehicleLocationRepository;
+    private final VehicleLocationRollupService rollupService;
+
+    @Value("${app.gps.partitioning.enabled:true}")
+    private boolean partitioningEnabled;
+
+    @Value("${app.gps.partitioning.days-ahead:7}")
+    private int daysAhead;
+
+    @Value("${app.gps.retention.raw-days:30}")
+    private int rawRetentionDays;
+
+    public VehicleLocationPartitionService(JdbcTemplate jdbcTemplate,
+                                           VehicleLocationRepository vehicleLocationRepository,
+                                           VehicleLocationRollupService rollupService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.vehicleLocationRepository = vehicleLocationRepository;
+        this.rollupService = rollupService;
+    }
+
+    /**
+     * Partition the table on first start and make sure upcoming days have a partition
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!partitioningEnabled) {
+            return;
+        }
+        try {
+            if (listPartitions().isEmpty()) {
+                partitionTable();
+            }
+            ensureFuturePartitions();
+        } catch (Exception e) {
+            logger.error("Could not partition {}, retention will use batched deletes", TABLE, e);
+        }
+    }
+
+    /**
+     * Nightly maintenance: create upcoming partitions and expire old data
+     */
+    @Scheduled(cron = "${app.gps.partitioning.cron:0 15 0 * * *}", scheduler = "maintenanceTaskScheduler")
+    public void maintain() {
+        if (partitioningEnabled) {
+            try {
+                ensureFuturePartitions();
+            } catch (Exception e) {
+                logger.error("Failed to create upcoming partitions of {}", TABLE, e);
+            }
+        }
+        purgeBefore(LocalDate.now().minusDays(rawRetentionDays).atStartOfDay());
+        rollupService.purgeExpiredMinuteRollups();
+    }
+
+    /**
+     * Remove raw fixes older than the cutoff, never past what has been rolled up
+     */
+    public void purgeBefore(LocalDateTime cutoff) {
+        LocalDateTime rolledUpUntil = rollupService.getRolledUpUntil();
+        if (rolledUpUntil == null) {
+            logger.warn("Skipping location retention: rollups have not run yet");
+            return;
+        }
+        LocalDateTime limit = cutoff.isBefore(rolledUpUntil) ? cutoff : rolledUpUntil;
+
+        List<Partition> partitions = partitioningEnabled ? listPartitions() : List.of();
+        if (partitions.isEmpty()) {
+            deleteInBatches(limit);
+            return;
+        }
+
+        // Partitions are ordered by bound; drop the leading ones that end before the limit
+        int remaining = partitions.size();
+        for (Partition partition : partitions) {
+            if (partition.upperBound == null || partition.upperBound.isAfter(limit) || remaining <= 1) {
+                break;
+            }
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + partition.name);
+            remaining--;
+            logger.info("Dropped partition {} of {} (data before {})", partition.name, TABLE, partition.upperBound);
+        }
+    }
+
+    private void deleteInBatches(LocalDateTime cutoff) {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = vehicleLocationRepository.deleteOldLocationsBatch(cutoff, DELETE_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == DELETE_BATCH_SIZE);
+        logger.info("Deleted {} locations older than {} in batches of {}", total, cutoff, DELETE_BATCH_SIZE);
+    }
+
+    /**
+     * Convert the table to daily range partitions; older data lands in a single archive partition
+     */
+    private void partitionTable() {
+        // Partitioned InnoDB tables allow neither foreign keys nor a primary key without the partition column
+        List<String> foreignKeys = jdbcTemplate.queryForList(
+                "SELECT CONSTRAINT_NAME FROM information_schema.TABLE_CONSTRAINTS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND CONSTRAINT_TYPE = 'FOREIGN KEY'",
+                String.class, TABLE);
+        for (String foreignKey : foreignKeys) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP FOREIGN KEY " + foreignKey);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, timestamp)");
+
+        LocalDate firstDay = LocalDate.now().minusDays(rawRetentionDays);
+        StringBuilder ddl = new StringBuilder("ALTER TABLE ").append(TABLE)
+                .append(" PARTITION BY RANGE COLUMNS(timestamp) (")
+                .append("PARTITION p_archive VALUES LESS THAN ('").append(firstDay.atStartOfDay().format(BOUND)).append("')");
+        for (LocalDate day = firstDay; !day.isAfter(LocalDate.now().plusDays(daysAhead)); day = day.plusDays(1)) {
+            ddl.append(", ").append(dayPartition(day));
+        }
+        ddl.append(", PARTITION ").append(FUTURE_PARTITION).append(" VALUES LESS THAN (MAXVALUE))");
+
+        logger.info("Partitioning {} by day from {}", TABLE, firstDay);
+        jdbcTemplate.execute(ddl.toString());
+    }
+
+    private void ensureFuturePartitions() {
+        List<Partition> partitions = listPartitions();
+        LocalDateTime lastBound = null;
+        for (Partition partition : partitions) {
+            if (partition.upperBound != null) {
+                lastBound = partition.upperBound;
+            }
+        }
+        if (lastBound == null) {
+            return;
+        }
+
+        // The future partition stays empty, so splitting it moves no rows
+        LocalDate lastDay = LocalDate.now().plusDays(daysAhead);
+        List<String> newPartitions = new ArrayList<>();
+        for (LocalDate day = lastBound.toLocalDate(); !day.isAfter(lastDay); day = day.plusDays(1)) {
+            newPartitions.add(dayPartition(day));
+        }
+        if (newPartitions.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO (" +
+                String.join(", ", newPartitions) + ", PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+        logger.info("Added {} daily partitions to {}", newPartitions.size(), TABLE);
+    }
+
+    private static String dayPartition(LocalDate day) {
+        return "PARTITION " + day.format(PARTITION_NAME) +
+                " VALUES LESS THAN ('" + day.plusDays(1).atStartOfDay().format(BOUND) + "')";
+    }
+
+    /**
+     * Current partitions in order; the MAXVALUE partition has a null upper bound
+     */
+    private List<Partition> listPartitions() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                        "ORDER BY PARTITION_ORDINAL_POSITION", TABLE);
+        List<Partition> partitions = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            String description = String.valueOf(row.get("PARTITION_DESCRIPTION")).replace("'", "");
+            LocalDateTime upperBound = "MAXVALUE".equalsIgnoreCase(description)
+                    ? null : LocalDateTime.parse(description, BOUND);
+            partitions.add(new Partition((String) row.get("PARTITION_NAME"), upperBound));
+        }
+        return partitions;
+    }
+
+    private static final class Partition {
+        private final String name;
+        private final LocalDateTime upperBound;
+
+        private Partition(String name, LocalDateTime upperBound) {
+            this.name = name;
+            this.upperBound = upperBound;
+        }
+    }
+}
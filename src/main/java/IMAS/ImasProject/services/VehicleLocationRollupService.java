@@ -0,0 +1,153 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.model.TimeBucket;
+import IMAS.ImasProject.repository.VehicleLocationRollupRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Downsamples raw GPS fixes into 1-minute and 1-hour rollups.
+ *
+ * Each run re-aggregates everything from the watermark (minus a lateness margin for
+ * late fixes) up to the current minute, in chunks, with idempotent upserts. Raw
+ * partitions are only dropped once they are older than {@link #getRolledUpUntil()}.
+ */
+@Service
+public class VehicleLocationRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleLocationRollupService.class);
+
+    private static final String ROLLUP_COLUMNS =
+            "(vehicle_id, granularity, bucket_start, fix_count, speed_sum, speed_samples, max_speed, " +
+                    "passenger_sum, passenger_samples, max_passenger_count, latitude_sum, longitude_sum, " +
+                    "min_latitude, max_latitude, min_longitude, max_longitude) ";
+
+    private static final String ON_DUPLICATE_REPLACE =
+            " ON DUPLICATE KEY UPDATE fix_count = VALUES(fix_count), speed_sum = VALUES(speed_sum), " +
+                    "speed_samples = VALUES(speed_samples), max_speed = VALUES(max_speed), " +
+                    "passenger_sum = VALUES(passenger_sum), passenger_samples = VALUES(passenger_samples), " +
+                    "max_passenger_count = VALUES(max_passenger_count), latitude_sum = VALUES(latitude_sum), " +
+                    "longitude_sum = VALUES(longitude_sum), min_latitude = VALUES(min_latitude), " +
+                    "max_latitude = VALUES(max_latitude), min_longitude = VALUES(min_longitude), " +
+                    "max_longitude = VALUES(max_longitude)";
+
+    private static final String MINUTE_ROLLUP_SQL =
+            "INSERT INTO vehicle_location_rollups " + ROLLUP_COLUMNS +
+                    "SELECT vehicle_id, 'MINUTE', DATE_FORMAT(timestamp, '%Y-%m-%d %H:%i:00') AS minute_start, COUNT(*), " +
+                    "COALESCE(SUM(speed), 0), COUNT(speed), MAX(speed), " +
+                    "COALESCE(SUM(passenger_count), 0), COUNT(passenger_count), MAX(passenger_count), " +
+                    "SUM(latitude), SUM(longitude), MIN(latitude), MAX(latitude), MIN(longitude), MAX(longitude) " +
+                    "FROM vehicle_locations WHERE timestamp >= ? AND timestamp < ? " +
+                    "GROUP BY vehicle_id, minute_start" + ON_DUPLICATE_REPLACE;
+
+    private static final String HOUR_ROLLUP_SQL =
+            "INSERT INTO vehicle_location_rollups " + ROLLUP_COLUMNS +
+                    "SELECT vehicle_id, 'HOUR', DATE_FORMAT(bucket_start, '%Y-%m-%d %H:00:00') AS hour_start, SUM(fix_count), " +
+                    "SUM(speed_sum), SUM(speed_samples), MAX(max_speed), " +
+                    "SUM(passenger_sum), SUM(passenger_samples), MAX(max_passenger_count), " +
+                    "SUM(latitude_sum), SUM(longitude_sum), MIN(min_latitude), MAX(max_latitude), " +
+                    "MIN(min_longitude), MAX(max_longitude) " +
+                    "FROM vehicle_location_rollups WHERE granularity = 'MINUTE' AND bucket_start >= ? AND bucket_start < ? " +
+                    "GROUP BY vehicle_id, hour_start" + ON_DUPLICATE_REPLACE;
+
+    private static final int DELETE_BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VehicleLocationRollupRepository rollupRepository;
+
+    // Raw fixes strictly before this instant are reflected in the rollups
+    private volatile LocalDateTime rolledUpUntil;
+
+    @Value("${app.gps.rollup.lateness-minutes:10}")
+    private int latenessMinutes;
+
+    @Value("${app.gps.rollup.chunk-hours:6}")
+    private int chunkHours;
+
+    @Value("${app.gps.retention.minute-rollup-days:90}")
+    private int minuteRollupRetentionDays;
+
+    public VehicleLocationRollupService(JdbcTemplate jdbcTemplate,
+                                        VehicleLocationRollupRepository rollupRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollupRepository = rollupRepository;
+    }
+
+    /**
+     * Aggregate new raw fixes into minute and hour rollups
+     */
+    @Scheduled(initialDelay = 30000, fixedDelayString = "${app.gps.rollup.interval-ms:60000}", scheduler = "maintenanceTaskScheduler")
+    public synchronized void rollUp() {
+        LocalDateTime to = TimeBucket.MINUTE.truncate(LocalDateTime.now());
+        LocalDateTime from = startOfPendingWindow(to);
+        if (from == null || !from.isBefore(to)) {
+            return;
+        }
+
+        try {
+            for (LocalDateTime chunkStart = from; chunkStart.isBefore(to); ) {
+                LocalDateTime chunkEnd = chunkStart.plusHours(chunkHours);
+                if (chunkEnd.isAfter(to)) {
+                    chunkEnd = to;
+                }
+                int minutes = jdbcTemplate.update(MINUTE_ROLLUP_SQL, Timestamp.valueOf(chunkStart), Timestamp.valueOf(chunkEnd));
+                // Hours are rebuilt from their minutes, so a partial hour is simply recomputed next run
+                int hours = jdbcTemplate.update(HOUR_ROLLUP_SQL,
+                        Timestamp.valueOf(TimeBucket.HOUR.truncate(chunkStart)),
+                        Timestamp.valueOf(TimeBucket.HOUR.ceil(chunkEnd)));
+                rolledUpUntil = chunkEnd;
+                logger.debug("Rolled up {} to {}: {} minute rows, {} hour rows", chunkStart, chunkEnd, minutes, hours);
+                chunkStart = chunkEnd;
+            }
+        } catch (Exception e) {
+            logger.error("Location rollup failed, will resume from {}", rolledUpUntil, e);
+        }
+    }
+
+    /**
+     * Raw fixes before this instant are covered by rollups (null before the first run)
+     */
+    public LocalDateTime getRolledUpUntil() {
+        return rolledUpUntil;
+    }
+
+    /**
+     * Delete minute rollups past their retention; hour rollups are kept
+     */
+    public int purgeExpiredMinuteRollups() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(minuteRollupRetentionDays);
+        int total = 0;
+        int deleted;
+        do {
+            deleted = rollupRepository.deleteOldRollupsBatch(TimeBucket.MINUTE.name(), cutoff, DELETE_BATCH_SIZE);
+            total += deleted;
+        } while (deleted == DELETE_BATCH_SIZE);
+        logger.info("Deleted {} minute rollups older than {}", total, cutoff);
+        return total;
+    }
+
+    private LocalDateTime startOfPendingWindow(LocalDateTime to) {
+        if (rolledUpUntil == null) {
+            LocalDateTime latestMinute = rollupRepository.findLatestBucketStart(TimeBucket.MINUTE);
+            if (latestMinute != null) {
+                rolledUpUntil = latestMinute.plusMinutes(1);
+            } else {
+                Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM vehicle_locations", Timestamp.class);
+                if (oldest == null) {
+                    return null;
+                }
+                rolledUpUntil = TimeBucket.MINUTE.truncate(oldest.toLocalDateTime());
+            }
+        }
+
+        LocalDateTime lateStart = to.minusMinutes(latenessMinutes);
+        return rolledUpUntil.isBefore(lateStart) ? rolledUpUntil : lateStart;
+    }
+}
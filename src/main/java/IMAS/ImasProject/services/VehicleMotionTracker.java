@@ -0,0 +1,290 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.VehicleMotionDTO;
+import IMAS.ImasProject.model.VehicleMotionState;
+import IMAS.ImasProject.repository.StopRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-vehicle motion state machine (MOVING / IDLING / STOPPED_AT_STOP / OFFLINE).
+ *
+ * Updated from every fix at ingest. A moving vehicle only becomes stationary after
+ * staying below {@code stopped-speed-kmh} within {@code move-radius-meters} for
+ * {@code stop-dwell-seconds}; a stationary one only moves again above
+ * {@code moving-speed-kmh} or once it leaves that radius. OFFLINE is derived when read
+ * from the age of the last fix.
+ */
+@Service
+public class VehicleMotionTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleMotionTracker.class);
+
+    private static final double METERS_PER_DEGREE_LAT = 110_540.0;
+    private static final double METERS_PER_DEGREE_LON = 111_320.0;
+
+    private final StopRepository stopRepository;
+
+    private final Map<Long, Motion> motions = new ConcurrentHashMap<>();
+    private volatile StopCoordinates stops = new StopCoordinates(new long[0], new double[0], new double[0]);
+
+    @Value("${app.gps.motion.moving-speed-kmh:8}")
+    private double movingSpeedKmh;
+
+    @Value("${app.gps.motion.stopped-speed-kmh:3}")
+    private double stoppedSpeedKmh;
+
+    @Value("${app.gps.motion.stop-dwell-seconds:30}")
+    private long stopDwellSeconds;
+
+    @Value("${app.gps.motion.move-radius-meters:50}")
+    private double moveRadiusMeters;
+
+    @Value("${app.gps.motion.stop-radius-meters:40}")
+    private double stopRadiusMeters;
+
+    @Value("${app.gps.motion.offline-after-minutes:5}")
+    private long offlineAfterMinutes;
+
+    public VehicleMotionTracker(StopRepository stopRepository) {
+        this.stopRepository = stopRepository;
+    }
+
+    /**
+     * Reload the coordinates of active stops
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelay = 3600000, fixedDelay = 3600000)
+    public void loadStops() {
+        List<Object[]> rows = stopRepository.findActiveStopCoordinates();
+        long[] ids = new long[rows.size()];
+        double[] latitudes = new double[rows.size()];
+        double[] longitudes = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            ids[i] = (Long) row[0];
+            latitudes[i] = (Double) row[1];
+            longitudes[i] = (Double) row[2];
+        }
+        stops = new StopCoordinates(ids, latitudes, longitudes);
+        logger.info("Motion tracker loaded {} stops", ids.length);
+    }
+
+    /**
+     * Advance the state machine of a vehicle with a new fix
+     */
+    public void update(Long vehicleId, Double latitude, Double longitude, Double speed, LocalDateTime timestamp) {
+        if (vehicleId == null || latitude == null || longitude == null || timestamp == null) {
+            return;
+        }
+        long epochMillis = toEpochMillis(timestamp);
+        Motion motion = motions.computeIfAbsent(vehicleId, id -> new Motion());
+
+        synchronized (motion) {
+            if (motion.state != null && epochMillis <= motion.lastMillis) {
+                return;
+            }
+
+            double effectiveSpeed;
+            if (speed != null) {
+                effectiveSpeed = speed;
+            } else if (motion.state != null) {
+                double hours = (epochMillis - motion.lastMillis) / 3_600_000.0;
+                effectiveSpeed = distanceMeters(motion.lastLatitude, motion.lastLongitude, latitude, longitude) / 1000.0 / hours;
+            } else {
+                effectiveSpeed = 0.0;
+            }
+            boolean wasOffline = motion.state != null && epochMillis - motion.lastMillis > offlineAfterMinutes * 60_000;
+
+            motion.lastMillis = epochMillis;
+            motion.lastLatitude = latitude;
+            motion.lastLongitude = longitude;
+            motion.speed = effectiveSpeed;
+
+            if (motion.state == null || wasOffline) {
+                // First fix, or back after a gap: classify from this fix alone
+                if (effectiveSpeed >= movingSpeedKmh) {
+                    motion.startMoving(epochMillis);
+                } else {
+                    motion.anchor(latitude, longitude, epochMillis);
+                    enterStationary(motion, epochMillis);
+                }
+                return;
+            }
+
+            if (motion.state == VehicleMotionState.MOVING) {
+                if (effectiveSpeed >= stoppedSpeedKmh) {
+                    motion.slowSinceMillis = -1;
+                } else if (motion.slowSinceMillis < 0
+                        || distanceMeters(motion.anchorLatitude, motion.anchorLongitude, latitude, longitude) > moveRadiusMeters) {
+                    // Slow, but either just started or still creeping: restart the dwell from here
+                    motion.anchor(latitude, longitude, epochMillis);
+                } else if (epochMillis - motion.slowSinceMillis >= stopDwellSeconds * 1000) {
+                    enterStationary(motion, motion.slowSinceMillis);
+                }
+            } else if (effectiveSpeed >= movingSpeedKmh
+                    || distanceMeters(motion.anchorLatitude, motion.anchorLongitude, latitude, longitude) > moveRadiusMeters) {
+                motion.startMoving(epochMillis);
+            }
+        }
+    }
+
+    /**
+     * Forget a vehicle (e.g. after deletion)
+     */
+    public void remove(Long vehicleId) {
+        motions.remove(vehicleId);
+    }
+
+    /**
+     * Current state of one vehicle, or null when it never reported
+     */
+    public VehicleMotionDTO getMotion(Long vehicleId) {
+        Motion motion = motions.get(vehicleId);
+        return motion != null ? motion.snapshot(vehicleId, offlineBefore()) : null;
+    }
+
+    /**
+     * Vehicles currently in one of the given states that reported since the given time
+     */
+    public List<VehicleMotionDTO> findByStates(Set<VehicleMotionState> states, LocalDateTime since) {
+        long sinceMillis = toEpochMillis(since);
+        long offlineBefore = offlineBefore();
+        List<VehicleMotionDTO> result = new ArrayList<>();
+        motions.forEach((vehicleId, motion) -> {
+            VehicleMotionDTO snapshot = motion.snapshot(vehicleId, offlineBefore);
+            if (snapshot != null && states.contains(snapshot.getState())
+                    && (snapshot.getState() == VehicleMotionState.OFFLINE || toEpochMillis(snapshot.getLastFixTime()) >= sinceMillis)) {
+                result.add(snapshot);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Moving vehicles whose last speed is at least minSpeed km/h
+     */
+    public List<VehicleMotionDTO> findMovingAboveSpeed(double minSpeed, LocalDateTime since) {
+        List<VehicleMotionDTO> result = new ArrayList<>();
+        for (VehicleMotionDTO motion : findByStates(Set.of(VehicleMotionState.MOVING), since)) {
+            if (motion.getSpeed() != null && motion.getSpeed() >= minSpeed) {
+                result.add(motion);
+            }
+        }
+        return result;
+    }
+
+    private void enterStationary(Motion motion, long sinceMillis) {
+        Long stopId = nearestStop(motion.anchorLatitude, motion.anchorLongitude);
+        motion.state = stopId != null ? VehicleMotionState.STOPPED_AT_STOP : VehicleMotionState.IDLING;
+        motion.stopId = stopId;
+        motion.stateSinceMillis = sinceMillis;
+        motion.slowSinceMillis = -1;
+    }
+
+    private Long nearestStop(double latitude, double longitude) {
+        StopCoordinates current = stops;
+        Long nearest = null;
+        double best = stopRadiusMeters;
+        for (int i = 0; i < current.ids.length; i++) {
+            // Cheap latitude pre-check before the full distance
+            if (Math.abs(current.latitudes[i] - latitude) * METERS_PER_DEGREE_LAT > best) {
+                continue;
+            }
+            double distance = distanceMeters(latitude, longitude, current.latitudes[i], current.longitudes[i]);
+            if (distance <= best) {
+                best = distance;
+                nearest = current.ids[i];
+            }
+        }
+        return nearest;
+    }
+
+    private long offlineBefore() {
+        return toEpochMillis(LocalDateTime.now()) - offlineAfterMinutes * 60_000;
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L),
+                (int) Math.floorMod(epochMillis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dx = (lon2 - lon1) * METERS_PER_DEGREE_LON * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double dy = (lat2 - lat1) * METERS_PER_DEGREE_LAT;
+        return Math.hypot(dx, dy);
+    }
+
+    private static final class Motion {
+        private VehicleMotionState state;
+        private long stateSinceMillis;
+        private long lastMillis;
+        private double lastLatitude;
+        private double lastLongitude;
+        private double speed;
+        private double anchorLatitude;
+        private double anchorLongitude;
+        private long slowSinceMillis = -1;
+        private Long stopId;
+
+        private void startMoving(long epochMillis) {
+            state = VehicleMotionState.MOVING;
+            stateSinceMillis = epochMillis;
+            slowSinceMillis = -1;
+            stopId = null;
+        }
+
+        private void anchor(double latitude, double longitude, long epochMillis) {
+            anchorLatitude = latitude;
+            anchorLongitude = longitude;
+            slowSinceMillis = epochMillis;
+        }
+
+        private synchronized VehicleMotionDTO snapshot(Long vehicleId, long offlineBefore) {
+            if (state == null) {
+                return null;
+            }
+            boolean offline = lastMillis < offlineBefore;
+
+            VehicleMotionDTO dto = new VehicleMotionDTO();
+            dto.setVehicleId(vehicleId);
+            dto.setState(offline ? VehicleMotionState.OFFLINE : state);
+            dto.setStateSince(toDateTime(offline ? lastMillis : stateSinceMillis));
+            dto.setSpeed(speed);
+            dto.setLatitude(lastLatitude);
+            dto.setLongitude(lastLongitude);
+            dto.setLastFixTime(toDateTime(lastMillis));
+            dto.setStopId(offline ? null : stopId);
+            return dto;
+        }
+    }
+
+    private static final class StopCoordinates {
+        private final long[] ids;
+        private final double[] latitudes;
+        private final double[] longitudes;
+
+        private StopCoordinates(long[] ids, double[] latitudes, double[] longitudes) {
+            this.ids = ids;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+        }
+    }
+}
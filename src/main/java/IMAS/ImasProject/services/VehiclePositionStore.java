@@ -0,0 +1,211 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.VehicleLocationDTO;
+import IMAS.ImasProject.model.VehicleLocation;
+import IMAS.ImasProject.repository.VehicleLocationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Last-known-position store for vehicles.
+ *
+ * Keeps the most recent fixes of every vehicle in a bounded ring buffer so that
+ * current location and short history can be served without loading
+ * {@code Vehicle.locations}. A vehicle is warmed from the database once, on first
+ * access, and then kept up to date by {@link #record(VehicleLocation)}.
+ */
+@Service
+public class VehiclePositionStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehiclePositionStore.class);
+
+    private final VehicleLocationRepository vehicleLocationRepository;
+
+    private final Map<Long, PositionRing> rings = new ConcurrentHashMap<>();
+
+    @Value("${app.gps.position-history-size:120}")
+    private int historySize;
+
+    public VehiclePositionStore(VehicleLocationRepository vehicleLocationRepository) {
+        this.vehicleLocationRepository = vehicleLocationRepository;
+    }
+
+    /**
+     * Record a persisted fix for its vehicle
+     */
+    public void record(VehicleLocation location) {
+        if (location == null || location.getVehicle() == null || location.getVehicle().getId() == null) {
+            return;
+        }
+        record(location.getVehicle().getId(), location);
+    }
+
+    /**
+     * Record a persisted fix whose vehicle is only known by id
+     */
+    public void record(Long vehicleId, VehicleLocation location) {
+        if (vehicleId == null || location == null) {
+            return;
+        }
+        ringFor(vehicleId).add(location);
+    }
+
+    /**
+     * Most recent fix of a vehicle, or null when it never reported
+     */
+    public VehicleLocationDTO getLatest(Long vehicleId) {
+        return ringFor(vehicleId).latest(vehicleId);
+    }
+
+    /**
+     * Most recent fixes of a vehicle, newest first
+     */
+    public List<VehicleLocationDTO> getRecent(Long vehicleId, int limit) {
+        return ringFor(vehicleId).recent(vehicleId, limit);
+    }
+
+    /**
+     * Drop the buffered fixes of a vehicle (e.g. after deletion)
+     */
+    public void evict(Long vehicleId) {
+        rings.remove(vehicleId);
+    }
+
+    private PositionRing ringFor(Long vehicleId) {
+        PositionRing ring = rings.get(vehicleId);
+        if (ring != null) {
+            return ring;
+        }
+
+        // Load outside the map so a slow query never blocks other vehicles
+        PositionRing loaded = new PositionRing(historySize);
+        List<VehicleLocation> latest = vehicleLocationRepository
+                .findByVehicleIdOrderByTimestampDesc(vehicleId, PageRequest.of(0, historySize));
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            loaded.add(latest.get(i));
+        }
+        logger.debug("Warmed position store for vehicle {} with {} fixes", vehicleId, latest.size());
+
+        PositionRing existing = rings.putIfAbsent(vehicleId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * Fixed-size ring of fixes held in parallel primitive arrays.
+     * Nullable doubles are stored as NaN and a missing passenger count as -1.
+     */
+    static final class PositionRing {
+
+        private final long[] ids;
+        private final long[] timestamps;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final double[] speeds;
+        private final double[] headings;
+        private final double[] accuracies;
+        private final double[] altitudes;
+        private final int[] passengerCounts;
+
+        private int head = -1;
+        private int size = 0;
+
+        PositionRing(int capacity) {
+            int n = Math.max(1, capacity);
+            ids = new long[n];
+            timestamps = new long[n];
+            latitudes = new double[n];
+            longitudes = new double[n];
+            speeds = new double[n];
+            headings = new double[n];
+            accuracies = new double[n];
+            altitudes = new double[n];
+            passengerCounts = new int[n];
+        }
+
+        synchronized void add(VehicleLocation location) {
+            if (location.getLatitude() == null || location.getLongitude() == null) {
+                return;
+            }
+            long timestamp = toEpochMillis(location.getTimestamp() != null ? location.getTimestamp() : LocalDateTime.now());
+
+            // Late fixes stay in the database only; the ring always ends with the newest one
+            if (size > 0 && timestamp < timestamps[head]) {
+                return;
+            }
+            // A cold vehicle is warmed with the fix being recorded, which is then already the head
+            long id = location.getId() != null ? location.getId() : -1L;
+            if (size > 0 && ((id != -1L && id == ids[head]) || timestamp == timestamps[head])) {
+                return;
+            }
+
+            head = (head + 1) % ids.length;
+            ids[head] = id;
+            timestamps[head] = timestamp;
+            latitudes[head] = location.getLatitude();
+            longitudes[head] = location.getLongitude();
+            speeds[head] = orNaN(location.getSpeed());
+            headings[head] = orNaN(location.getHeading());
+            accuracies[head] = orNaN(location.getAccuracy());
+            altitudes[head] = orNaN(location.getAltitude());
+            passengerCounts[head] = location.getPassengerCount() != null ? location.getPassengerCount() : -1;
+            if (size < ids.length) {
+                size++;
+            }
+        }
+
+        synchronized VehicleLocationDTO latest(Long vehicleId) {
+            return size == 0 ? null : toDTO(vehicleId, head);
+        }
+
+        synchronized List<VehicleLocationDTO> recent(Long vehicleId, int limit) {
+            int count = Math.min(Math.max(limit, 0), size);
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+            List<VehicleLocationDTO> result = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                result.add(toDTO(vehicleId, Math.floorMod(head - i, ids.length)));
+            }
+            return result;
+        }
+
+        private VehicleLocationDTO toDTO(Long vehicleId, int slot) {
+            VehicleLocationDTO dto = new VehicleLocationDTO();
+            dto.setId(ids[slot] >= 0 ? ids[slot] : null);
+            dto.setVehicleId(vehicleId);
+            dto.setLatitude(latitudes[slot]);
+            dto.setLongitude(longitudes[slot]);
+            dto.setSpeed(orNull(speeds[slot]));
+            dto.setHeading(orNull(headings[slot]));
+            dto.setPassengerCount(passengerCounts[slot] >= 0 ? passengerCounts[slot] : null);
+            dto.setTimestamp(LocalDateTime.ofEpochSecond(Math.floorDiv(timestamps[slot], 1000L),
+                    (int) Math.floorMod(timestamps[slot], 1000L) * 1_000_000, ZoneOffset.UTC));
+            dto.setAccuracy(orNull(accuracies[slot]));
+            dto.setAltitude(orNull(altitudes[slot]));
+            return dto;
+        }
+
+        private static long toEpochMillis(LocalDateTime dateTime) {
+            return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+
+        private static double orNaN(Double value) {
+            return value != null ? value : Double.NaN;
+        }
+
+        private static Double orNull(double value) {
+            return Double.isNaN(value) ? null : value;
+        }
+    }
+}
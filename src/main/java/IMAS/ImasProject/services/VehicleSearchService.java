@@ -0,0 +1,223 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.VehicleSearchCriteria;
+import IMAS.ImasProject.dto.VehicleSearchResultDTO;
+import IMAS.ImasProject.model.VehicleStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vehicle search returning flat rows, paginated by keyset.
+ *
+ * Each page is read with {@code WHERE (sortKey, id) > (last sortKey, last id)} instead of an
+ * OFFSET, so every page costs the same. The position of the last row is handed back as an
+ * opaque cursor. Rows carry the route code from a join and the last fix from the spatial
+ * index, so nothing is lazily loaded.
+ */
+@Service
+public class VehicleSearchService {
+
+    public static final int MAX_PAGE_SIZE = 200;
+
+    // Sortable non-null columns, each indexed (InnoDB secondary indexes end with the primary key)
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "v.id",
+            "vehicleNumber", "v.vehicle_number",
+            "licensePlate", "v.license_plate",
+            "status", "v.status",
+            "vehicleType", "v.vehicle_type",
+            "capacity", "v.capacity"
+    );
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final VehicleSpatialIndex vehicleSpatialIndex;
+
+    public VehicleSearchService(NamedParameterJdbcTemplate jdbcTemplate, VehicleSpatialIndex vehicleSpatialIndex) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.vehicleSpatialIndex = vehicleSpatialIndex;
+    }
+
+    /**
+     * One page of matching vehicles after the given cursor (null for the first page)
+     */
+    public SearchPage search(VehicleSearchCriteria criteria, String sortBy, boolean descending, String cursor, int size) {
+        String sortColumn = SORT_COLUMNS.get(sortBy);
+        if (sortColumn == null) {
+            throw new IllegalArgumentException("Cannot sort by " + sortBy + ", expected one of " + SORT_COLUMNS.keySet());
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT v.id, v.vehicle_number, v.license_plate, v.status, v.vehicle_type, v.capacity, r.route_code " +
+                        "FROM vehicles v LEFT JOIN routes r ON r.id = v.route_id WHERE 1 = 1");
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        appendFilters(criteria, sql, params);
+
+        if (cursor != null && !cursor.isBlank()) {
+            Cursor after = Cursor.decode(cursor, sortBy);
+            String comparison = descending ? "<" : ">";
+            if ("id".equals(sortBy)) {
+                sql.append(" AND v.id ").append(comparison).append(" :afterId");
+            } else {
+                sql.append(" AND (").append(sortColumn).append(' ').append(comparison).append(" :afterKey OR (")
+                        .append(sortColumn).append(" = :afterKey AND v.id ").append(comparison).append(" :afterId))");
+                params.addValue("afterKey", "capacity".equals(sortBy) ? Integer.valueOf(after.key) : after.key);
+            }
+            params.addValue("afterId", after.id);
+        }
+
+        String direction = descending ? " DESC" : " ASC";
+        sql.append(" ORDER BY ");
+        if (!"id".equals(sortBy)) {
+            sql.append(sortColumn).append(direction).append(", ");
+        }
+        // One extra row tells whether there is a next page
+        sql.append("v.id").append(direction).append(" LIMIT :limit");
+        params.addValue("limit", pageSize + 1);
+
+        List<Object[]> rows = jdbcTemplate.query(sql.toString(), params, (resultSet, rowNum) -> new Object[]{
+                resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3), resultSet.getString(4),
+                resultSet.getString(5), resultSet.getInt(6), resultSet.getString(7)
+        });
+
+        boolean hasNext = rows.size() > pageSize;
+        List<VehicleSearchResultDTO> vehicles = new ArrayList<>(Math.min(rows.size(), pageSize));
+        for (int i = 0; i < rows.size() && i < pageSize; i++) {
+            vehicles.add(toDTO(rows.get(i)));
+        }
+
+        String nextCursor = null;
+        if (hasNext) {
+            Object[] last = rows.get(pageSize - 1);
+            nextCursor = new Cursor(sortBy, String.valueOf(last[sortKeyIndex(sortBy)]), (Long) last[0]).encode();
+        }
+        return new SearchPage(vehicles, nextCursor);
+    }
+
+    private static void appendFilters(VehicleSearchCriteria criteria, StringBuilder sql, MapSqlParameterSource params) {
+        if (criteria.getKeyword() != null && !criteria.getKeyword().isBlank()) {
+            sql.append(" AND (LOWER(v.vehicle_number) LIKE :keyword OR LOWER(v.license_plate) LIKE :keyword" +
+                    " OR LOWER(v.manufacturer) LIKE :keyword OR LOWER(v.model) LIKE :keyword)");
+            params.addValue("keyword", "%" + criteria.getKeyword().trim().toLowerCase() + "%");
+        }
+        if (criteria.getStatus() != null) {
+            sql.append(" AND v.status = :status");
+            params.addValue("status", criteria.getStatus().name());
+        }
+        if (criteria.getVehicleType() != null && !criteria.getVehicleType().isBlank()) {
+            sql.append(" AND v.vehicle_type = :vehicleType");
+            params.addValue("vehicleType", criteria.getVehicleType());
+        }
+        if (criteria.getFuelType() != null) {
+            sql.append(" AND v.fuel_type = :fuelType");
+            params.addValue("fuelType", criteria.getFuelType().name());
+        }
+        if (criteria.getIsActive() != null) {
+            sql.append(" AND v.is_active = :isActive");
+            params.addValue("isActive", criteria.getIsActive());
+        }
+        if (criteria.getRouteId() != null) {
+            sql.append(" AND v.route_id = :routeId");
+            params.addValue("routeId", criteria.getRouteId());
+        }
+        if (criteria.getMinCapacity() != null) {
+            sql.append(" AND v.capacity >= :minCapacity");
+            params.addValue("minCapacity", criteria.getMinCapacity());
+        }
+        if (criteria.getMaxCapacity() != null) {
+            sql.append(" AND v.capacity <= :maxCapacity");
+            params.addValue("maxCapacity", criteria.getMaxCapacity());
+        }
+    }
+
+    private static int sortKeyIndex(String sortBy) {
+        return switch (sortBy) {
+            case "vehicleNumber" -> 1;
+            case "licensePlate" -> 2;
+            case "status" -> 3;
+            case "vehicleType" -> 4;
+            case "capacity" -> 5;
+            default -> 0;
+        };
+    }
+
+    private VehicleSearchResultDTO toDTO(Object[] row) {
+        Long id = (Long) row[0];
+        VehicleSpatialIndex.Hit lastFix = vehicleSpatialIndex.find(id);
+        return VehicleSearchResultDTO.builder()
+                .id(id)
+                .vehicleNumber((String) row[1])
+                .licensePlate((String) row[2])
+                .status(row[3] != null ? VehicleStatus.valueOf((String) row[3]) : null)
+                .routeCode((String) row[6])
+                .lastLatitude(lastFix != null ? lastFix.getLatitude() : null)
+                .lastLongitude(lastFix != null ? lastFix.getLongitude() : null)
+                .lastFixTime(lastFix != null ? lastFix.getTimestamp() : null)
+                .build();
+    }
+
+    /**
+     * Sort key and id of the last row of a page, serialized as URL-safe Base64
+     */
+    private static final class Cursor {
+        private final String sortBy;
+        private final String key;
+        private final long id;
+
+        private Cursor(String sortBy, String key, long id) {
+            this.sortBy = sortBy;
+            this.key = key;
+            this.id = id;
+        }
+
+        private String encode() {
+            String raw = sortBy + "\n" + id + "\n" + key;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cursor decode(String cursor, String expectedSortBy) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\n", 3);
+                if (parts.length != 3 || !parts[0].equals(expectedSortBy)) {
+                    throw new IllegalArgumentException("Cursor does not match sort " + expectedSortBy);
+                }
+                return new Cursor(parts[0], parts[2], Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * A page of search results and the cursor of the next one (null on the last page)
+     */
+    public static final class SearchPage {
+        private final List<VehicleSearchResultDTO> vehicles;
+        private final String nextCursor;
+
+        private SearchPage(List<VehicleSearchResultDTO> vehicles, String nextCursor) {
+            this.vehicles = vehicles;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<VehicleSearchResultDTO> getVehicles() {
+            return vehicles;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean isHasNext() {
+            return nextCursor != null;
+        }
+    }
+}
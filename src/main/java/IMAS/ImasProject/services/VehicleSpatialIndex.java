@@ -0,0 +1,364 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.model.VehicleLocation;
+import IMAS.ImasProject.repository.VehicleLocationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Uniform-grid spatial index of current vehicle positions.
+ *
+ * Each vehicle sits in exactly one cell of {@code app.gps.grid-cell-degrees} degrees,
+ * so radius, bounding-box and nearest-neighbour queries only visit the cells that
+ * overlap the search area instead of scanning {@code vehicle_locations}.
+ */
+@Service
+public class VehicleSpatialIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleSpatialIndex.class);
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final VehicleLocationRepository vehicleLocationRepository;
+
+    private final Map<Long, Position> positions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+    @Value("${app.gps.grid-cell-degrees:0.01}")
+    private double cellDegrees;
+
+    @Value("${app.gps.index-warmup-hours:24}")
+    private int warmupHours;
+
+    public VehicleSpatialIndex(VehicleLocationRepository vehicleLocationRepository) {
+        this.vehicleLocationRepository = vehicleLocationRepository;
+    }
+
+    /**
+     * Load the latest known position of every vehicle seen recently
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        LocalDateTime since = LocalDateTime.now().minusHours(warmupHours);
+        List<Object[]> latest = vehicleLocationRepository.findLatestPositionsSince(since);
+        for (Object[] row : latest) {
+            update((Long) row[0], (Double) row[1], (Double) row[2], (LocalDateTime) row[3]);
+        }
+        logger.info("Spatial index warmed with {} vehicle positions", positions.size());
+    }
+
+    /**
+     * Move a vehicle to the position of a persisted fix
+     */
+    public void update(VehicleLocation location) {
+        if (location == null || location.getVehicle() == null) {
+            return;
+        }
+        update(location.getVehicle().getId(), location.getLatitude(), location.getLongitude(), location.getTimestamp());
+    }
+
+    /**
+     * Move a vehicle to a new position; older fixes than the indexed one are ignored
+     */
+    public void update(Long vehicleId, Double latitude, Double longitude, LocalDateTime timestamp) {
+        if (vehicleId == null || latitude == null || longitude == null) {
+            return;
+        }
+        long epochMillis = toEpochMillis(timestamp != null ? timestamp : LocalDateTime.now());
+        long cell = cellKey(latitude, longitude);
+
+        positions.compute(vehicleId, (id, current) -> {
+            if (current != null && current.epochMillis > epochMillis) {
+                return current;
+            }
+            if (current == null || current.cell != cell) {
+                if (current != null) {
+                    removeFromCell(current.cell, id);
+                }
+                addToCell(cell, id);
+            }
+            return new Position(id, latitude, longitude, epochMillis, cell);
+        });
+    }
+
+    /**
+     * Remove a vehicle from the index
+     */
+    public void remove(Long vehicleId) {
+        positions.computeIfPresent(vehicleId, (id, current) -> {
+            removeFromCell(current.cell, id);
+            return null;
+        });
+    }
+
+    /**
+     * Indexed position of one vehicle, or null when it has not reported recently
+     */
+    public Hit find(Long vehicleId) {
+        Position position = positions.get(vehicleId);
+        return position != null ? new Hit(position, 0.0) : null;
+    }
+
+    /**
+     * Vehicles within radiusKm of a point, nearest first
+     */
+    public List<Hit> findInRadius(double latitude, double longitude, double radiusKm, LocalDateTime since) {
+        long sinceMillis = toEpochMillis(since);
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        double lonSpan = radiusKm / (KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(latitude)), 0.01));
+
+        List<Hit> hits = new ArrayList<>();
+        forEachInBox(latitude - latSpan, latitude + latSpan, longitude - lonSpan, longitude + lonSpan, position -> {
+            if (position.epochMillis < sinceMillis) {
+                return;
+            }
+            double distance = haversine(latitude, longitude, position.latitude, position.longitude);
+            if (distance <= radiusKm) {
+                hits.add(new Hit(position, distance));
+            }
+        });
+        hits.sort(Comparator.comparingDouble(Hit::getDistanceKm));
+        return hits;
+    }
+
+    /**
+     * Vehicles inside a latitude/longitude bounding box
+     */
+    public List<Hit> findInBounds(double minLatitude, double maxLatitude,
+                                  double minLongitude, double maxLongitude, LocalDateTime since) {
+        long sinceMillis = toEpochMillis(since);
+        List<Hit> hits = new ArrayList<>();
+        forEachInBox(minLatitude, maxLatitude, minLongitude, maxLongitude, position -> {
+            if (position.epochMillis >= sinceMillis
+                    && position.latitude >= minLatitude && position.latitude <= maxLatitude
+                    && position.longitude >= minLongitude && position.longitude <= maxLongitude) {
+                hits.add(new Hit(position, 0.0));
+            }
+        });
+        return hits;
+    }
+
+    /**
+     * The k vehicles closest to a point, nearest first
+     */
+    public List<Hit> findNearest(double latitude, double longitude, int k, LocalDateTime since) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        long sinceMillis = toEpochMillis(since);
+        // Max-heap on distance holding the best k candidates seen so far
+        PriorityQueue<Hit> best = new PriorityQueue<>(k, Comparator.comparingDouble(Hit::getDistanceKm).reversed());
+
+        long centerRow = (long) Math.floor(latitude / cellDegrees);
+        long centerCol = (long) Math.floor(longitude / cellDegrees);
+        // Narrowest cell dimension bounds how far an unvisited ring can be
+        double minCellKm = cellDegrees * KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(Math.min(Math.abs(latitude) + cellDegrees, 89.0))), 0.01);
+
+        for (long ring = 0; ; ring++) {
+            long cellsSoFar = (2 * ring + 1) * (2 * ring + 1);
+            if (cellsSoFar > positions.size() * 4L) {
+                // Sparse fleet relative to the area searched: a full pass is cheaper
+                best.clear();
+                for (Position position : positions.values()) {
+                    offer(best, k, position, latitude, longitude, sinceMillis);
+                }
+                break;
+            }
+
+            // Visit only the border cells of the current ring
+            for (long col = centerCol - ring; col <= centerCol + ring; col++) {
+                offerCell(best, k, centerRow - ring, col, latitude, longitude, sinceMillis);
+                if (ring > 0) {
+                    offerCell(best, k, centerRow + ring, col, latitude, longitude, sinceMillis);
+                }
+            }
+            for (long row = centerRow - ring + 1; row <= centerRow + ring - 1; row++) {
+                offerCell(best, k, row, centerCol - ring, latitude, longitude, sinceMillis);
+                offerCell(best, k, row, centerCol + ring, latitude, longitude, sinceMillis);
+            }
+
+            if (best.size() == k && best.peek().getDistanceKm() <= ring * minCellKm) {
+                break;
+            }
+        }
+
+        List<Hit> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(Hit::getDistanceKm));
+        return result;
+    }
+
+    /**
+     * Number of indexed vehicles
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    private void offerCell(PriorityQueue<Hit> best, int k, long row, long col,
+                           double latitude, double longitude, long sinceMillis) {
+        Set<Long> ids = cells.get(cellKey(row, col));
+        if (ids == null) {
+            return;
+        }
+        for (Long id : ids) {
+            Position position = positions.get(id);
+            if (position != null) {
+                offer(best, k, position, latitude, longitude, sinceMillis);
+            }
+        }
+    }
+
+    private void offer(PriorityQueue<Hit> best, int k, Position position,
+                       double latitude, double longitude, long sinceMillis) {
+        if (position.epochMillis < sinceMillis) {
+            return;
+        }
+        double distance = haversine(latitude, longitude, position.latitude, position.longitude);
+        if (best.size() < k) {
+            best.add(new Hit(position, distance));
+        } else if (distance < best.peek().getDistanceKm()) {
+            best.poll();
+            best.add(new Hit(position, distance));
+        }
+    }
+
+    private void forEachInBox(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+                              Consumer<Position> action) {
+        long minRow = (long) Math.floor(Math.max(minLatitude, -90.0) / cellDegrees);
+        long maxRow = (long) Math.floor(Math.min(maxLatitude, 90.0) / cellDegrees);
+        long minCol = (long) Math.floor(Math.max(minLongitude, -180.0) / cellDegrees);
+        long maxCol = (long) Math.floor(Math.min(maxLongitude, 180.0) / cellDegrees);
+
+        // Very large boxes touch more cells than there are vehicles; scan the fleet instead
+        if ((maxRow - minRow + 1) * (maxCol - minCol + 1) > positions.size()) {
+            positions.values().forEach(action);
+            return;
+        }
+
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long col = minCol; col <= maxCol; col++) {
+                Set<Long> ids = cells.get(cellKey(row, col));
+                if (ids == null) {
+                    continue;
+                }
+                for (Long id : ids) {
+                    Position position = positions.get(id);
+                    if (position != null) {
+                        action.accept(position);
+                    }
+                }
+            }
+        }
+    }
+
+    // Added inside the map operation, so a concurrent removal cannot drop the set in between
+    private void addToCell(long cell, Long vehicleId) {
+        cells.compute(cell, (key, ids) -> {
+            if (ids == null) {
+                ids = ConcurrentHashMap.newKeySet();
+            }
+            ids.add(vehicleId);
+            return ids;
+        });
+    }
+
+    private void removeFromCell(long cell, Long vehicleId) {
+        cells.computeIfPresent(cell, (key, ids) -> {
+            ids.remove(vehicleId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return cellKey((long) Math.floor(latitude / cellDegrees), (long) Math.floor(longitude / cellDegrees));
+    }
+
+    private static long cellKey(long row, long col) {
+        return (row << 32) | (col & 0xffffffffL);
+    }
+
+    private static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double deltaLat = Math.toRadians(lat2 - lat1);
+        double deltaLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static final class Position {
+        private final long vehicleId;
+        private final double latitude;
+        private final double longitude;
+        private final long epochMillis;
+        private final long cell;
+
+        private Position(long vehicleId, double latitude, double longitude, long epochMillis, long cell) {
+            this.vehicleId = vehicleId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.epochMillis = epochMillis;
+            this.cell = cell;
+        }
+    }
+
+    /**
+     * A vehicle matched by a spatial query
+     */
+    public static final class Hit {
+        private final Long vehicleId;
+        private final double latitude;
+        private final double longitude;
+        private final long epochMillis;
+        private final double distanceKm;
+
+        private Hit(Position position, double distanceKm) {
+            this.vehicleId = position.vehicleId;
+            this.latitude = position.latitude;
+            this.longitude = position.longitude;
+            this.epochMillis = position.epochMillis;
+            this.distanceKm = distanceKm;
+        }
+
+        public Long getVehicleId() {
+            return vehicleId;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public LocalDateTime getTimestamp() {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L),
+                    (int) Math.floorMod(epochMillis, 1000L) * 1_000_000, ZoneOffset.UTC);
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+}
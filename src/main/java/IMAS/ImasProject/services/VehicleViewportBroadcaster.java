@@ -0,0 +1,351 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.VehicleMotionDTO;
+import IMAS.ImasProject.model.VehicleLocation;
+import IMAS.ImasProject.model.VehicleMotionState;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes vehicle positions to map viewers over STOMP, scoped to each viewer's viewport.
+ *
+ * A viewer sends its bounding box to {@code /app/vehicles.viewport} and subscribes to
+ * {@code /user/queue/vehicles}. Fixes are coalesced per vehicle and flushed every
+ * {@code app.gps.live.interval-ms}: each changed vehicle is diffed against what was last
+ * published and serialized once, and each viewer receives only the entries of vehicles
+ * inside its box. Entries carry only changed fields; a vehicle entering a viewport is
+ * sent in full and one leaving it is sent as {@code {"id":..,"removed":true}}.
+ */
+@Service
+public class VehicleViewportBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(VehicleViewportBroadcaster.class);
+
+    private static final String DESTINATION = "/queue/vehicles";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final VehicleSpatialIndex vehicleSpatialIndex;
+    private final VehicleMotionTracker vehicleMotionTracker;
+
+    // Latest unpublished fix per vehicle; a newer fix replaces an older one
+    private final Map<Long, VehicleLocation> pending = new ConcurrentHashMap<>();
+    private final Set<Long> pendingRemovals = ConcurrentHashMap.newKeySet();
+    private final Map<Long, LiveState> published = new ConcurrentHashMap<>();
+    private final Map<String, Viewer> viewers = new ConcurrentHashMap<>();
+
+    @Value("${app.gps.live.recent-minutes:30}")
+    private long recentMinutes;
+
+    public VehicleViewportBroadcaster(SimpMessagingTemplate messagingTemplate,
+                                      ObjectMapper objectMapper,
+                                      VehicleSpatialIndex vehicleSpatialIndex,
+                                      VehicleMotionTracker vehicleMotionTracker) {
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.vehicleSpatialIndex = vehicleSpatialIndex;
+        this.vehicleMotionTracker = vehicleMotionTracker;
+    }
+
+    /**
+     * Queue a persisted fix for the next frame
+     */
+    public void onFix(Long vehicleId, VehicleLocation location) {
+        if (vehicleId == null || location == null || location.getLatitude() == null || location.getLongitude() == null) {
+            return;
+        }
+        pending.put(vehicleId, location);
+    }
+
+    /**
+     * Queue the removal of a deleted vehicle from every viewport
+     */
+    public void remove(Long vehicleId) {
+        pending.remove(vehicleId);
+        pendingRemovals.add(vehicleId);
+    }
+
+    /**
+     * Set or move the viewport of a session; the reply holds the vehicles entering and leaving it
+     */
+    public void setViewport(String sessionId, double minLatitude, double maxLatitude,
+                            double minLongitude, double maxLongitude) {
+        Viewer viewer = viewers.computeIfAbsent(sessionId, Viewer::new);
+        List<VehicleSpatialIndex.Hit> hits = vehicleSpatialIndex.findInBounds(minLatitude, maxLatitude,
+                minLongitude, maxLongitude, LocalDateTime.now().minusMinutes(recentMinutes));
+
+        synchronized (viewer) {
+            viewer.minLatitude = minLatitude;
+            viewer.maxLatitude = maxLatitude;
+            viewer.minLongitude = minLongitude;
+            viewer.maxLongitude = maxLongitude;
+            viewer.active = true;
+
+            List<RawValue> entries = new ArrayList<>();
+            Set<Long> inside = new HashSet<>(hits.size() * 2);
+            for (VehicleSpatialIndex.Hit hit : hits) {
+                inside.add(hit.getVehicleId());
+                if (viewer.visible.add(hit.getVehicleId())) {
+                    LiveState state = published.get(hit.getVehicleId());
+                    entries.add(state != null
+                            ? serialize(state.diff(null))
+                            : serialize(positionOnly(hit)));
+                }
+            }
+            viewer.visible.removeIf(vehicleId -> {
+                if (inside.contains(vehicleId)) {
+                    return false;
+                }
+                entries.add(removedEntry(vehicleId));
+                return true;
+            });
+            send(viewer.sessionId, entries);
+        }
+    }
+
+    /**
+     * Stop pushing to a session
+     */
+    public void clearViewport(String sessionId) {
+        viewers.remove(sessionId);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        clearViewport(event.getSessionId());
+    }
+
+    /**
+     * Publish the coalesced changes since the last frame to the viewers they concern
+     */
+    @Scheduled(fixedDelayString = "${app.gps.live.interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty() && pendingRemovals.isEmpty()) {
+            return;
+        }
+
+        List<Change> changes = new ArrayList<>(pending.size());
+        for (Long vehicleId : pending.keySet()) {
+            VehicleLocation location = pending.remove(vehicleId);
+            if (location == null) {
+                continue;
+            }
+            LiveState next = LiveState.of(vehicleId, location, vehicleMotionTracker.getMotion(vehicleId));
+            LiveState previous = published.put(vehicleId, next);
+            Map<String, Object> delta = next.diff(previous);
+            changes.add(new Change(vehicleId, next, delta.size() > 1 ? serialize(delta) : null));
+        }
+        for (Long vehicleId : pendingRemovals) {
+            pendingRemovals.remove(vehicleId);
+            published.remove(vehicleId);
+            changes.add(new Change(vehicleId, null, null));
+        }
+        if (viewers.isEmpty() || changes.isEmpty()) {
+            return;
+        }
+
+        for (Viewer viewer : viewers.values()) {
+            synchronized (viewer) {
+                if (!viewer.active) {
+                    continue;
+                }
+                List<RawValue> entries = new ArrayList<>();
+                for (Change change : changes) {
+                    boolean visible = viewer.visible.contains(change.vehicleId);
+                    boolean inside = change.state != null && viewer.contains(change.state.latitude, change.state.longitude);
+
+                    if (inside && visible) {
+                        if (change.delta != null) {
+                            entries.add(change.delta);
+                        }
+                    } else if (inside) {
+                        viewer.visible.add(change.vehicleId);
+                        entries.add(change.full(this));
+                    } else if (visible) {
+                        viewer.visible.remove(change.vehicleId);
+                        entries.add(removedEntry(change.vehicleId));
+                    }
+                }
+                send(viewer.sessionId, entries);
+            }
+        }
+    }
+
+    /**
+     * Number of sessions with a viewport
+     */
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    private void send(String sessionId, List<RawValue> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        // Addressing the user destination by session id reaches that session even without a Principal
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(sessionId);
+        headers.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(sessionId, DESTINATION, Map.of("vehicles", entries),
+                headers.getMessageHeaders());
+    }
+
+    private RawValue removedEntry(Long vehicleId) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", vehicleId);
+        entry.put("removed", true);
+        return serialize(entry);
+    }
+
+    private static Map<String, Object> positionOnly(VehicleSpatialIndex.Hit hit) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", hit.getVehicleId());
+        entry.put("lat", round(hit.getLatitude(), 1e5));
+        entry.put("lon", round(hit.getLongitude(), 1e5));
+        return entry;
+    }
+
+    private RawValue serialize(Map<String, Object> entry) {
+        try {
+            return new RawValue(objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize live entry of vehicle {}", entry.get("id"), e);
+            return new RawValue("{}");
+        }
+    }
+
+    private static Double round(Double value, double scale) {
+        return value != null ? Math.round(value * scale) / scale : null;
+    }
+
+    /**
+     * Published state of a vehicle, rounded so that GPS jitter below ~1 m does not count as a change
+     */
+    private static final class LiveState {
+        private final Long vehicleId;
+        private final double latitude;
+        private final double longitude;
+        private final Double speed;
+        private final Double heading;
+        private final Integer passengerCount;
+        private final VehicleMotionState state;
+        private final LocalDateTime timestamp;
+
+        private LiveState(Long vehicleId, double latitude, double longitude, Double speed, Double heading,
+                          Integer passengerCount, VehicleMotionState state, LocalDateTime timestamp) {
+            this.vehicleId = vehicleId;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.speed = speed;
+            this.heading = heading;
+            this.passengerCount = passengerCount;
+            this.state = state;
+            this.timestamp = timestamp;
+        }
+
+        private static LiveState of(Long vehicleId, VehicleLocation location, VehicleMotionDTO motion) {
+            return new LiveState(vehicleId,
+                    round(location.getLatitude(), 1e5),
+                    round(location.getLongitude(), 1e5),
+                    round(location.getSpeed(), 10),
+                    round(location.getHeading(), 1),
+                    location.getPassengerCount(),
+                    motion != null ? motion.getState() : null,
+                    location.getTimestamp());
+        }
+
+        /**
+         * Fields that differ from the previous state, always with the id; everything when there is none
+         */
+        private Map<String, Object> diff(LiveState previous) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", vehicleId);
+            if (previous == null || previous.latitude != latitude) {
+                entry.put("lat", latitude);
+            }
+            if (previous == null || previous.longitude != longitude) {
+                entry.put("lon", longitude);
+            }
+            if (previous == null || !Objects.equals(previous.speed, speed)) {
+                entry.put("speed", speed);
+            }
+            if (previous == null || !Objects.equals(previous.heading, heading)) {
+                entry.put("heading", heading);
+            }
+            if (previous == null || !Objects.equals(previous.passengerCount, passengerCount)) {
+                entry.put("passengers", passengerCount);
+            }
+            if (previous == null || previous.state != state) {
+                entry.put("state", state);
+            }
+            if (previous == null || !Objects.equals(previous.timestamp, timestamp)) {
+                entry.put("ts", timestamp);
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * One vehicle's change in a frame; state is null for a removal
+     */
+    private static final class Change {
+        private final Long vehicleId;
+        private final LiveState state;
+        private final RawValue delta;
+        private RawValue full;
+
+        private Change(Long vehicleId, LiveState state, RawValue delta) {
+            this.vehicleId = vehicleId;
+            this.state = state;
+            this.delta = delta;
+        }
+
+        // Serialized on first use: only viewers the vehicle enters need it
+        private RawValue full(VehicleViewportBroadcaster broadcaster) {
+            if (full == null) {
+                full = broadcaster.serialize(state.diff(null));
+            }
+            return full;
+        }
+    }
+
+    private static final class Viewer {
+        private final String sessionId;
+        private final Set<Long> visible = new HashSet<>();
+        private boolean active;
+        private double minLatitude;
+        private double maxLatitude;
+        private double minLongitude;
+        private double maxLongitude;
+
+        private Viewer(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        private boolean contains(double latitude, double longitude) {
+            return latitude >= minLatitude && latitude <= maxLatitude
+                    && longitude >= minLongitude && longitude <= maxLongitude;
+        }
+    }
+}
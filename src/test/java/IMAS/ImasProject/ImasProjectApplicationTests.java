@@ -3,7 +3,8 @@ package IMAS.ImasProject;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// QR signing key of zeros, for tests only
+@SpringBootTest(properties = "app.tickets.qr.secret=AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA=")
 class ImasProjectApplicationTests {
 
 	@Test
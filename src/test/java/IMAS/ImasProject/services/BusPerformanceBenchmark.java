@@ -0,0 +1,117 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.model.Bus;
+import IMAS.ImasProject.model.Staff;
+import IMAS.ImasProject.model.Ticket;
+import IMAS.ImasProject.repository.BusRepository;
+import IMAS.ImasProject.repository.FareRuleRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Bus performance aggregation: the former per-bus filter over every ticket against
+ * {@link AnalyticService#getBusPerformanceStatistics(String)} over revenue cube rows.
+ *
+ * The database is stubbed, so this times the in-memory work only; the GROUP BY that
+ * produces the cube rows is not timed. Skipped unless enabled:
+ * {@code mvn test -Dtest=BusPerformanceBenchmark -Dbenchmark=true -Dbenchmark.buses=1000 -Dbenchmark.tickets=1000000}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BusPerformanceBenchmark {
+
+    private static final String[] STATIONS = {"GARE_CENTRALE", "MATETE", "LIMETE", "BANDALUNGWA", "NDJILI", "MASINA", "KIMBANSEKE"};
+    private static final int ROUNDS = 5;
+
+    @Test
+    void busPerformance() {
+        int busCount = Integer.getInteger("benchmark.buses", 1000);
+        int ticketCount = Integer.getInteger("benchmark.tickets", 1_000_000);
+        Random random = new Random(42);
+
+        FareEngine fareEngine = new FareEngine(mock(FareRuleRepository.class), mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(fareEngine, "baseFare", 2000.0);
+        ReflectionTestUtils.setField(fareEngine, "luggageFee", 500.0);
+
+        List<Bus> buses = new ArrayList<>(busCount);
+        for (long id = 1; id <= busCount; id++) {
+            Staff driver = new Staff();
+            driver.setFirstName("Driver");
+            driver.setLastName(String.valueOf(id));
+            Bus bus = new Bus();
+            bus.setId(id);
+            bus.setName("Bus " + id);
+            bus.setBusLine("Line " + (id % 20));
+            bus.setCapacity(50);
+            bus.setDriver(driver);
+            buses.add(bus);
+        }
+
+        List<Ticket> tickets = new ArrayList<>(ticketCount);
+        Map<List<Object>, long[]> cells = new HashMap<>();
+        for (int i = 0; i < ticketCount; i++) {
+            Ticket ticket = new Ticket();
+            ticket.setBus(buses.get(random.nextInt(busCount)));
+            ticket.setOrigin(STATIONS[random.nextInt(STATIONS.length)]);
+            ticket.setDestination(STATIONS[random.nextInt(STATIONS.length)]);
+            ticket.setHasLuggage(random.nextBoolean());
+            tickets.add(ticket);
+            cells.computeIfAbsent(List.of(ticket.getBus().getId(), ticket.getOrigin(), ticket.getDestination(),
+                    ticket.getHasLuggage()), key -> new long[1])[0]++;
+        }
+        List<RevenueCubeService.BusRouteRow> rows = new ArrayList<>(cells.size());
+        cells.forEach((key, count) -> rows.add(new RevenueCubeService.BusRouteRow((Long) key.get(0),
+                (String) key.get(1), (String) key.get(2), (Boolean) key.get(3), count[0])));
+
+        RevenueCubeService revenueCubeService = mock(RevenueCubeService.class);
+        when(revenueCubeService.getBusRouteRows(any(), any(), any())).thenReturn(rows);
+        BusRepository busRepository = mock(BusRepository.class);
+        when(busRepository.findAllWithDriverAndRoute()).thenReturn(buses);
+        AnalyticService analyticService = new AnalyticService();
+        ReflectionTestUtils.setField(analyticService, "revenueCubeService", revenueCubeService);
+        ReflectionTestUtils.setField(analyticService, "busRepository", busRepository);
+        ReflectionTestUtils.setField(analyticService, "fareEngine", fareEngine);
+
+        System.out.printf("buses=%d tickets=%d cube rows=%d%n", busCount, ticketCount, rows.size());
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            double nestedRevenue = nested(buses, tickets, fareEngine);
+            long nestedNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> performance = (List<Map<String, Object>>)
+                    analyticService.getBusPerformanceStatistics("month").get("busPerformance");
+            long cubeNanos = System.nanoTime() - start;
+            double cubeRevenue = performance.stream().mapToDouble(bus -> (Double) bus.get("revenue")).sum();
+
+            assertEquals(nestedRevenue, cubeRevenue, nestedRevenue * 1e-9);
+            System.out.printf("round %d: nested %.1f ms, cube %.1f ms%n", round, nestedNanos / 1e6, cubeNanos / 1e6);
+        }
+    }
+
+    // The aggregation getBusPerformanceStatistics did before the revenue cube
+    private static double nested(List<Bus> buses, List<Ticket> tickets, FareEngine fareEngine) {
+        double total = 0;
+        for (Bus bus : buses) {
+            List<Ticket> busTickets = tickets.stream()
+                    .filter(ticket -> ticket.getBus() != null && ticket.getBus().getId().equals(bus.getId()))
+                    .collect(Collectors.toList());
+            total += busTickets.stream().mapToDouble(fareEngine::price).sum();
+        }
+        return total;
+    }
+}
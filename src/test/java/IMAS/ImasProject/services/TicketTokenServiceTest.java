@@ -0,0 +1,126 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.exception.TicketTokenExpiredException;
+import IMAS.ImasProject.model.Bus;
+import IMAS.ImasProject.model.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TicketTokenServiceTest {
+
+    // Test-only keys; production reads TICKET_QR_SECRET
+    private static final String SECRET = key((byte) 1);
+    private static final String OTHER_SECRET = key((byte) 2);
+
+    private static final LocalDateTime DEPARTURE = LocalDateTime.of(2026, 3, 14, 8, 30);
+
+    private final TicketTokenService tokens = new TicketTokenService(SECRET, 60);
+
+    @Test
+    void verifyReturnsTheIssuedClaims() {
+        TicketTokenService.Claims claims = tokens.verify(tokens.issue(ticket()), DEPARTURE);
+
+        assertEquals(42L, claims.getTicketId());
+        assertEquals(7L, claims.getBusId());
+        assertEquals(DEPARTURE, claims.getDepartureTime());
+        assertEquals(12, claims.getSeat());
+        assertEquals(DEPARTURE.plusMinutes(60), claims.getExpiresAt());
+    }
+
+    @Test
+    void verifyRejectsATamperedPayload() {
+        String[] parts = parts(tokens.issue(ticket()));
+        byte[] payload = Base64.getUrlDecoder().decode(parts[0]);
+        payload[8] ^= 1;
+        String token = TicketTokenService.PREFIX + encode(payload) + "." + parts[1];
+
+        assertThrows(IllegalArgumentException.class, () -> tokens.verify(token, DEPARTURE));
+    }
+
+    @Test
+    void verifyRejectsATamperedSignature() {
+        String[] parts = parts(tokens.issue(ticket()));
+        byte[] signature = Base64.getUrlDecoder().decode(parts[1]);
+        signature[0] ^= 1;
+        String token = TicketTokenService.PREFIX + parts[0] + "." + encode(signature);
+
+        assertThrows(IllegalArgumentException.class, () -> tokens.verify(token, DEPARTURE));
+    }
+
+    @Test
+    void verifyRejectsATokenSignedWithAnotherKey() {
+        String token = new TicketTokenService(OTHER_SECRET, 60).issue(ticket());
+
+        assertThrows(IllegalArgumentException.class, () -> tokens.verify(token, DEPARTURE));
+    }
+
+    @Test
+    void tokensExpireExactlyAtTheirExpiry() {
+        String token = tokens.issue(ticket());
+        LocalDateTime expiresAt = DEPARTURE.plusMinutes(60);
+
+        tokens.verify(token, expiresAt.minusNanos(1));
+        assertThrows(TicketTokenExpiredException.class, () -> tokens.verify(token, expiresAt));
+    }
+
+    @Test
+    void verifyRejectsAPayloadOfTheWrongLength() {
+        String[] parts = parts(tokens.issue(ticket()));
+        byte[] payload = Base64.getUrlDecoder().decode(parts[0]);
+        byte[] shorter = new byte[payload.length - 1];
+        System.arraycopy(payload, 0, shorter, 0, shorter.length);
+        byte[] longer = new byte[payload.length + 1];
+        System.arraycopy(payload, 0, longer, 0, payload.length);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                tokens.verify(TicketTokenService.PREFIX + encode(shorter) + "." + parts[1], DEPARTURE));
+        assertThrows(IllegalArgumentException.class, () ->
+                tokens.verify(TicketTokenService.PREFIX + encode(longer) + "." + parts[1], DEPARTURE));
+    }
+
+    @Test
+    void verifyRejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> tokens.verify("42-TKT0001", DEPARTURE));
+        assertThrows(IllegalArgumentException.class, () -> tokens.verify(TicketTokenService.PREFIX + "abc", DEPARTURE));
+        assertThrows(IllegalArgumentException.class, () -> tokens.verify(TicketTokenService.PREFIX + "a*c.def", DEPARTURE));
+    }
+
+    @Test
+    void aMissingOrShortSecretFailsStartup() {
+        assertThrows(IllegalStateException.class, () -> new TicketTokenService("", 60));
+        assertThrows(IllegalStateException.class, () -> new TicketTokenService(null, 60));
+        assertThrows(IllegalStateException.class, () -> new TicketTokenService("c2hvcnQ=", 60));
+        assertThrows(IllegalStateException.class, () -> new TicketTokenService("not base64!", 60));
+    }
+
+    private static Ticket ticket() {
+        Bus bus = new Bus();
+        bus.setId(7L);
+        Ticket ticket = new Ticket();
+        ticket.setId(42L);
+        ticket.setBus(bus);
+        ticket.setDepartureTime(DEPARTURE);
+        ticket.setSeatNumber("12");
+        return ticket;
+    }
+
+    private static String key(byte fill) {
+        byte[] key = new byte[32];
+        Arrays.fill(key, fill);
+        return Base64.getEncoder().encodeToString(key);
+    }
+
+    private static String[] parts(String token) {
+        return token.substring(TicketTokenService.PREFIX.length()).split("\\.");
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
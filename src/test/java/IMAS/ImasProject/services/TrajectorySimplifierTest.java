@@ -0,0 +1,114 @@
+package IMAS.ImasProject.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TrajectorySimplifierTest {
+
+    @Test
+    void encodesGoogleReferencePolyline() {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(0.0);
+        simplifier.add(38.5, -120.2);
+        simplifier.add(40.7, -120.95);
+        simplifier.add(43.252, -126.453);
+
+        TrajectorySimplifier.Result result = simplifier.finish();
+
+        assertEquals("_p~iF~ps|U_ulLnnqC_mqNvxq`@", result.getEncodedPolyline());
+        assertEquals(3, result.getOriginalPoints());
+        assertEquals(3, result.getSimplifiedPoints());
+    }
+
+    @Test
+    void removesCollinearPoints() {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(5.0);
+        // About 11 m apart, so the radial filter keeps them all
+        for (int i = 0; i <= 100; i++) {
+            simplifier.add(-4.3 + i * 1e-4, 15.3 + i * 1e-4);
+        }
+
+        TrajectorySimplifier.Result result = simplifier.finish();
+
+        assertEquals(101, result.getOriginalPoints());
+        assertEquals(2, result.getSimplifiedPoints());
+        assertPoints(result, new double[][]{{-4.3, 15.3}, {-4.29, 15.31}});
+    }
+
+    @Test
+    void keepsACornerBeyondTheTolerance() {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(5.0);
+        for (int i = 0; i <= 50; i++) {
+            simplifier.add(-4.3 + i * 1e-4, 15.3);
+        }
+        for (int i = 1; i <= 50; i++) {
+            simplifier.add(-4.295, 15.3 + i * 1e-4);
+        }
+
+        TrajectorySimplifier.Result result = simplifier.finish();
+
+        assertEquals(3, result.getSimplifiedPoints());
+        assertPoints(result, new double[][]{{-4.3, 15.3}, {-4.295, 15.3}, {-4.295, 15.305}});
+    }
+
+    @Test
+    void keepsEndpointsOfATrackWithinTheTolerance() {
+        TrajectorySimplifier simplifier = new TrajectorySimplifier(50.0);
+        simplifier.add(-4.30000, 15.30000);
+        simplifier.add(-4.30005, 15.30003);
+        simplifier.add(-4.30002, 15.30008);
+        simplifier.add(-4.30010, 15.30010);
+
+        TrajectorySimplifier.Result result = simplifier.finish();
+
+        assertEquals(4, result.getOriginalPoints());
+        assertEquals(2, result.getSimplifiedPoints());
+        assertPoints(result, new double[][]{{-4.3, 15.3}, {-4.3001, 15.3001}});
+    }
+
+    @Test
+    void encodesAnEmptyTrackAsAnEmptyPolyline() {
+        TrajectorySimplifier.Result result = new TrajectorySimplifier(5.0).finish();
+
+        assertEquals("", result.getEncodedPolyline());
+        assertEquals(0, result.getSimplifiedPoints());
+    }
+
+    private static void assertPoints(TrajectorySimplifier.Result result, double[][] expected) {
+        List<double[]> points = decode(result.getEncodedPolyline());
+        assertEquals(expected.length, points.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], points.get(i), 1e-9);
+        }
+    }
+
+    // Reference decoder of the encoded polyline format
+    private static List<double[]> decode(String encoded) {
+        List<double[]> points = new ArrayList<>();
+        int index = 0;
+        long lat = 0;
+        long lon = 0;
+        while (index < encoded.length()) {
+            long[] delta = new long[2];
+            for (int axis = 0; axis < 2; axis++) {
+                long value = 0;
+                int shift = 0;
+                int chunk;
+                do {
+                    chunk = encoded.charAt(index++) - 63;
+                    value |= (long) (chunk & 0x1f) << shift;
+                    shift += 5;
+                } while (chunk >= 0x20);
+                delta[axis] = (value & 1) != 0 ? ~(value >> 1) : value >> 1;
+            }
+            lat += delta[0];
+            lon += delta[1];
+            points.add(new double[]{lat / 1e5, lon / 1e5});
+        }
+        return points;
+    }
+}
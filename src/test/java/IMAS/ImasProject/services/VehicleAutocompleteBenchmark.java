@@ -0,0 +1,143 @@
+package IMAS.ImasProject.services;
+
+import IMAS.ImasProject.dto.VehicleSuggestionDTO;
+import IMAS.ImasProject.repository.VehicleRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Vehicle typeahead: the former {@code LOWER(column) LIKE '%keyword%'} search over vehicle
+ * number, plate, manufacturer and model, and the {@code SELECT DISTINCT ... ORDER BY} option
+ * lists, against {@link VehicleAutocompleteIndex}.
+ *
+ * The database is stubbed, so the former path is timed as the predicate and sort work the
+ * database does on every row (a leading wildcard cannot use an index), without I/O: it is a
+ * lower bound of the SQL cost. Skipped unless enabled:
+ * {@code mvn test -Dtest=VehicleAutocompleteBenchmark -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VehicleAutocompleteBenchmark {
+
+    private static final int[] FLEET_SIZES = {10_000, 100_000};
+    private static final int ROUNDS = 5;
+    private static final int QUERIES_PER_ROUND = 200;
+    private static final int LIMIT = 10;
+
+    private static final String[][] MAKES = {
+            {"Toyota", "Coaster", "Hiace", "Land Cruiser"},
+            {"Mercedes-Benz", "Sprinter", "Citaro", "Tourismo"},
+            {"Volvo", "B8R", "B11R", "7900"},
+            {"Scania", "Citywide", "Touring", "Interlink"},
+            {"Isuzu", "NQR", "Journey", "Turquoise"},
+            {"Yutong", "ZK6122", "E12", "ZK6938"},
+            {"King Long", "XMQ6127", "XMQ6900", "Kingwin"},
+            {"Higer", "KLQ6129", "Azure", "V92"},
+            {"MAN", "Lion's City", "Lion's Coach", "Lion's Intercity"},
+            {"Iveco", "Crossway", "Daily", "Urbanway"}};
+
+    // Query mix: number and plate prefixes and substrings, manufacturer and model prefixes and substrings, no match
+    private static final String[] QUERIES = {"kin", "vh-0012", "ab", "-123", "sprin", "lion", "merc", "city", "zk6", "qqq"};
+
+    @Test
+    void autocomplete() {
+        for (int fleetSize : FLEET_SIZES) {
+            run(fleetSize);
+        }
+    }
+
+    private void run(int fleetSize) {
+        List<Object[]> rows = fleet(fleetSize, new Random(42));
+        VehicleRepository vehicleRepository = mock(VehicleRepository.class);
+        when(vehicleRepository.findSearchableFields()).thenReturn(rows);
+
+        long start = System.nanoTime();
+        VehicleAutocompleteIndex index = new VehicleAutocompleteIndex(vehicleRepository);
+        index.rebuild();
+        System.out.printf("vehicles=%d index build %.1f ms%n", fleetSize, (System.nanoTime() - start) / 1e6);
+
+        for (String query : QUERIES) {
+            assertEquals(!like(rows, query).isEmpty(), !index.suggest(query, null, LIMIT).isEmpty(), query);
+        }
+        assertEquals(distinct(rows, 3), index.values(VehicleAutocompleteIndex.Field.MANUFACTURER));
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long likeNanos = 0;
+            long indexNanos = 0;
+            int matched = 0;
+            for (int i = 0; i < QUERIES_PER_ROUND; i++) {
+                String query = QUERIES[i % QUERIES.length];
+
+                start = System.nanoTime();
+                matched += like(rows, query).size();
+                likeNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                List<VehicleSuggestionDTO> suggestions = index.suggest(query, null, LIMIT);
+                indexNanos += System.nanoTime() - start;
+                assertTrue(suggestions.size() <= LIMIT);
+            }
+
+            start = System.nanoTime();
+            int distinctValues = distinct(rows, 3).size() + distinct(rows, 4).size();
+            long distinctNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            int indexValues = index.values(VehicleAutocompleteIndex.Field.MANUFACTURER).size()
+                    + index.values(VehicleAutocompleteIndex.Field.MODEL).size();
+            long valuesNanos = System.nanoTime() - start;
+            assertEquals(distinctValues, indexValues);
+
+            System.out.printf("vehicles=%d round %d: like %.1f us/query, index %.1f us/query (%d rows matched); "
+                            + "distinct %.2f ms, index values %.3f ms%n",
+                    fleetSize, round, likeNanos / 1e3 / QUERIES_PER_ROUND, indexNanos / 1e3 / QUERIES_PER_ROUND,
+                    matched, distinctNanos / 1e6, valuesNanos / 1e6);
+        }
+    }
+
+    // Rows as findSearchableFields returns them: id, vehicle number, plate, manufacturer, model
+    private static List<Object[]> fleet(int size, Random random) {
+        List<Object[]> rows = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            String[] make = MAKES[random.nextInt(MAKES.length)];
+            String plate = "" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26))
+                    + "-" + String.format("%03d", random.nextInt(1000))
+                    + "-" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26));
+            rows.add(new Object[]{id, String.format("VH-%06d", id), plate, make[0], make[1 + random.nextInt(make.length - 1)]});
+        }
+        return rows;
+    }
+
+    // WHERE LOWER(v.vehicleNumber) LIKE '%kw%' OR ... over the four columns
+    private static List<Object[]> like(List<Object[]> rows, String keyword) {
+        String pattern = keyword.toLowerCase(Locale.ROOT);
+        List<Object[]> matches = new ArrayList<>();
+        for (Object[] row : rows) {
+            for (int column = 1; column <= 4; column++) {
+                if (((String) row[column]).toLowerCase(Locale.ROOT).contains(pattern)) {
+                    matches.add(row);
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    // SELECT DISTINCT column ... ORDER BY column
+    private static List<String> distinct(List<Object[]> rows, int column) {
+        TreeSet<String> values = new TreeSet<>();
+        for (Object[] row : rows) {
+            values.add((String) row[column]);
+        }
+        return new ArrayList<>(values);
+    }
+}